@@ -0,0 +1,70 @@
+package com.yandex.tracker.adapter;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.yandex.tracker.model.Task;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+// Task хранит время примитивами и не отдаёт их Gson, поэтому поля duration и startTime JSON пишутся
+// и читаются здесь через геттеры и сеттеры теми же адаптерами Duration и LocalDateTime, что и раньше.
+public class TaskTimeAdapterFactory implements TypeAdapterFactory {
+    private static final String DURATION = "duration";
+    private static final String START_TIME = "startTime";
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (!Task.class.isAssignableFrom(type.getRawType())) {
+            return null;
+        }
+        TypeAdapter<Task> delegate = (TypeAdapter<Task>) gson.getDelegateAdapter(this, type);
+        TypeAdapter<JsonElement> elements = gson.getAdapter(JsonElement.class);
+        TypeAdapter<Duration> durations = gson.getAdapter(Duration.class);
+        TypeAdapter<LocalDateTime> times = gson.getAdapter(LocalDateTime.class);
+        return (TypeAdapter<T>) new TypeAdapter<Task>() {
+            @Override
+            public void write(JsonWriter out, Task task) throws IOException {
+                if (task == null) {
+                    out.nullValue();
+                    return;
+                }
+                JsonObject json = delegate.toJsonTree(task).getAsJsonObject();
+                if (task.getDuration() != null) {
+                    json.add(DURATION, durations.toJsonTree(task.getDuration()));
+                }
+                if (task.hasStartTime()) {
+                    json.add(START_TIME, times.toJsonTree(task.getStartTime()));
+                }
+                elements.write(out, json);
+            }
+
+            @Override
+            public Task read(JsonReader in) throws IOException {
+                JsonElement json = elements.read(in);
+                if (json == null || json.isJsonNull()) {
+                    return null;
+                }
+                JsonObject object = json.getAsJsonObject();
+                JsonElement duration = object.remove(DURATION);
+                JsonElement startTime = object.remove(START_TIME);
+                Task task = delegate.fromJsonTree(object);
+                if (duration != null) {
+                    task.setDuration(durations.fromJsonTree(duration));
+                }
+                if (startTime != null) {
+                    task.setStartTime(times.fromJsonTree(startTime));
+                }
+                return task;
+            }
+        };
+    }
+}
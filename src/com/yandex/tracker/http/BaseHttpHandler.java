@@ -1,11 +1,20 @@
 package com.yandex.tracker.http;
 
 import com.sun.net.httpserver.HttpExchange;
+import com.yandex.tracker.service.TaskManager;
+import com.yandex.tracker.service.TaskStatus;
+import com.yandex.tracker.service.TaskType;
 
 import java.io.IOException;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
 public class BaseHttpHandler {
+    protected static final int DEFAULT_PAGE_LIMIT = 100;
+
     protected void sendText(HttpExchange exchange, String text) throws IOException {
         byte[] resp = text.getBytes(StandardCharsets.UTF_8);
         exchange.getResponseHeaders().add("Content-Type", "application/json;charset=utf-8");
@@ -24,6 +33,52 @@ public class BaseHttpHandler {
         exchange.close();
     }
 
+    // Параметры строки запроса; при повторе имени берётся последнее значение.
+    protected Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    // Тело ответа на GET-список записей типа type: все записи, колонка статуса (?status=) или, при параметрах
+    // limit и cursor, страница с курсором следующей. Некорректные параметры — IllegalArgumentException.
+    protected Object listRecords(HttpExchange exchange, TaskManager taskManager, TaskType type) {
+        Map<String, String> parameters = queryParameters(exchange);
+        String statusName = parameters.get("status");
+        TaskStatus status = statusName == null ? null : TaskStatus.valueOf(statusName.toUpperCase(Locale.ROOT));
+        if (isPageRequest(parameters)) {
+            return taskManager.getPage(type, status, parameters.get("cursor"), pageLimit(parameters));
+        }
+        if (status != null) {
+            return taskManager.findByStatusAndType(status, type);
+        }
+        return switch (type) {
+            case TASK -> taskManager.getTasks();
+            case EPIC -> taskManager.getEpics();
+            case SUBTASK -> taskManager.getSubtasks();
+        };
+    }
+
+    // Без limit и cursor списки отдаются целиком, как раньше.
+    protected boolean isPageRequest(Map<String, String> parameters) {
+        return parameters.containsKey("limit") || parameters.containsKey("cursor");
+    }
+
+    protected int pageLimit(Map<String, String> parameters) {
+        String limit = parameters.get("limit");
+        return limit == null ? DEFAULT_PAGE_LIMIT : Integer.parseInt(limit);
+    }
+
     protected void sendInternalError(HttpExchange exchange) throws IOException {
         exchange.sendResponseHeaders(500, -1);
         exchange.close();
@@ -5,6 +5,7 @@ import com.google.gson.GsonBuilder;
 import com.sun.net.httpserver.HttpServer;
 import com.yandex.tracker.adapter.DurationAdapter;
 import com.yandex.tracker.adapter.LocalDateTimeAdapter;
+import com.yandex.tracker.adapter.TaskTimeAdapterFactory;
 import com.yandex.tracker.http.handlers.*;
 import com.yandex.tracker.service.Managers;
 import com.yandex.tracker.service.TaskManager;
@@ -30,6 +31,8 @@ public class HttpTaskServer {
         server.createContext("/epics", new EpicHandler(taskManager));
         server.createContext("/history", new HistoryHandler(taskManager));
         server.createContext("/prioritized", new PrioritizedHandler(taskManager));
+        server.createContext("/search", new SearchHandler(taskManager));
+        server.createContext("/batch", new BatchHandler(taskManager));
         server.start();
         System.out.println("Server started on port 8080");
     }
@@ -42,7 +45,8 @@ public class HttpTaskServer {
     public static Gson getGson() {
         return new GsonBuilder()
                 .registerTypeAdapter(Duration.class, new DurationAdapter())
-                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter().nullSafe())
+                .registerTypeAdapterFactory(new TaskTimeAdapterFactory())
                 .create();
     }
 
@@ -0,0 +1,93 @@
+package com.yandex.tracker.http.handlers;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.yandex.tracker.http.BaseHttpHandler;
+import com.yandex.tracker.http.HttpTaskServer;
+import com.yandex.tracker.model.Epic;
+import com.yandex.tracker.model.Subtask;
+import com.yandex.tracker.model.Task;
+import com.yandex.tracker.service.Command;
+import com.yandex.tracker.service.TaskManager;
+import com.yandex.tracker.service.TaskType;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public class BatchHandler extends BaseHttpHandler implements HttpHandler {
+    private final TaskManager taskManager;
+    private final Gson gson;
+
+    public BatchHandler(TaskManager taskManager) {
+        this.taskManager = taskManager;
+        this.gson = HttpTaskServer.getGson();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if ("POST".equals(exchange.getRequestMethod())) {
+            handlePost(exchange);
+        } else {
+            sendNotFound(exchange);
+        }
+    }
+
+    // Тело — массив команд вида {"operation": "CREATE", "type": "SUBTASK", "task": {...}} или
+    // {"operation": "DELETE", "type": "TASK", "id": 3}; для UPDATE id берётся из task. Ответ — id записей
+    // в порядке команд. Пакет применяется целиком или не применяется совсем.
+    private void handlePost(HttpExchange exchange) throws IOException {
+        if (!"application/json".equals(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+            sendBadRequest(exchange);
+            return;
+        }
+        try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            List<Command> commands = new ArrayList<>();
+            for (JsonElement element : JsonParser.parseReader(reader).getAsJsonArray()) {
+                commands.add(parseCommand(element.getAsJsonObject()));
+            }
+            List<Integer> ids = taskManager.applyBatch(commands);
+            sendText(exchange, gson.toJson(ids));
+        } catch (JsonParseException | IllegalStateException | IllegalArgumentException e) {
+            sendBadRequest(exchange);
+        } catch (Exception e) {
+            e.printStackTrace();
+            sendInternalError(exchange);
+        }
+    }
+
+    private Command parseCommand(JsonObject json) {
+        Command.Operation operation = Command.Operation.valueOf(field(json, "operation").getAsString()
+                .toUpperCase(Locale.ROOT));
+        TaskType type = TaskType.valueOf(field(json, "type").getAsString().toUpperCase(Locale.ROOT));
+        if (operation == Command.Operation.DELETE) {
+            return Command.delete(type, field(json, "id").getAsInt());
+        }
+        Task task = gson.fromJson(field(json, "task"), switch (type) {
+            case TASK -> Task.class;
+            case EPIC -> Epic.class;
+            case SUBTASK -> Subtask.class;
+        });
+        if (task.getNameTask() == null) {
+            throw new IllegalArgumentException("Запись без названия");
+        }
+        return operation == Command.Operation.CREATE ? Command.create(task) : Command.update(task);
+    }
+
+    private static JsonElement field(JsonObject json, String name) {
+        JsonElement value = json.get(name);
+        if (value == null || value.isJsonNull()) {
+            throw new IllegalArgumentException("В команде нет поля " + name);
+        }
+        return value;
+    }
+}
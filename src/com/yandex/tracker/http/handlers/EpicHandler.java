@@ -8,13 +8,13 @@ import com.yandex.tracker.http.BaseHttpHandler;
 import com.yandex.tracker.http.HttpTaskServer;
 import com.yandex.tracker.model.Epic;
 import com.yandex.tracker.service.TaskManager;
+import com.yandex.tracker.service.TaskType;
 
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 
 import java.io.IOException;
-import java.util.List;
 
 public class EpicHandler extends BaseHttpHandler implements HttpHandler {
     private final TaskManager taskManager;
@@ -46,7 +46,13 @@ public class EpicHandler extends BaseHttpHandler implements HttpHandler {
     }
 
     private void handleGet(HttpExchange exchange) throws IOException {
-        List<Epic> epics = taskManager.getEpics();
+        Object epics;
+        try {
+            epics = listRecords(exchange, taskManager, TaskType.EPIC);
+        } catch (IllegalArgumentException e) {
+            sendBadRequest(exchange);
+            return;
+        }
         String jsonResponse = gson.toJson(epics);
         sendText(exchange, jsonResponse);
     }
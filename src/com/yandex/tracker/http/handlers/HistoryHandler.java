@@ -4,18 +4,19 @@ import com.google.gson.Gson;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.yandex.tracker.http.BaseHttpHandler;
-import com.yandex.tracker.model.Task;
+import com.yandex.tracker.http.HttpTaskServer;
 import com.yandex.tracker.service.TaskManager;
 
 import java.io.IOException;
-import java.util.List;
+import java.util.Map;
 
 public class HistoryHandler extends BaseHttpHandler implements HttpHandler {
     private final TaskManager taskManager;
-    private final Gson gson = new Gson();
+    private final Gson gson;
 
     public HistoryHandler(TaskManager taskManager) {
         this.taskManager = taskManager;
+        this.gson = HttpTaskServer.getGson();
     }
 
     @Override
@@ -28,7 +29,16 @@ public class HistoryHandler extends BaseHttpHandler implements HttpHandler {
     }
 
     private void handleGet(HttpExchange exchange) throws IOException {
-        List<Task> history = taskManager.getHistory();
+        Map<String, String> parameters = queryParameters(exchange);
+        Object history;
+        try {
+            history = isPageRequest(parameters)
+                    ? taskManager.getHistoryPage(parameters.get("cursor"), pageLimit(parameters))
+                    : taskManager.getHistory();
+        } catch (IllegalArgumentException e) {
+            sendBadRequest(exchange);
+            return;
+        }
         String jsonResponse = gson.toJson(history);
         sendText(exchange, jsonResponse);
     }
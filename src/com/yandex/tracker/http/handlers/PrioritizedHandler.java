@@ -2,20 +2,23 @@ package com.yandex.tracker.http.handlers;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.yandex.tracker.http.BaseHttpHandler;
-import com.yandex.tracker.model.Task;
+import com.yandex.tracker.http.HttpTaskServer;
 import com.yandex.tracker.service.TaskManager;
 import com.google.gson.Gson;
 import com.sun.net.httpserver.HttpHandler;
 
 import java.io.IOException;
-import java.util.List;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
 
 public class PrioritizedHandler extends BaseHttpHandler implements HttpHandler {
     private final TaskManager taskManager;
-    private final Gson gson = new Gson();
+    private final Gson gson;
 
     public PrioritizedHandler(TaskManager taskManager) {
         this.taskManager = taskManager;
+        this.gson = HttpTaskServer.getGson();
     }
 
     @Override
@@ -27,9 +30,33 @@ public class PrioritizedHandler extends BaseHttpHandler implements HttpHandler {
         }
     }
 
+    // /prioritized?from=...&to=... возвращает задачи, пересекающие окно [from, to); время в формате ISO,
+    // любую границу можно опустить. /prioritized?limit=...&cursor=... отдаёт список постранично;
+    // окно и страницы одновременно не поддерживаются.
     private void handleGet(HttpExchange exchange) throws IOException {
-        List<Task> prioritizedTasks = taskManager.getPrioritizedTasks();
+        Map<String, String> parameters = queryParameters(exchange);
+        boolean window = parameters.containsKey("from") || parameters.containsKey("to");
+        Object prioritizedTasks;
+        try {
+            if (window && isPageRequest(parameters)) {
+                throw new IllegalArgumentException("Окно и постраничная выдача не совмещаются");
+            } else if (window) {
+                prioritizedTasks = taskManager.getPrioritizedTasks(parseTime(parameters.get("from")),
+                        parseTime(parameters.get("to")));
+            } else if (isPageRequest(parameters)) {
+                prioritizedTasks = taskManager.getPrioritizedPage(parameters.get("cursor"), pageLimit(parameters));
+            } else {
+                prioritizedTasks = taskManager.getPrioritizedTasks();
+            }
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            sendBadRequest(exchange);
+            return;
+        }
         String jsonResponse = gson.toJson(prioritizedTasks);
         sendText(exchange, jsonResponse);
     }
+
+    private static LocalDateTime parseTime(String value) {
+        return value == null || value.isEmpty() ? null : LocalDateTime.parse(value);
+    }
 }
@@ -0,0 +1,45 @@
+package com.yandex.tracker.http.handlers;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.yandex.tracker.http.BaseHttpHandler;
+import com.yandex.tracker.http.HttpTaskServer;
+import com.yandex.tracker.model.Task;
+import com.yandex.tracker.service.TaskManager;
+
+import java.io.IOException;
+import java.util.List;
+
+public class SearchHandler extends BaseHttpHandler implements HttpHandler {
+    private final TaskManager taskManager;
+    private final Gson gson;
+
+    public SearchHandler(TaskManager taskManager) {
+        this.taskManager = taskManager;
+        this.gson = HttpTaskServer.getGson();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if ("GET".equals(exchange.getRequestMethod())) {
+            handleGet(exchange);
+        } else {
+            sendNotFound(exchange);
+        }
+    }
+
+    // /search?q=... возвращает записи всех типов, в названии или описании которых есть слова,
+    // начинающиеся с каждого слова запроса.
+    private void handleGet(HttpExchange exchange) throws IOException {
+        List<Task> found;
+        try {
+            found = taskManager.search(queryParameters(exchange).get("q"));
+        } catch (IllegalArgumentException e) {
+            sendBadRequest(exchange);
+            return;
+        }
+        String jsonResponse = gson.toJson(found);
+        sendText(exchange, jsonResponse);
+    }
+}
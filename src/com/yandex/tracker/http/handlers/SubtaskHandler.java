@@ -8,12 +8,12 @@ import com.yandex.tracker.http.BaseHttpHandler;
 import com.yandex.tracker.http.HttpTaskServer;
 import com.yandex.tracker.model.Subtask;
 import com.yandex.tracker.service.TaskManager;
+import com.yandex.tracker.service.TaskType;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
 
 public class SubtaskHandler extends BaseHttpHandler implements HttpHandler {
     private final TaskManager taskManager;
@@ -46,7 +46,13 @@ public class SubtaskHandler extends BaseHttpHandler implements HttpHandler {
     }
 
     private void handleGet(HttpExchange exchange) throws IOException {
-        List<Subtask> subtasks = taskManager.getSubtasks();
+        Object subtasks;
+        try {
+            subtasks = listRecords(exchange, taskManager, TaskType.SUBTASK);
+        } catch (IllegalArgumentException e) {
+            sendBadRequest(exchange);
+            return;
+        }
         String jsonResponse = gson.toJson(subtasks);
         sendText(exchange, jsonResponse);
     }
@@ -8,6 +8,7 @@ import com.yandex.tracker.http.BaseHttpHandler;
 import com.yandex.tracker.http.HttpTaskServer;
 import com.yandex.tracker.model.Task;
 import com.yandex.tracker.service.TaskManager;
+import com.yandex.tracker.service.TaskType;
 
 import java.io.InputStreamReader;
 import java.io.Reader;
@@ -15,8 +16,6 @@ import java.nio.charset.StandardCharsets;
 
 import java.io.IOException;
 
-import java.util.List;
-
 
 public class TaskHandler extends BaseHttpHandler implements HttpHandler {
     private final TaskManager taskManager;
@@ -49,7 +48,13 @@ public class TaskHandler extends BaseHttpHandler implements HttpHandler {
     }
 
     private void handleGet(HttpExchange exchange) throws IOException {
-        List<Task> tasks = taskManager.getTasks();
+        Object tasks;
+        try {
+            tasks = listRecords(exchange, taskManager, TaskType.TASK);
+        } catch (IllegalArgumentException e) {
+            sendBadRequest(exchange);
+            return;
+        }
         String jsonResponse = gson.toJson(tasks);
         sendText(exchange, jsonResponse);
     }
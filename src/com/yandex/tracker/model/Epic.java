@@ -4,13 +4,30 @@ import com.yandex.tracker.service.TaskStatus;
 import com.yandex.tracker.service.TaskType;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.stream.Collectors;
 
 public class Epic extends Task {
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
     private List<Subtask> subtasks;
+    // Агрегаты по подзадачам: число подзадач в каждом статусе, сумма длительностей и мультимножества
+    // начал и окончаний, из которых минимум и максимум берутся без полного прохода даже после удаления
+    // крайней подзадачи. Для каждого объекта подзадачи запоминаются учтённые значения, поэтому агрегаты
+    // корректируются, даже если подзадачу изменили на месте. Поля не сериализуются и строятся по списку
+    // подзадач при первом обращении.
+    private transient Map<Subtask, Counted> counted;
+    private transient int[] statusCounts;
+    private transient TreeMap<LocalDateTime, Integer> starts;
+    private transient TreeMap<LocalDateTime, Integer> ends;
+    private transient Duration totalDuration;
 
     public Epic(int id, String nameTask, String descriptionTask, TaskStatus status, Duration duration,
                 LocalDateTime startTime) {
@@ -18,66 +35,169 @@ public class Epic extends Task {
         this.subtasks = new ArrayList<>();
     }
 
+    private Map<Subtask, Counted> counted() {
+        if (counted == null) {
+            if (subtasks == null) {
+                subtasks = new ArrayList<>();
+            }
+            resetAggregates();
+            for (Subtask subtask : subtasks) {
+                count(subtask);
+            }
+        }
+        return counted;
+    }
+
+    private void resetAggregates() {
+        counted = new IdentityHashMap<>();
+        statusCounts = new int[STATUSES.length];
+        starts = new TreeMap<>();
+        ends = new TreeMap<>();
+        totalDuration = Duration.ZERO;
+    }
+
+    private void count(Subtask subtask) {
+        uncount(subtask);
+        Counted values = new Counted(subtask);
+        counted.put(subtask, values);
+        statusCounts[values.status.ordinal()]++;
+        if (values.duration != null) {
+            totalDuration = totalDuration.plus(values.duration);
+        }
+        if (values.start != null) {
+            starts.merge(values.start, 1, Integer::sum);
+            ends.merge(values.end, 1, Integer::sum);
+        }
+    }
+
+    private void uncount(Subtask subtask) {
+        Counted values = counted.remove(subtask);
+        if (values == null) {
+            return;
+        }
+        statusCounts[values.status.ordinal()]--;
+        if (values.duration != null) {
+            totalDuration = totalDuration.minus(values.duration);
+        }
+        if (values.start != null) {
+            decrement(starts, values.start);
+            decrement(ends, values.end);
+        }
+    }
+
+    private static void decrement(TreeMap<LocalDateTime, Integer> multiset, LocalDateTime key) {
+        multiset.computeIfPresent(key, (time, count) -> count == 1 ? null : count - 1);
+    }
+
+    public int getSubtaskCount(TaskStatus status) {
+        counted();
+        return statusCounts[status.ordinal()];
+    }
+
+    // Статус по числу подзадач: без подзадач или все NEW — NEW, все DONE — DONE, иначе IN_PROGRESS.
+    public static TaskStatus deriveStatus(int newCount, int inProgressCount, int doneCount) {
+        int total = newCount + inProgressCount + doneCount;
+        if (total == newCount) {
+            return TaskStatus.NEW;
+        }
+        return total == doneCount ? TaskStatus.DONE : TaskStatus.IN_PROGRESS;
+    }
+
+    // Сумма длительностей подзадач; подзадачи без длительности не учитываются.
     @Override
     public Duration getDuration() {
-        return subtasks.stream()
-                .map(Subtask::getDuration)
-                .reduce(Duration.ZERO, Duration::plus);
+        counted();
+        return totalDuration;
     }
 
     @Override
     public LocalDateTime getStartTime() {
-        return subtasks.stream()
-                .map(Subtask::getStartTime)
-                .min(LocalDateTime::compareTo)
-                .orElse(null);
+        counted();
+        return starts.isEmpty() ? null : starts.firstKey();
     }
 
+    // Подзадача с началом, но без длительности, заканчивается в момент начала.
     @Override
     public LocalDateTime getEndTime() {
-        return subtasks.stream()
-                .map(subtask -> subtask.getStartTime().plus(subtask.getDuration()))
-                .max(LocalDateTime::compareTo)
-                .orElse(null);
+        counted();
+        return ends.isEmpty() ? null : ends.lastKey();
     }
 
+    @Override
+    public boolean hasStartTime() {
+        counted();
+        return !starts.isEmpty();
+    }
+
+    @Override
+    long startSecond() {
+        return starts.firstKey().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    @Override
+    int startNano() {
+        return starts.firstKey().getNano();
+    }
+
+    @Override
+    long endSecond() {
+        return ends.lastKey().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    @Override
+    int endNano() {
+        return ends.lastKey().getNano();
+    }
+
+    // Повторное добавление подзадачи с тем же id заменяет прежнюю версию.
     public void addSubtask(Subtask subtask) {
         for (Subtask existingSubtask : subtasks) {
-            if (subtask.overlapsWith(existingSubtask)) {
+            boolean sameSubtask = subtask.getId() != 0 && existingSubtask.getId() == subtask.getId();
+            if (!sameSubtask && subtask.overlapsWith(existingSubtask)) {
                 throw new IllegalArgumentException("Подзадача пересекается с существующей подзадачей.");
             }
         }
-        subtasks.add(subtask);
+        if (subtask.getId() != 0) {
+            detachSubtask(subtask.getId());
+        }
+        attachSubtask(subtask);
         updateStatus();
     }
 
+    // Привязывает подзадачу без пересчёта статуса; менеджер вызывает updateStatus после всех изменений.
+    public void attachSubtask(Subtask subtask) {
+        counted();
+        subtasks.add(subtask);
+        count(subtask);
+    }
+
+    public void detachSubtask(int subtaskId) {
+        counted();
+        Iterator<Subtask> iterator = subtasks.iterator();
+        while (iterator.hasNext()) {
+            Subtask subtask = iterator.next();
+            if (subtask.getId() == subtaskId) {
+                iterator.remove();
+                uncount(subtask);
+            }
+        }
+    }
+
     public void removeSubtask(int subtaskId) {
-        subtasks.removeIf(subtask -> subtask.getId() == subtaskId);
+        detachSubtask(subtaskId);
         updateStatus();
     }
 
     public void cleanSubtasks() {
-        if (subtasks != null) {
-            subtasks.clear();
-        }
+        counted();
+        subtasks.clear();
+        resetAggregates();
     }
 
-    private void updateStatus() {
-        if (subtasks.isEmpty()) {
-            setStatus(TaskStatus.NEW);
-            return;
-        }
-        boolean hasNew = subtasks.stream().anyMatch(subtask -> subtask.getStatus() == TaskStatus.NEW);
-        boolean hasInProgress = subtasks.stream().anyMatch(subtask -> subtask.getStatus() == TaskStatus.IN_PROGRESS);
-        boolean hasDone = subtasks.stream().allMatch(subtask -> subtask.getStatus() == TaskStatus.DONE);
-
-        if (hasNew) {
-            setStatus(TaskStatus.IN_PROGRESS);
-        } else if (hasDone) {
-            setStatus(TaskStatus.DONE);
-        } else {
-            setStatus(TaskStatus.NEW);
-        }
+    // Выводит статус из счётчиков за O(1).
+    public void updateStatus() {
+        setStatus(deriveStatus(getSubtaskCount(TaskStatus.NEW), getSubtaskCount(TaskStatus.IN_PROGRESS),
+                getSubtaskCount(TaskStatus.DONE)));
     }
 
     public TaskStatus getStatus() {
@@ -98,7 +218,8 @@ public class Epic extends Task {
                 throw new IllegalArgumentException("Эпик не может добавлять себя в качестве подзадачи.");
             }
         }
-        this.subtasks = subtasks;
+        this.subtasks = new ArrayList<>(subtasks);
+        this.counted = null;
     }
 
     public List<Subtask> getEpicSubtasks(int epicId) {
@@ -112,4 +233,18 @@ public class Epic extends Task {
         return nameTask + ": " +
                 subtasks;
     }
+
+    private static final class Counted {
+        private final TaskStatus status;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final Duration duration;
+
+        private Counted(Subtask subtask) {
+            this.status = subtask.getStatus();
+            this.start = subtask.getStartTime();
+            this.duration = subtask.getDuration();
+            this.end = start == null || duration == null ? start : start.plus(duration);
+        }
+    }
 }
@@ -6,15 +6,29 @@ import com.yandex.tracker.service.TaskType;
 import java.util.Objects;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 
 public class Task {
+    private static final int NANOS_PER_SECOND = 1_000_000_000;
+
     protected String nameTask;
     protected String descriptionTask;
     protected int id;
     protected TaskStatus status = TaskStatus.NEW;
     protected TaskType taskType;
-    private Duration duration;
-    private LocalDateTime startTime;
+    // Начало и длительность хранятся примитивами: секунды эпохи UTC и наносекунды. Сравнение и проверка
+    // пересечений работают с ними без создания объектов, а LocalDateTime и Duration строятся геттерами
+    // при первом обращении и запоминаются. Поля не сериализуются напрямую: в JSON их пишет и читает
+    // TaskTimeAdapterFactory.
+    private transient boolean hasStart;
+    private transient long startSecond;
+    private transient int startNano;
+    private transient boolean hasDuration;
+    private transient long durationSeconds;
+    private transient int durationNano;
+    private transient LocalDateTime startView;
+    private transient Duration durationView;
+    private transient LocalDateTime endView;
 
     public Task(int id, String nameTask, String descriptionTask, TaskStatus status, TaskType taskType,
                 Duration duration, LocalDateTime startTime) {
@@ -23,37 +37,134 @@ public class Task {
         this.descriptionTask = descriptionTask;
         this.status = status;
         this.taskType = taskType;
-        this.duration = duration;
-        this.startTime = startTime;
+        setDuration(duration);
+        setStartTime(startTime);
     }
 
     public Duration getDuration() {
-        return duration;
+        if (hasDuration && durationView == null) {
+            durationView = Duration.ofSeconds(durationSeconds, durationNano);
+        }
+        return durationView;
     }
 
     public void setDuration(Duration duration) {
-        this.duration = duration;
+        durationView = duration;
+        endView = null;
+        hasDuration = duration != null;
+        durationSeconds = hasDuration ? duration.getSeconds() : 0;
+        durationNano = hasDuration ? duration.getNano() : 0;
     }
 
 
     public LocalDateTime getStartTime() {
-        return startTime;
+        if (hasStart && startView == null) {
+            startView = LocalDateTime.ofEpochSecond(startSecond, startNano, ZoneOffset.UTC);
+        }
+        return startView;
     }
 
     public void setStartTime(LocalDateTime startTime) {
-        this.startTime = startTime;
+        startView = startTime;
+        endView = null;
+        hasStart = startTime != null;
+        startSecond = hasStart ? startTime.toEpochSecond(ZoneOffset.UTC) : 0;
+        startNano = hasStart ? startTime.getNano() : 0;
     }
 
 
     public LocalDateTime getEndTime() {
-        return startTime != null && duration != null ? startTime.plus(duration) : null;
+        if (hasStart && hasDuration && endView == null) {
+            endView = LocalDateTime.ofEpochSecond(endSecond(), endNano(), ZoneOffset.UTC);
+        }
+        return endView;
     }
 
+    public boolean hasStartTime() {
+        return hasStart;
+    }
+
+    // Примитивные аналоги геттеров для сравнения. Конец без длительности совпадает с началом.
+    // Эпик вычисляет время по подзадачам и переопределяет эти методы.
+    long startSecond() {
+        return startSecond;
+    }
+
+    int startNano() {
+        return startNano;
+    }
+
+    long endSecond() {
+        if (!hasDuration) {
+            return startSecond;
+        }
+        long seconds = Math.addExact(startSecond, durationSeconds);
+        return startNano + durationNano >= NANOS_PER_SECOND ? Math.addExact(seconds, 1) : seconds;
+    }
+
+    int endNano() {
+        return hasDuration ? (startNano + durationNano) % NANOS_PER_SECOND : startNano;
+    }
+
+    // Строгое пересечение интервалов [начало, конец); задача без начала ни с чем не пересекается.
     public boolean overlapsWith(Task other) {
-        if (other == null || this.startTime == null || other.startTime == null) {
+        if (other == null || !hasStartTime() || !other.hasStartTime()) {
             return false;
         }
-        return this.startTime.isBefore(other.getEndTime()) && other.getStartTime().isBefore(this.getEndTime());
+        return compare(startSecond(), startNano(), other.endSecond(), other.endNano()) < 0
+                && compare(other.startSecond(), other.startNano(), endSecond(), endNano()) < 0;
+    }
+
+    // Пересечение по правилам расписания: нулевая или отсутствующая длительность занимает одну
+    // наносекунду, поэтому совпадение начала — пересечение, а касание концом и началом — нет.
+    public boolean conflictsWith(Task other) {
+        if (other == null || !hasStartTime() || !other.hasStartTime()) {
+            return false;
+        }
+        int starts = compare(startSecond(), startNano(), other.startSecond(), other.startNano());
+        if (starts == 0) {
+            return true;
+        }
+        Task first = starts < 0 ? this : other;
+        Task second = starts < 0 ? other : this;
+        return compare(first.endSecond(), first.endNano(), second.startSecond(), second.startNano()) > 0;
+    }
+
+    // Порядок приоритетного списка: по началу, задачи без начала в конце, затем по id.
+    public static int compareByStart(Task first, Task second) {
+        if (first.hasStartTime() != second.hasStartTime()) {
+            return first.hasStartTime() ? -1 : 1;
+        }
+        int result = first.hasStartTime()
+                ? compare(first.startSecond(), first.startNano(), second.startSecond(), second.startNano()) : 0;
+        return result != 0 ? result : Integer.compare(first.getId(), second.getId());
+    }
+
+    // Начало и конец занятости в наносекундах эпохи UTC для индексов промежутков; время за пределами
+    // long (после 2262 года) прижимается к краю оси. Требуют наличия начала.
+    public long getStartNanos() {
+        return toNanos(startSecond(), startNano());
+    }
+
+    public long getBusyUntilNanos() {
+        long end = toNanos(endSecond(), endNano());
+        long start = getStartNanos();
+        return end > start || end == Long.MAX_VALUE ? end : start + 1;
+    }
+
+    private static long toNanos(long seconds, int nanos) {
+        if (seconds >= Long.MAX_VALUE / NANOS_PER_SECOND) {
+            return Long.MAX_VALUE;
+        }
+        if (seconds < Long.MIN_VALUE / NANOS_PER_SECOND) {
+            return Long.MIN_VALUE;
+        }
+        return seconds * NANOS_PER_SECOND + nanos;
+    }
+
+    static int compare(long seconds1, int nanos1, long seconds2, int nanos2) {
+        int result = Long.compare(seconds1, seconds2);
+        return result != 0 ? result : Integer.compare(nanos1, nanos2);
     }
 
     public String getNameTask() {
@@ -0,0 +1,255 @@
+package com.yandex.tracker.service;
+
+import com.yandex.tracker.model.Epic;
+import com.yandex.tracker.model.Subtask;
+import com.yandex.tracker.model.Task;
+import com.yandex.tracker.util.IntHashSet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.IntFunction;
+
+// Проверка и применение пакета команд. Проверка проигрывает пакет по порядку поверх текущего состояния,
+// ничего в нём не меняя: изменённые записи хранятся в наложении, а задачи пакета с началом — в отдельном
+// упорядоченном наборе. Пересечения ищутся среди соседей в приоритетном индексе, пропуская записи, которые
+// пакет уже изменил или удалил, и в наборе пакета по правилам Task.conflictsWith, как при одиночной
+// вставке, поэтому проверка занимает O(k log n) для k команд.
+// Пакет принимается, только если каждая команда прошла бы и при последовательных вызовах, так что
+// применение после проверки не прерывается на середине.
+final class BatchPlan {
+    private final IntFunction<? extends Task> records;
+    private final IntFunction<List<Subtask>> subtasksOf;
+    private final NavigableSet<Task> prioritized;
+    // Записи, изменённые пакетом; значение null — запись удалена. Созданные командой n лежат под ключом -n.
+    private final Map<Integer, Task> changed = new HashMap<>();
+    // Id записей индекса, прежний интервал которых пакет освободил.
+    private final IntHashSet released = new IntHashSet();
+    // Задачи пакета с началом; попарно не пересекаются, поэтому одинакового начала в наборе нет.
+    private final TreeSet<Task> held = new TreeSet<>(Task::compareByStart);
+    private final Map<Integer, Task> heldByKey = new HashMap<>();
+
+    private BatchPlan(IntFunction<? extends Task> records, IntFunction<List<Subtask>> subtasksOf,
+                      NavigableSet<Task> prioritized) {
+        this.records = records;
+        this.subtasksOf = subtasksOf;
+        this.prioritized = prioritized;
+    }
+
+    // records — запись по id без записи в историю, subtasksOf — подзадачи эпика, prioritized — задачи
+    // с началом в порядке (начало, id), попарно не пересекающиеся. Ошибка — IllegalArgumentException
+    // с номером команды.
+    static void check(List<Command> commands, IntFunction<? extends Task> records,
+                      IntFunction<List<Subtask>> subtasksOf, NavigableSet<Task> prioritized) {
+        if (commands == null) {
+            throw new IllegalArgumentException("Пакет команд не задан");
+        }
+        BatchPlan plan = new BatchPlan(records, subtasksOf, prioritized);
+        for (int index = 0; index < commands.size(); index++) {
+            Command command = commands.get(index);
+            try {
+                if (command == null) {
+                    throw new IllegalArgumentException("Пустая команда");
+                }
+                plan.accept(command, index + 1);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Команда " + (index + 1) + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    // Применяет проверенный пакет вызовами менеджера и возвращает id записи каждой команды.
+    static List<Integer> apply(TaskManager manager, List<Command> commands) {
+        int[] created = new int[commands.size()];
+        List<Integer> result = new ArrayList<>(commands.size());
+        for (int index = 0; index < commands.size(); index++) {
+            Command command = commands.get(index);
+            Task task = command.getTask();
+            if (task instanceof Subtask subtask) {
+                subtask.setEpicId(resolve(created, subtask.getEpicId()));
+            }
+            int id;
+            switch (command.getOperation()) {
+                case CREATE -> {
+                    id = switch (command.getType()) {
+                        case TASK -> manager.createTask(task);
+                        case EPIC -> manager.createEpic((Epic) task);
+                        case SUBTASK -> manager.createSubtask((Subtask) task);
+                    };
+                    created[index] = id;
+                }
+                case UPDATE -> {
+                    id = resolve(created, command.getId());
+                    task.setId(id);
+                    switch (command.getType()) {
+                        case TASK -> manager.updateTask(task);
+                        case EPIC -> manager.updateEpic((Epic) task);
+                        case SUBTASK -> manager.updateSubtask((Subtask) task);
+                    }
+                }
+                default -> {
+                    id = resolve(created, command.getId());
+                    switch (command.getType()) {
+                        case TASK -> manager.removeTaskById(id);
+                        case EPIC -> manager.removeEpicById(id);
+                        case SUBTASK -> manager.removeSubtaskById(id);
+                    }
+                }
+            }
+            result.add(id);
+        }
+        return result;
+    }
+
+    private static int resolve(int[] created, int id) {
+        return id < 0 ? created[-id - 1] : id;
+    }
+
+    private void accept(Command command, int number) {
+        TaskType type = command.getType();
+        Task task = command.getTask();
+        if (command.getOperation() != Command.Operation.CREATE) {
+            checkReference(command.getId(), number);
+        }
+        if (task instanceof Subtask subtask) {
+            checkReference(subtask.getEpicId(), number);
+        }
+        switch (command.getOperation()) {
+            case CREATE -> {
+                // Как и одиночное создание, проверяется только занятость явно заданного id.
+                if (task.getId() > 0 && typeOf(record(task.getId())) == type) {
+                    throw new IllegalArgumentException("Запись с id " + task.getId() + " уже существует");
+                }
+                if (task instanceof Subtask subtask) {
+                    requireEpic(subtask.getEpicId());
+                }
+                occupy(-number, task);
+                changed.put(-number, task);
+            }
+            case UPDATE -> {
+                requireRecord(command.getId(), type);
+                if (task instanceof Subtask subtask) {
+                    requireEpic(subtask.getEpicId());
+                }
+                if (type != TaskType.EPIC) {
+                    release(command.getId());
+                    occupy(command.getId(), task);
+                }
+                changed.put(command.getId(), task);
+            }
+            case DELETE -> {
+                if (typeOf(record(command.getId())) != type) {
+                    return;
+                }
+                if (type == TaskType.EPIC) {
+                    deleteSubtasksOf(command.getId());
+                }
+                delete(command.getId());
+            }
+        }
+    }
+
+    // Отрицательный id допустим, только если ссылается на одну из предыдущих команд создания.
+    private void checkReference(int id, int number) {
+        if (id < 0 && (-id >= number || !changed.containsKey(id))) {
+            throw new IllegalArgumentException("Ссылка " + id + " не указывает на созданную ранее запись");
+        }
+    }
+
+    private Task record(int id) {
+        return changed.containsKey(id) ? changed.get(id) : id > 0 ? records.apply(id) : null;
+    }
+
+    private void requireRecord(int id, TaskType type) {
+        if (typeOf(record(id)) != type) {
+            throw new IllegalArgumentException("Записи типа " + type + " с id " + id + " нет");
+        }
+    }
+
+    private void requireEpic(int epicId) {
+        if (!(record(epicId) instanceof Epic)) {
+            throw new IllegalArgumentException("Эпик с ID " + epicId + " не существует");
+        }
+    }
+
+    // Подзадачи эпика на текущем шаге пакета: исходные, которые пакет не трогал, и изменённые пакетом.
+    private void deleteSubtasksOf(int epicId) {
+        if (epicId > 0 && records.apply(epicId) instanceof Epic) {
+            for (Subtask subtask : subtasksOf.apply(epicId)) {
+                if (!changed.containsKey(subtask.getId())) {
+                    delete(subtask.getId());
+                }
+            }
+        }
+        List<Integer> moved = new ArrayList<>();
+        for (Map.Entry<Integer, Task> entry : changed.entrySet()) {
+            if (entry.getValue() instanceof Subtask subtask && subtask.getEpicId() == epicId) {
+                moved.add(entry.getKey());
+            }
+        }
+        for (int key : moved) {
+            delete(key);
+        }
+    }
+
+    private void delete(int key) {
+        release(key);
+        changed.put(key, null);
+    }
+
+    private void release(int key) {
+        Task task = heldByKey.remove(key);
+        if (task != null) {
+            held.remove(task);
+        } else if (key > 0) {
+            released.add(key);
+        }
+    }
+
+    private void occupy(int key, Task task) {
+        if (!task.hasStartTime() || task instanceof Epic) {
+            return;
+        }
+        if (overlapsIndex(task) || overlapsBatch(task)) {
+            throw Timeline.overlapError(task);
+        }
+        held.add(task);
+        heldByKey.put(key, task);
+    }
+
+    // Интервалы индекса не пересекаются, поэтому достаточно ближайших слева и справа, ещё не освобождённых.
+    private boolean overlapsIndex(Task task) {
+        Task probe = TimeWindows.probe(task.getStartTime());
+        return task.conflictsWith(nextHeld(prioritized.headSet(probe, false).descendingIterator()))
+                || task.conflictsWith(nextHeld(prioritized.tailSet(probe, true).iterator()));
+    }
+
+    private Task nextHeld(Iterator<Task> tasks) {
+        while (tasks.hasNext()) {
+            Task task = tasks.next();
+            if (!released.contains(task.getId())) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private boolean overlapsBatch(Task task) {
+        Task probe = TimeWindows.probe(task.getStartTime());
+        return task.conflictsWith(held.lower(probe)) || task.conflictsWith(held.ceiling(probe));
+    }
+
+    private static TaskType typeOf(Task task) {
+        if (task == null) {
+            return null;
+        }
+        if (task instanceof Epic) {
+            return TaskType.EPIC;
+        }
+        return task instanceof Subtask ? TaskType.SUBTASK : TaskType.TASK;
+    }
+}
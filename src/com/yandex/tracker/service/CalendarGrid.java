@@ -0,0 +1,164 @@
+package com.yandex.tracker.service;
+
+import com.yandex.tracker.model.Task;
+import com.yandex.tracker.util.IntObjectMap;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.NavigableSet;
+
+// Календарная сетка для быстрой проверки пересечений: горизонт планирования делится на слоты равной длины,
+// и слот отмечается в битовой карте, если его задевает хотя бы одна задача. Отметка, снятие и проверка
+// интервала — операции над словами long[], не зависящие от числа задач. Сетка грубая: слот на границе
+// может делить несколько коротких задач, поэтому отметка только в граничных слотах не доказывает
+// пересечения, и тогда решает упорядоченный набор. Задачи вне горизонта сетка не видит.
+// Сетка обслуживает один менеджер и меняется только вместе с его упорядоченным набором.
+public final class CalendarGrid {
+    enum Verdict {
+        FREE,
+        BUSY,
+        UNKNOWN
+    }
+
+    private final LocalDateTime start;
+    private final long origin;
+    private final long end;
+    private final long slotNanos;
+    private final long[] words;
+    // Слоты, отмеченные задачей: нужны для снятия, если время задачи поменяли прямо в объекте.
+    private final IntObjectMap<int[]> reserved = new IntObjectMap<>();
+    private NavigableSet<Task> timeline;
+
+    public CalendarGrid(LocalDateTime start, Duration slot, int slots) {
+        if (start == null || slot == null || slot.isNegative() || slot.isZero() || slots <= 0) {
+            throw new IllegalArgumentException("Нужны начало горизонта, положительная длина слота и число слотов");
+        }
+        this.start = start;
+        this.origin = TimeWindows.toNanos(start);
+        this.slotNanos = TimeWindows.busyNanos(slot);
+        try {
+            this.end = Math.addExact(origin, Math.multiplyExact(slotNanos, slots));
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Горизонт сетки выходит за 2262 год", e);
+        }
+        this.words = new long[(slots + Long.SIZE - 1) / Long.SIZE];
+    }
+
+    // Горизонт на год вперёд от start со слотами по 15 минут: 35 040 слотов, около 4 КБ.
+    public static CalendarGrid yearOfQuarterHours(LocalDateTime start) {
+        return new CalendarGrid(start, Duration.ofMinutes(15), 365 * 24 * 4);
+    }
+
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    public LocalDateTime getEnd() {
+        return TimeWindows.fromNanos(end);
+    }
+
+    void bind(NavigableSet<Task> timeline) {
+        if (this.timeline != null) {
+            throw new IllegalStateException("Календарная сетка уже используется другим менеджером");
+        }
+        this.timeline = timeline;
+    }
+
+    // FREE — интервал задачи внутри горизонта и все его слоты свободны; BUSY — отмечен слот, целиком
+    // покрытый задачей, то есть пересечение точно есть; UNKNOWN — нужна точная проверка.
+    Verdict check(Task task) {
+        long from = task.getStartNanos();
+        long to = task.getBusyUntilNanos();
+        if (from < origin || to > end) {
+            return Verdict.UNKNOWN;
+        }
+        int first = slot(from);
+        int last = slot(to - 1);
+        if (!any(first, last)) {
+            return Verdict.FREE;
+        }
+        int firstCovered = from == origin + first * slotNanos ? first : first + 1;
+        int lastCovered = to == origin + (last + 1) * slotNanos ? last : last - 1;
+        return firstCovered <= lastCovered && any(firstCovered, lastCovered) ? Verdict.BUSY : Verdict.UNKNOWN;
+    }
+
+    // Отмечает слоты, которые задевает задача, в пределах горизонта; прежняя отметка задачи снимается.
+    void reserve(Task task) {
+        release(task.getId());
+        long from = Math.max(task.getStartNanos(), origin);
+        long to = Math.min(task.getBusyUntilNanos(), end);
+        if (from >= to) {
+            return;
+        }
+        int first = slot(from);
+        int last = slot(to - 1);
+        set(first, last, true);
+        reserved.put(task.getId(), new int[]{first, last});
+    }
+
+    // Снимает отметки задачи, уже удалённой из набора. Граничные слоты могут задевать и соседние задачи,
+    // их отметки восстанавливаются по набору.
+    void release(int id) {
+        int[] range = reserved.remove(id);
+        if (range == null) {
+            return;
+        }
+        set(range[0], range[1], false);
+        remark(range[0]);
+        if (range[1] != range[0]) {
+            remark(range[1]);
+        }
+    }
+
+    // Задачи не пересекаются, поэтому слот задевает хотя бы одна из них, только если его задевает
+    // последняя задача, начавшаяся до конца слота.
+    private void remark(int slot) {
+        long slotStart = origin + slot * slotNanos;
+        Task last = timeline.lower(TimeWindows.probe(TimeWindows.fromNanos(slotStart + slotNanos)));
+        if (last != null && last.getBusyUntilNanos() > slotStart) {
+            set(slot, slot, true);
+        }
+    }
+
+    void clear() {
+        Arrays.fill(words, 0);
+        reserved.clear();
+    }
+
+    private int slot(long nanos) {
+        return (int) ((nanos - origin) / slotNanos);
+    }
+
+    private boolean any(int first, int last) {
+        int firstWord = first >>> 6;
+        int lastWord = last >>> 6;
+        for (int index = firstWord; index <= lastWord; index++) {
+            if ((words[index] & mask(index, first, last)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void set(int first, int last, boolean value) {
+        int firstWord = first >>> 6;
+        int lastWord = last >>> 6;
+        for (int index = firstWord; index <= lastWord; index++) {
+            long mask = mask(index, first, last);
+            words[index] = value ? words[index] | mask : words[index] & ~mask;
+        }
+    }
+
+    // Биты слова index, попадающие в диапазон слотов [first, last].
+    private static long mask(int index, int first, int last) {
+        long mask = -1L;
+        if (index == first >>> 6) {
+            mask &= -1L << (first & 63);
+        }
+        if (index == last >>> 6) {
+            mask &= -1L >>> (63 - (last & 63));
+        }
+        return mask;
+    }
+}
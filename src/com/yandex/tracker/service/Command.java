@@ -0,0 +1,71 @@
+package com.yandex.tracker.service;
+
+import com.yandex.tracker.model.Epic;
+import com.yandex.tracker.model.Subtask;
+import com.yandex.tracker.model.Task;
+
+// Команда пакета для TaskManager.applyBatch: создание, обновление или удаление одной записи.
+// Отрицательный id -n (в том числе epicId подзадачи) ссылается на запись, созданную n-й командой
+// того же пакета, считая с единицы: так в одном пакете можно создать эпик вместе с подзадачами.
+public final class Command {
+    public enum Operation {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+
+    private final Operation operation;
+    private final TaskType type;
+    private final Task task;
+    private final int id;
+
+    private Command(Operation operation, TaskType type, Task task, int id) {
+        this.operation = operation;
+        this.type = type;
+        this.task = task;
+        this.id = id;
+    }
+
+    public static Command create(Task task) {
+        return new Command(Operation.CREATE, typeOf(task), task, task.getId());
+    }
+
+    public static Command update(Task task) {
+        return new Command(Operation.UPDATE, typeOf(task), task, task.getId());
+    }
+
+    public static Command delete(TaskType type, int id) {
+        if (type == null) {
+            throw new IllegalArgumentException("Не указан тип удаляемой записи");
+        }
+        return new Command(Operation.DELETE, type, null, id);
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public TaskType getType() {
+        return type;
+    }
+
+    // Запись для создания или обновления; у удаления null.
+    public Task getTask() {
+        return task;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    // Тип определяется по классу записи: поле taskType у записей из JSON может быть не заполнено.
+    private static TaskType typeOf(Task task) {
+        if (task == null) {
+            throw new IllegalArgumentException("Команда создания или обновления без записи");
+        }
+        if (task instanceof Epic) {
+            return TaskType.EPIC;
+        }
+        return task instanceof Subtask ? TaskType.SUBTASK : TaskType.TASK;
+    }
+}
@@ -0,0 +1,842 @@
+package com.yandex.tracker.service;
+
+import com.yandex.tracker.model.Epic;
+import com.yandex.tracker.model.Subtask;
+import com.yandex.tracker.model.Task;
+import com.yandex.tracker.util.GapIndex;
+import com.yandex.tracker.util.IntBitmap;
+import com.yandex.tracker.util.IntHashSet;
+import com.yandex.tracker.util.TextIndex;
+import com.yandex.tracker.util.VersionedSnapshot;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Менеджер задач для многопоточного доступа. Записи лежат в ConcurrentHashMap, а операции над одной
+// записью защищены блокировкой её полосы (id по модулю числа полос): операции с разными id выполняются
+// параллельно. Подзадача и её эпик меняются только под блокировками обеих полос, поэтому блокировка полосы
+// эпика защищает и его подзадачи, и индекс epicId -> id подзадач. Несколько полос всегда берутся
+// в порядке возрастания номера, за ними — блокировка упорядоченного по времени индекса, последней —
+// блокировка индексов id. История защищена собственным монитором, внутри которого другие блокировки не берутся.
+// Чтение не берёт блокировок: списки отдаются неизменяемыми версионными снимками (VersionedSnapshot),
+// которые пересобираются только после записи. Статус и время эпика меняются вместе с подзадачами, поэтому
+// читатель получает копию эпика: запись лишь сбрасывает её, а новая строится при первом чтении под
+// блокировкой чтения полосы эпика. Возвращаемые объекты менять нельзя, изменения передаются через update-методы.
+public class ConcurrentTaskManager implements TaskManager {
+    private static final int STRIPES = 64;
+    private static final int ID_BLOCK = 64;
+
+    private final IdAllocator countID = new IdAllocator(ID_BLOCK, highWater -> {
+    });
+    private final ConcurrentHashMap<Integer, Task> tasks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Subtask> subtasks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Epic> epics = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, IntHashSet> epicSubtaskIds = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock[] stripes = new ReentrantReadWriteLock[STRIPES];
+    private final ReentrantReadWriteLock timeLock = new ReentrantReadWriteLock();
+    // Упорядоченные id записей каждого типа и каждого статуса внутри типа, индекс слов для поиска. Меняются под
+    // блокировкой полосы записи и собственной блокировкой, которая берётся последней и внутри которой другие
+    // блокировки не берутся.
+    private final IntBitmap[] typeIndex = new IntBitmap[TaskType.values().length];
+    private final IntBitmap[][] statusIndex = new IntBitmap[TaskType.values().length][TaskStatus.values().length];
+    private final TextIndex textIndex = new TextIndex();
+    private final ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
+    private final ConcurrentSkipListSet<Task> prioritizedTasks = new ConcurrentSkipListSet<>(Task::compareByStart);
+    // Свободные промежутки между задачами индекса; меняются и читаются под блокировкой индекса времени.
+    private final GapIndex gaps = new GapIndex();
+    private final Timeline timeline = new GapTimeline();
+    private final ConcurrentHashMap<Integer, Epic> epicViews = new ConcurrentHashMap<>();
+    private final TaskEventBus events = new TaskEventBus();
+    private final VersionedSnapshot<Task> taskSnapshot = new VersionedSnapshot<>(tasks::values);
+    private final VersionedSnapshot<Subtask> subtaskSnapshot = new VersionedSnapshot<>(subtasks::values);
+    private final VersionedSnapshot<Epic> epicSnapshot = new VersionedSnapshot<>(this::epicViews);
+    private final VersionedSnapshot<Task> prioritizedSnapshot = new VersionedSnapshot<>(() -> prioritizedTasks);
+    private final HistoryManager historyManager;
+
+    public ConcurrentTaskManager(HistoryManager historyManager) {
+        this.historyManager = historyManager;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+        for (int type = 0; type < typeIndex.length; type++) {
+            typeIndex[type] = new IntBitmap();
+            for (int status = 0; status < statusIndex[type].length; status++) {
+                statusIndex[type][status] = new IntBitmap();
+            }
+        }
+    }
+
+    public ConcurrentTaskManager() {
+        this(Managers.getDefaultHistory());
+    }
+
+    @Override
+    public int createTask(Task task) {
+        if (task.getId() != 0 && tasks.containsKey(task.getId())) {
+            throw new IllegalArgumentException("Задачи с одинаковым id не должны добавляться.");
+        }
+        int id = countID.next();
+        Lock[] locks = writeLocks(id);
+        try {
+            task.setId(id);
+            if (task.hasStartTime()) {
+                addToPrioritizedTasks(task);
+            }
+            tasks.put(id, task);
+            index(TaskType.TASK, task);
+            events.publish(TaskEvent.Kind.CREATED, TaskType.TASK, id, null, events.snapshot(task));
+        } finally {
+            taskSnapshot.invalidate();
+            prioritizedSnapshot.invalidate();
+            unlock(locks);
+        }
+        return id;
+    }
+
+    @Override
+    public Integer createSubtask(Subtask subtask) {
+        if (subtask.getId() != 0 && subtasks.containsKey(subtask.getId())) {
+            throw new IllegalArgumentException("Подзадачи с одинаковым id не должны добавляться.");
+        }
+        int epicId = subtask.getEpicId();
+        int id = countID.next();
+        Lock[] locks = writeLocks(id, epicId);
+        try {
+            Epic epic = epics.get(epicId);
+            if (epic == null) {
+                throw new IllegalArgumentException("Эпик с ID " + epicId + "  не существует.");
+            }
+            subtask.setId(id);
+            if (subtask.hasStartTime()) {
+                addToPrioritizedTasks(subtask);
+            }
+            subtasks.put(id, subtask);
+            index(TaskType.SUBTASK, subtask);
+            events.publish(TaskEvent.Kind.CREATED, TaskType.SUBTASK, id, null, events.snapshot(subtask));
+            Epic epicBefore = publishedEpic(epicId);
+            epicSubtaskIds.get(epicId).add(id);
+            epic.attachSubtask(subtask);
+            epic.updateStatus();
+            publishEpic(epicId);
+            publishStatusChange(epicBefore, epicId);
+        } finally {
+            subtaskSnapshot.invalidate();
+            prioritizedSnapshot.invalidate();
+            unlock(locks);
+        }
+        return id;
+    }
+
+    @Override
+    public int createEpic(Epic epic) {
+        int id = countID.next();
+        Lock[] locks = writeLocks(id);
+        try {
+            epic.setId(id);
+            epicSubtaskIds.put(id, new IntHashSet());
+            epics.put(id, epic);
+            publishEpic(id);
+            events.publish(TaskEvent.Kind.CREATED, TaskType.EPIC, id, null, publishedEpic(id));
+        } finally {
+            unlock(locks);
+        }
+        return id;
+    }
+
+    @Override
+    public void removeTasks() {
+        Lock[] locks = writeLocksAll();
+        try {
+            List<Task> removed = events.isActive() ? new ArrayList<>(tasks.values()) : List.of();
+            for (Integer id : tasks.keySet()) {
+                removeFromHistory(id);
+            }
+            withTimeLock(() -> timeline.removeIf(task -> !(task instanceof Subtask)));
+            tasks.clear();
+            clearIndex(TaskType.TASK);
+            publishDeleted(TaskType.TASK, removed);
+        } finally {
+            taskSnapshot.invalidate();
+            prioritizedSnapshot.invalidate();
+            unlock(locks);
+        }
+    }
+
+    @Override
+    public void removeEpics() {
+        Lock[] locks = writeLocksAll();
+        try {
+            List<Epic> removedEpics = events.isActive() ? epicViews() : List.of();
+            List<Subtask> removedSubtasks = events.isActive() ? new ArrayList<>(subtasks.values()) : List.of();
+            for (Integer id : epics.keySet()) {
+                removeFromHistory(id);
+            }
+            for (Integer id : subtasks.keySet()) {
+                removeFromHistory(id);
+            }
+            withTimeLock(() -> timeline.removeIf(task -> task instanceof Subtask));
+            epics.clear();
+            clearIndex(TaskType.EPIC);
+            epicSubtaskIds.clear();
+            subtasks.clear();
+            clearIndex(TaskType.SUBTASK);
+            epicViews.clear();
+            publishDeleted(TaskType.SUBTASK, removedSubtasks);
+            publishDeleted(TaskType.EPIC, removedEpics);
+        } finally {
+            epicSnapshot.invalidate();
+            subtaskSnapshot.invalidate();
+            prioritizedSnapshot.invalidate();
+            unlock(locks);
+        }
+    }
+
+    @Override
+    public void removeSubtasks() {
+        Lock[] locks = writeLocksAll();
+        try {
+            List<Subtask> removed = events.isActive() ? new ArrayList<>(subtasks.values()) : List.of();
+            for (Integer id : subtasks.keySet()) {
+                removeFromHistory(id);
+            }
+            withTimeLock(() -> timeline.removeIf(task -> task instanceof Subtask));
+            subtasks.clear();
+            clearIndex(TaskType.SUBTASK);
+            publishDeleted(TaskType.SUBTASK, removed);
+            for (Epic epic : epics.values()) {
+                Epic epicBefore = publishedEpic(epic.getId());
+                epic.cleanSubtasks();
+                epicSubtaskIds.get(epic.getId()).clear();
+                epic.updateStatus();
+                publishEpic(epic.getId());
+                publishStatusChange(epicBefore, epic.getId());
+            }
+        } finally {
+            subtaskSnapshot.invalidate();
+            prioritizedSnapshot.invalidate();
+            unlock(locks);
+        }
+    }
+
+    @Override
+    public Task getTaskById(int id) {
+        Task task = tasks.get(id);
+        if (task != null) {
+            addToHistory(task);
+        }
+        return task;
+    }
+
+    @Override
+    public Subtask getSubtaskById(int id) {
+        Subtask subtask = subtasks.get(id);
+        if (subtask != null) {
+            addToHistory(subtask);
+        }
+        return subtask;
+    }
+
+    @Override
+    public Epic getEpicById(int id) {
+        Epic epic = epicView(id);
+        if (epic != null) {
+            addToHistory(epic);
+        }
+        return epic;
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        Lock[] locks = writeLocks(task.getId());
+        try {
+            Task oldTask = tasks.get(task.getId());
+            Task before = events.previous(oldTask);
+            replaceInPrioritizedTasks(oldTask, task);
+            tasks.put(task.getId(), task);
+            index(TaskType.TASK, task);
+            events.publish(oldTask == null ? TaskEvent.Kind.CREATED : TaskEvent.Kind.UPDATED, TaskType.TASK,
+                    task.getId(), before, events.snapshot(task));
+        } finally {
+            taskSnapshot.invalidate();
+            prioritizedSnapshot.invalidate();
+            unlock(locks);
+        }
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        int id = subtask.getId();
+        while (true) {
+            // Эпик прежней версии известен только до взятия блокировок: если подзадачу успели перенести
+            // в другой эпик, блокировки берутся заново.
+            Subtask expected = subtasks.get(id);
+            int oldEpicId = expected != null ? expected.getEpicId() : subtask.getEpicId();
+            Lock[] locks = writeLocks(id, oldEpicId, subtask.getEpicId());
+            try {
+                Subtask oldSubtask = subtasks.get(id);
+                if (oldSubtask != expected) {
+                    continue;
+                }
+                Task before = events.previous(oldSubtask);
+                replaceInPrioritizedTasks(oldSubtask, subtask);
+                subtasks.put(id, subtask);
+                index(TaskType.SUBTASK, subtask);
+                events.publish(oldSubtask == null ? TaskEvent.Kind.CREATED : TaskEvent.Kind.UPDATED,
+                        TaskType.SUBTASK, id, before, events.snapshot(subtask));
+                if (oldSubtask != null) {
+                    unlinkSubtask(oldSubtask);
+                    Epic oldEpic = epics.get(oldEpicId);
+                    if (oldEpic != null) {
+                        Epic epicBefore = publishedEpic(oldEpicId);
+                        oldEpic.updateStatus();
+                        publishEpic(oldEpicId);
+                        publishStatusChange(epicBefore, oldEpicId);
+                    }
+                }
+                Epic epic = epics.get(subtask.getEpicId());
+                if (epic != null) {
+                    Epic epicBefore = publishedEpic(epic.getId());
+                    epicSubtaskIds.get(epic.getId()).add(id);
+                    epic.attachSubtask(subtask);
+                    epic.updateStatus();
+                    publishEpic(epic.getId());
+                    publishStatusChange(epicBefore, epic.getId());
+                }
+                subtaskSnapshot.invalidate();
+                prioritizedSnapshot.invalidate();
+                return;
+            } finally {
+                unlock(locks);
+            }
+        }
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        Lock[] locks = writeLocks(epic.getId());
+        try {
+            Epic existingEpic = epics.get(epic.getId());
+            if (existingEpic == null) {
+                throw new IllegalArgumentException("Эпик с ID " + epic.getId() + " не найден.");
+            }
+            Epic before = publishedEpic(epic.getId());
+            existingEpic.setDescriptionTask(epic.getDescriptionTask());
+            existingEpic.updateStatus();
+            publishEpic(existingEpic.getId());
+            events.publish(TaskEvent.Kind.UPDATED, TaskType.EPIC, epic.getId(), before, publishedEpic(epic.getId()));
+        } finally {
+            unlock(locks);
+        }
+    }
+
+    @Override
+    public void removeTaskById(int id) {
+        Lock[] locks = writeLocks(id);
+        try {
+            Task task = tasks.remove(id);
+            if (task != null) {
+                unindex(TaskType.TASK, id);
+                removeFromPrioritizedTasks(task);
+                removeFromHistory(id);
+                events.publish(TaskEvent.Kind.DELETED, TaskType.TASK, id, events.previous(task), null);
+                taskSnapshot.invalidate();
+                prioritizedSnapshot.invalidate();
+            }
+        } finally {
+            unlock(locks);
+        }
+    }
+
+    @Override
+    public void removeSubtaskById(int id) {
+        while (true) {
+            Subtask expected = subtasks.get(id);
+            if (expected == null) {
+                return;
+            }
+            Lock[] locks = writeLocks(id, expected.getEpicId());
+            try {
+                if (subtasks.get(id) != expected) {
+                    continue;
+                }
+                subtasks.remove(id);
+                unindex(TaskType.SUBTASK, id);
+                removeFromPrioritizedTasks(expected);
+                unlinkSubtask(expected);
+                events.publish(TaskEvent.Kind.DELETED, TaskType.SUBTASK, id, events.previous(expected), null);
+                Epic epic = epics.get(expected.getEpicId());
+                if (epic != null) {
+                    Epic epicBefore = publishedEpic(epic.getId());
+                    epic.updateStatus();
+                    publishEpic(epic.getId());
+                    publishStatusChange(epicBefore, epic.getId());
+                }
+                removeFromHistory(id);
+                subtaskSnapshot.invalidate();
+                prioritizedSnapshot.invalidate();
+                return;
+            } finally {
+                unlock(locks);
+            }
+        }
+    }
+
+    // Все изменения подзадач эпика идут под блокировкой его полосы, поэтому её достаточно для каскадного удаления.
+    @Override
+    public void removeEpicById(int id) {
+        Lock[] locks = writeLocks(id);
+        try {
+            Epic epic = epics.remove(id);
+            if (epic == null) {
+                return;
+            }
+            epicSubtaskIds.remove(id).forEach(subtaskId -> {
+                Subtask subtask = subtasks.remove(subtaskId);
+                unindex(TaskType.SUBTASK, subtaskId);
+                removeFromPrioritizedTasks(subtask);
+                removeFromHistory(subtaskId);
+                events.publish(TaskEvent.Kind.DELETED, TaskType.SUBTASK, subtaskId, events.previous(subtask), null);
+            });
+            removeFromHistory(id);
+            Epic before = publishedEpic(id);
+            publishEpic(id);
+            events.publish(TaskEvent.Kind.DELETED, TaskType.EPIC, id, before, null);
+            subtaskSnapshot.invalidate();
+            prioritizedSnapshot.invalidate();
+        } finally {
+            unlock(locks);
+        }
+    }
+
+    @Override
+    public List<Task> getTasks() {
+        return taskSnapshot.get();
+    }
+
+    @Override
+    public List<Subtask> getSubtasks() {
+        return subtaskSnapshot.get();
+    }
+
+    @Override
+    public List<Epic> getEpics() {
+        return epicSnapshot.get();
+    }
+
+    @Override
+    public List<Subtask> getEpicSubtasks(int epicId) {
+        Lock lock = stripe(epicId).readLock();
+        lock.lock();
+        try {
+            IntHashSet subtaskIds = epicSubtaskIds.get(epicId);
+            if (subtaskIds == null) {
+                return new ArrayList<>();
+            }
+            List<Subtask> result = new ArrayList<>(subtaskIds.size());
+            for (int subtaskId : subtaskIds.toSortedArray()) {
+                result.add(subtasks.get(subtaskId));
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        synchronized (historyManager) {
+            return historyManager.getHistory();
+        }
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return prioritizedSnapshot.get();
+    }
+
+    // Окна читаются прямо из индекса без блокировок, как и снимки.
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        return TimeWindows.overlapping(prioritizedTasks, from, to);
+    }
+
+    @Override
+    public List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        return TimeWindows.startingBetween(prioritizedTasks, from, to);
+    }
+
+    // Выборка по индексу статусов пропорциональна числу найденных записей; порядок — по id.
+    @Override
+    public List<Task> findByStatusAndType(TaskStatus status, TaskType type) {
+        int[] ids = indexedIds(statusIndex[type.ordinal()][status.ordinal()], Integer.MIN_VALUE, Integer.MAX_VALUE);
+        List<Task> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Task task = recordOf(type, id);
+            if (task != null && task.getStatus() == status) {
+                result.add(task);
+            }
+        }
+        return result;
+    }
+
+    // Страница читается из индекса id с позиции курсора. id берутся из индекса порциями, а записи читаются
+    // уже после его блокировки: удалённые или сменившие статус за это время пропускаются, чтение идёт дальше.
+    @Override
+    public Page<Task> getPage(TaskType type, TaskStatus status, String cursor, int limit) {
+        Page.checkLimit(limit);
+        int from = Integer.MIN_VALUE;
+        if (cursor != null) {
+            int after = PageCursor.parse(cursor).getId();
+            if (after == Integer.MAX_VALUE) {
+                return new Page<>(new ArrayList<>(), null);
+            }
+            from = after + 1;
+        }
+        IntBitmap index = status == null ? typeIndex[type.ordinal()] : statusIndex[type.ordinal()][status.ordinal()];
+        List<Task> candidates = new ArrayList<>(limit + 1);
+        while (candidates.size() <= limit) {
+            int[] ids = indexedIds(index, from, limit + 1 - candidates.size());
+            for (int id : ids) {
+                Task task = recordOf(type, id);
+                if (task != null && (status == null || task.getStatus() == status)) {
+                    candidates.add(task);
+                }
+            }
+            if (ids.length == 0 || ids[ids.length - 1] == Integer.MAX_VALUE) {
+                break;
+            }
+            from = ids[ids.length - 1] + 1;
+        }
+        return Page.of(candidates, limit, task -> PageCursor.byId(task.getId()));
+    }
+
+    // До count id индекса, не меньших from, по возрастанию.
+    private int[] indexedIds(IntBitmap index, int from, int count) {
+        Lock lock = indexLock.readLock();
+        lock.lock();
+        try {
+            int[] ids = new int[Math.min(count, index.size())];
+            int[] found = new int[1];
+            if (ids.length > 0) {
+                index.forEachFrom(from, id -> {
+                    ids[found[0]++] = id;
+                    return found[0] < ids.length;
+                });
+            }
+            return Arrays.copyOf(ids, found[0]);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // id находятся по индексу слов под блокировкой чтения, записи читаются после неё; удалённые пропускаются.
+    @Override
+    public List<Task> search(String query) {
+        List<Integer> ids = new ArrayList<>();
+        Lock lock = indexLock.readLock();
+        lock.lock();
+        try {
+            textIndex.search(query, ids::add);
+        } finally {
+            lock.unlock();
+        }
+        List<Task> result = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            Task task = tasks.get(id);
+            if (task == null) {
+                task = subtasks.get(id);
+            }
+            if (task == null) {
+                task = epicView(id);
+            }
+            if (task != null) {
+                result.add(task);
+            }
+        }
+        return result;
+    }
+
+    private Task recordOf(TaskType type, int id) {
+        return switch (type) {
+            case TASK -> tasks.get(id);
+            case EPIC -> epicView(id);
+            case SUBTASK -> subtasks.get(id);
+        };
+    }
+
+    @Override
+    public LocalDateTime findFreeSlot(Duration duration, LocalDateTime notBefore) {
+        TimeWindows.checkSlot(duration, notBefore);
+        long from = TimeWindows.toNanos(notBefore);
+        long start;
+        Lock lock = timeLock.readLock();
+        lock.lock();
+        try {
+            start = gaps.findFree(from, TimeWindows.busyNanos(duration));
+        } finally {
+            lock.unlock();
+        }
+        return start == from ? notBefore : TimeWindows.fromNanos(start);
+    }
+
+    @Override
+    public Page<Task> getPrioritizedPage(String cursor, int limit) {
+        return TimeWindows.page(prioritizedTasks, cursor, limit);
+    }
+
+    @Override
+    public Page<Task> getHistoryPage(String cursor, int limit) {
+        Page.checkLimit(limit);
+        Integer after = cursor == null ? null : PageCursor.parse(cursor).getId();
+        List<Task> candidates;
+        synchronized (historyManager) {
+            candidates = historyManager.getHistoryPage(after, limit + 1);
+        }
+        return Page.of(candidates, limit, task -> PageCursor.byId(task.getId()));
+    }
+
+    // Пакет проверяется и применяется под блокировками всех полос и индекса времени: другие записи не могут
+    // вклиниться между проверкой и применением. Вызовы менеджера внутри повторно берут те же блокировки.
+    @Override
+    public List<Integer> applyBatch(List<Command> commands) {
+        Lock[] locks = writeLocksAll();
+        Lock lock = timeLock.writeLock();
+        lock.lock();
+        try {
+            BatchPlan.check(commands, this::findTask, this::getEpicSubtasks, prioritizedTasks);
+            return BatchPlan.apply(this, commands);
+        } finally {
+            lock.unlock();
+            unlock(locks);
+        }
+    }
+
+    private Task findTask(int id) {
+        Task task = tasks.get(id);
+        if (task != null) {
+            return task;
+        }
+        Subtask subtask = subtasks.get(id);
+        return subtask != null ? subtask : epics.get(id);
+    }
+
+    @Override
+    public EventSubscription subscribe(TaskEventListener listener, int capacity) {
+        List<Task> records = new ArrayList<>(tasks.values());
+        records.addAll(subtasks.values());
+        records.addAll(epicViews());
+        return events.subscribe(listener, capacity, records);
+    }
+
+    // Смена статуса эпика из-за подзадач; прежняя и новая версии — опубликованные копии эпика.
+    private void publishStatusChange(Epic before, int epicId) {
+        Epic after = epicViews.get(epicId);
+        if (before != null && after != null && before.getStatus() != after.getStatus()) {
+            events.publish(TaskEvent.Kind.UPDATED, TaskType.EPIC, epicId, before, after);
+        }
+    }
+
+    private void publishDeleted(TaskType type, List<? extends Task> removed) {
+        for (Task task : removed) {
+            events.publish(TaskEvent.Kind.DELETED, type, task.getId(), events.previous(task), null);
+        }
+    }
+
+    // Сбрасывает копию эпика после его изменения; вызывается под блокировкой полосы эпика. Без подписок
+    // копия строится только при чтении, поэтому запись подзадачи не копирует все подзадачи эпика.
+    // С подписками копия строится сразу: она же уходит в событие как новая версия эпика.
+    private void publishEpic(int id) {
+        Epic epic = epics.get(id);
+        if (epic == null || !events.isActive()) {
+            epicViews.remove(id);
+        } else {
+            epicViews.put(id, TaskEventBus.copyOf(epic));
+        }
+        if (epic == null) {
+            unindex(TaskType.EPIC, id);
+        } else {
+            index(TaskType.EPIC, epic);
+        }
+        epicSnapshot.invalidate();
+    }
+
+    // Копия эпика для события или null, если подписок нет.
+    private Epic publishedEpic(int id) {
+        return events.isActive() ? epicView(id) : null;
+    }
+
+    // Копия эпика для читателей. Сброшенная копия строится под блокировкой чтения полосы эпика: подзадачи
+    // в это время не меняются, а писатель не может сбросить копию, пока она не опубликована.
+    private Epic epicView(int id) {
+        Epic view = epicViews.get(id);
+        if (view != null) {
+            return view;
+        }
+        Lock lock = stripe(id).readLock();
+        lock.lock();
+        try {
+            Epic epic = epics.get(id);
+            return epic == null ? null : epicViews.computeIfAbsent(id, key -> TaskEventBus.copyOf(epic));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Epic> epicViews() {
+        List<Epic> result = new ArrayList<>(epics.size());
+        for (Integer id : epics.keySet()) {
+            Epic view = epicView(id);
+            if (view != null) {
+                result.add(view);
+            }
+        }
+        return result;
+    }
+
+    // Вызывается под блокировкой полосы эпика подзадачи.
+    private void unlinkSubtask(Subtask subtask) {
+        IntHashSet subtaskIds = epicSubtaskIds.get(subtask.getEpicId());
+        if (subtaskIds != null) {
+            subtaskIds.remove(subtask.getId());
+        }
+        Epic epic = epics.get(subtask.getEpicId());
+        if (epic != null) {
+            epic.detachSubtask(subtask.getId());
+        }
+    }
+
+    private void addToHistory(Task task) {
+        synchronized (historyManager) {
+            historyManager.add(task);
+        }
+    }
+
+    private void removeFromHistory(int id) {
+        synchronized (historyManager) {
+            historyManager.remove(id);
+        }
+    }
+
+    // Проверка пересечения с соседями и вставка выполняются атомарно под блокировкой индекса.
+    private void addToPrioritizedTasks(Task newTask) {
+        withTimeLock(() -> timeline.add(newTask));
+    }
+
+    private void replaceInPrioritizedTasks(Task oldTask, Task newTask) {
+        withTimeLock(() -> timeline.replace(oldTask, newTask));
+    }
+
+    private void removeFromPrioritizedTasks(Task task) {
+        withTimeLock(() -> timeline.remove(task));
+    }
+
+    private void index(TaskType type, Task task) {
+        withWriteLock(indexLock, () -> {
+            typeIndex[type.ordinal()].add(task.getId());
+            textIndex.put(task.getId(), task.getNameTask(), task.getDescriptionTask());
+            IntBitmap[] byStatus = statusIndex[type.ordinal()];
+            for (IntBitmap ids : byStatus) {
+                ids.remove(task.getId());
+            }
+            if (task.getStatus() != null) {
+                byStatus[task.getStatus().ordinal()].add(task.getId());
+            }
+        });
+    }
+
+    private void unindex(TaskType type, int id) {
+        withWriteLock(indexLock, () -> {
+            typeIndex[type.ordinal()].remove(id);
+            textIndex.remove(id);
+            for (IntBitmap ids : statusIndex[type.ordinal()]) {
+                ids.remove(id);
+            }
+        });
+    }
+
+    private void clearIndex(TaskType type) {
+        withWriteLock(indexLock, () -> {
+            typeIndex[type.ordinal()].forEachFrom(Integer.MIN_VALUE, id -> {
+                textIndex.remove(id);
+                return true;
+            });
+            typeIndex[type.ordinal()].clear();
+            for (IntBitmap ids : statusIndex[type.ordinal()]) {
+                ids.clear();
+            }
+        });
+    }
+
+    private void withTimeLock(Runnable action) {
+        withWriteLock(timeLock, action);
+    }
+
+    private static void withWriteLock(ReentrantReadWriteLock lock, Runnable action) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            action.run();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private ReentrantReadWriteLock stripe(int id) {
+        return stripes[id & (STRIPES - 1)];
+    }
+
+    // Берёт блокировки записи полос в порядке возрастания номера, одну полосу — один раз.
+    private Lock[] writeLocks(int... ids) {
+        int[] indexes = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            indexes[i] = ids[i] & (STRIPES - 1);
+        }
+        indexes = Arrays.stream(indexes).sorted().distinct().toArray();
+        Lock[] locks = new Lock[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            locks[i] = stripes[indexes[i]].writeLock();
+            locks[i].lock();
+        }
+        return locks;
+    }
+
+    private Lock[] writeLocksAll() {
+        Lock[] locks = new Lock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = stripes[i].writeLock();
+            locks[i].lock();
+        }
+        return locks;
+    }
+
+    private static void unlock(Lock[] locks) {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    // Приоритетный список, который ведёт индекс свободных промежутков. Все его изменения идут под
+    // блокировкой индекса времени.
+    private final class GapTimeline extends Timeline {
+        private GapTimeline() {
+            super(prioritizedTasks);
+        }
+
+        @Override
+        void occupied(Task task) {
+            gaps.occupy(task.getId(), task.getStartNanos(), task.getBusyUntilNanos());
+        }
+
+        @Override
+        void released(int id) {
+            gaps.release(id);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.yandex.tracker.service;
+
+import java.io.Closeable;
+
+// Подписка на события менеджера: кольцевой буфер фиксированной ёмкости и поток доставки. Менеджер только
+// кладёт событие в буфер и никогда не ждёт слушателя: если буфер полон, самое старое недоставленное
+// событие вытесняется и учитывается в getDroppedCount, а слушатель увидит пропуск в номерах version.
+// Поток доставки забирает из буфера все накопившиеся события разом и вызывает слушателя вне блокировки.
+public final class EventSubscription implements Closeable {
+    private final TaskEventBus bus;
+    private final TaskEventListener listener;
+    private final TaskEvent[] ring;
+    private final Thread dispatcher;
+    // Счётчики положенных и забранных событий; в буфере лежат события с номерами [taken, offered).
+    private long offered;
+    private long taken;
+    private long dropped;
+    private long failed;
+    private boolean closing;
+
+    EventSubscription(TaskEventBus bus, TaskEventListener listener, int capacity) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Не задан получатель событий");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Ёмкость буфера событий должна быть положительной: " + capacity);
+        }
+        this.bus = bus;
+        this.listener = listener;
+        this.ring = new TaskEvent[capacity];
+        this.dispatcher = new Thread(this::runDispatcher, "task-events");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    synchronized void offer(TaskEvent event) {
+        if (closing) {
+            return;
+        }
+        if (offered - taken == ring.length) {
+            ring[slot(taken)] = null;
+            taken++;
+            dropped++;
+        }
+        ring[slot(offered)] = event;
+        offered++;
+        // Поток доставки ждёт только на пустом буфере.
+        if (offered - taken == 1) {
+            notifyAll();
+        }
+    }
+
+    // Число событий, вытесненных из переполненного буфера до доставки.
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    // Число событий, на которых слушатель завершился исключением.
+    public synchronized long getFailedCount() {
+        return failed;
+    }
+
+    private int slot(long position) {
+        return (int) (position % ring.length);
+    }
+
+    private void runDispatcher() {
+        TaskEvent[] batch = new TaskEvent[ring.length];
+        while (true) {
+            int count;
+            synchronized (this) {
+                while (offered == taken && !closing) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (offered == taken) {
+                    return;
+                }
+                count = (int) (offered - taken);
+                for (int i = 0; i < count; i++) {
+                    batch[i] = ring[slot(taken)];
+                    ring[slot(taken)] = null;
+                    taken++;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                deliver(batch[i]);
+                batch[i] = null;
+            }
+        }
+    }
+
+    private void deliver(TaskEvent event) {
+        try {
+            listener.onEvent(event);
+        } catch (RuntimeException e) {
+            // Ошибка одного события не должна останавливать подписку: следующие события доставляются.
+            synchronized (this) {
+                failed++;
+            }
+            e.printStackTrace();
+        }
+    }
+
+    // Отписывается от менеджера и дожидается доставки уже принятых событий. Из слушателя подписку тоже
+    // можно закрыть: тогда поток доставки завершится после текущей пачки, не дожидаясь сам себя.
+    @Override
+    public void close() {
+        bus.remove(this);
+        synchronized (this) {
+            closing = true;
+            notifyAll();
+        }
+        if (Thread.currentThread() != dispatcher) {
+            try {
+                dispatcher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
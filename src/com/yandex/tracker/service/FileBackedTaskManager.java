@@ -4,18 +4,82 @@ import com.yandex.tracker.exception.ManagerSaveException;
 import com.yandex.tracker.model.Epic;
 import com.yandex.tracker.model.Subtask;
 import com.yandex.tracker.model.Task;
+import com.yandex.tracker.storage.BinaryTaskReader;
+import com.yandex.tracker.storage.BinaryTaskWriter;
+import com.yandex.tracker.storage.CompactionPolicy;
+import com.yandex.tracker.storage.CsvReader;
+import com.yandex.tracker.storage.CsvTaskCodec;
+import com.yandex.tracker.storage.CsvWriter;
+import com.yandex.tracker.storage.DurabilityPolicy;
+import com.yandex.tracker.storage.HighWaterMark;
+import com.yandex.tracker.storage.JournalCompactor;
+import com.yandex.tracker.storage.SlotRecordStore;
+import com.yandex.tracker.storage.TaskJournal;
+import com.yandex.tracker.util.IntHashSet;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+public class FileBackedTaskManager extends InMemoryTaskManager implements Closeable {
+    private static final String JOURNAL_PUT = "PUT";
+    private static final String JOURNAL_DELETE = "DEL";
+    private static final String JOURNAL_CLEAR = "CLR";
+    // Записи пакетной операции обрамляются маркерами: при восстановлении пакет без COMMIT отбрасывается
+    // целиком, а ROLLBACK закрывает такой пакет, чтобы следующие записи журнала в него не попали.
+    private static final String JOURNAL_BEGIN = "BEGIN";
+    private static final String JOURNAL_COMMIT = "COMMIT";
+    private static final String JOURNAL_ROLLBACK = "ROLLBACK";
+    // Граница id сохраняется раз в блок, поэтому после перезагрузки нумерация продолжается со следующего блока.
+    private static final int ID_BLOCK = 64;
 
-public class FileBackedTaskManager extends InMemoryTaskManager {
     private final File file;
+    private final PersistenceMode mode;
+    private final StorageFormat format;
+    private final TaskJournal journal;
+    private final SlotRecordStore store;
+    private final HighWaterMark highWaterMark;
+    private final IntHashSet dirty = new IntHashSet();
+    private final Object compactionLock = new Object();
+    private JournalCompactor compactor;
+    private boolean batch;
+    // Записи открытого пакета при восстановлении журнала; null вне пакета.
+    private List<String> replayedBatch;
 
     public FileBackedTaskManager(File file) {
+        this(file, PersistenceMode.SNAPSHOT);
+    }
+
+    public FileBackedTaskManager(File file, PersistenceMode mode) {
+        this(file, mode, StorageFormat.CSV);
+    }
+
+    public FileBackedTaskManager(File file, PersistenceMode mode, StorageFormat format) {
+        this(file, mode, format, DurabilityPolicy.osBuffered());
+    }
+
+    public FileBackedTaskManager(File file, PersistenceMode mode, StorageFormat format,
+                                 DurabilityPolicy durability) {
+        this(file, mode, format, durability, new HighWaterMark(new File(file.getPath() + ".seq")));
+    }
+
+    private FileBackedTaskManager(File file, PersistenceMode mode, StorageFormat format,
+                                  DurabilityPolicy durability, HighWaterMark highWaterMark) {
+        super(Managers.getDefaultHistory(), new IdAllocator(ID_BLOCK, highWaterMark::advance));
+        this.highWaterMark = highWaterMark;
         this.file = file;
+        this.mode = mode;
+        this.format = format;
+        this.journal = mode != PersistenceMode.JOURNAL && mode != PersistenceMode.ASYNC_JOURNAL ? null
+                : new TaskJournal(new File(file.getPath() + ".log"), durability,
+                mode == PersistenceMode.ASYNC_JOURNAL);
         File parentDir = file.getParentFile();
         if (parentDir != null && !parentDir.exists()) {
             throw new ManagerSaveException("Директория не существует: " + parentDir.getAbsolutePath(), null);
@@ -27,176 +91,489 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
                 throw new ManagerSaveException("Ошибка при создании файла", e);
             }
         }
+        this.store = mode == PersistenceMode.INCREMENTAL ? new SlotRecordStore(file) : null;
+        observeId(highWaterMark.read());
     }
 
     @Override
-    public int createTask(Task task) {
-        if (getTasks().stream().anyMatch(t -> t.getId() == task.getId())) {
+    public synchronized int createTask(Task task) {
+        if (isStoredTask(findTask(task.getId()))) {
             throw new IllegalArgumentException("Задача с таким идентификатором уже существует");
         }
         int taskId = super.createTask(task);
-        save();
+        persistPut(task);
         return taskId;
     }
 
     @Override
-    public int createEpic(Epic epic) {
-        if (getEpics().stream().anyMatch(e -> e.getId() == epic.getId())) {
+    public synchronized int createEpic(Epic epic) {
+        if (findTask(epic.getId()) instanceof Epic) {
             throw new IllegalArgumentException("Эпик с таким идентификатором уже существует");
         }
         int epicId = super.createEpic(epic);
-        save();
+        persistPut(epic);
         return epicId;
     }
 
     @Override
-    public Integer createSubtask(Subtask subtask) {
-        if (getSubtasks().stream().anyMatch(s -> s.getId() == subtask.getId())) {
+    public synchronized Integer createSubtask(Subtask subtask) {
+        if (findTask(subtask.getId()) instanceof Subtask) {
             throw new IllegalArgumentException("Подзадача с таким идентификатором уже существует");
         }
         int subtaskId = super.createSubtask(subtask);
-        save();
+        persistPut(subtask);
         return subtaskId;
     }
 
     @Override
-    public void removeTasks() {
+    public synchronized void removeTasks() {
+        touchAll(getTasks());
         super.removeTasks();
-        save();
+        persistClear(TaskType.TASK);
     }
 
     @Override
-    public void removeEpics() {
+    public synchronized void removeEpics() {
+        touchAll(getEpics());
+        touchAll(getSubtasks());
         super.removeEpics();
-        save();
+        persistClear(TaskType.EPIC);
     }
 
     @Override
-    public void removeSubtasks() {
+    public synchronized void removeSubtasks() {
+        touchAll(getSubtasks());
         super.removeSubtasks();
-        save();
+        persistClear(TaskType.SUBTASK);
     }
 
     @Override
-    public void updateTask(Task task) {
+    public synchronized void updateTask(Task task) {
         super.updateTask(task);
-        save();
+        persistPut(task);
     }
 
     @Override
-    public void updateEpic(Epic epic) {
+    public synchronized void updateEpic(Epic epic) {
         super.updateEpic(epic);
-        save();
+        persistPut(findTask(epic.getId()));
     }
 
     @Override
-    public void updateSubtask(Subtask subtask) {
+    public synchronized void updateSubtask(Subtask subtask) {
+        touch(findTask(subtask.getId()));
         super.updateSubtask(subtask);
-        save();
+        persistPut(subtask);
     }
 
     @Override
-    public void removeTaskById(int id) {
+    public synchronized void removeTaskById(int id) {
+        touch(findTask(id));
         super.removeTaskById(id);
-        save();
+        persistRemove(TaskType.TASK, id);
     }
 
     @Override
-    public void removeEpicById(int id) {
+    public synchronized void removeEpicById(int id) {
+        touch(findTask(id));
+        touchAll(getEpicSubtasks(id));
         super.removeEpicById(id);
-        save();
+        persistRemove(TaskType.EPIC, id);
     }
 
     @Override
-    public void removeSubtaskById(int id) {
+    public synchronized void removeSubtaskById(int id) {
+        touch(findTask(id));
         super.removeSubtaskById(id);
-        save();
+        persistRemove(TaskType.SUBTASK, id);
     }
 
-    public void save() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-            writer.write("id,type,name,status,description,duration,startTime,epic\n");
-            for (Task task : getTasks()) {
-                writer.write(toString(task) + "\n");
+    @Override
+    public synchronized List<Integer> applyBatch(List<Command> commands) {
+        return saveOnce(() -> super.applyBatch(commands));
+    }
+
+    @Override
+    public synchronized List<Task> autoSchedule(List<Task> tasks, LocalDateTime notBefore) {
+        return saveOnce(() -> super.autoSchedule(tasks, notBefore));
+    }
+
+    // В режимах снимка и INCREMENTAL файл сохраняется один раз после всей операции, а не после каждой записи.
+    // В режимах журнала записи операции заключаются между BEGIN и COMMIT и восстанавливаются только вместе.
+    // COMMIT пишется и после исключения: изменения, уже сделанные в памяти, должны совпадать с журналом.
+    // Сжатие не разрывает пакет: снимок и смена сегмента берутся под той же блокировкой менеджера.
+    private <T> T saveOnce(Supplier<T> operation) {
+        if (journal != null) {
+            journal.append(writer -> writer.field(JOURNAL_BEGIN));
+            try {
+                return operation.get();
+            } finally {
+                journal.append(writer -> writer.field(JOURNAL_COMMIT));
+            }
+        }
+        batch = true;
+        try {
+            return operation.get();
+        } finally {
+            batch = false;
+            save();
+        }
+    }
+
+    private static boolean isStoredTask(Task task) {
+        return task != null && !(task instanceof Epic) && !(task instanceof Subtask);
+    }
+
+    public PersistenceMode getMode() {
+        return mode;
+    }
+
+    public StorageFormat getFormat() {
+        return format;
+    }
+
+    // Future завершается, когда все изменения, сделанные к моменту вызова, записаны согласно политике
+    // долговечности журнала. В режиме снимка запись синхронная, и future уже завершён.
+    public CompletableFuture<Void> sync() {
+        return journal == null ? CompletableFuture.completedFuture(null) : journal.lastCommit();
+    }
+
+    // Отмечает запись как изменённую с последнего сохранения. Изменение подзадачи меняет и статус её эпика.
+    private void touch(Task task) {
+        if (store == null || task == null) {
+            return;
+        }
+        dirty.add(task.getId());
+        if (task instanceof Subtask subtask) {
+            dirty.add(subtask.getEpicId());
+        }
+    }
+
+    private void touchAll(List<? extends Task> tasks) {
+        if (store == null) {
+            return;
+        }
+        for (Task task : tasks) {
+            touch(task);
+        }
+    }
+
+    private void persistPut(Task task) {
+        touch(task);
+        if (journal != null) {
+            journal.append(writer -> CsvTaskCodec.writeFields(writer.field(JOURNAL_PUT), task));
+        } else if (!batch) {
+            save();
+        }
+    }
+
+    private void persistRemove(TaskType type, int id) {
+        if (journal != null) {
+            journal.append(writer -> writer.field(JOURNAL_DELETE).field(id).field(type));
+        } else if (!batch) {
+            save();
+        }
+    }
+
+    private void persistClear(TaskType type) {
+        if (journal != null) {
+            journal.append(writer -> writer.field(JOURNAL_CLEAR).field(0).field(type));
+        } else if (!batch) {
+            save();
+        }
+    }
+
+    private void replay(CsvReader record) {
+        String operation = record.string(0);
+        switch (operation) {
+            case JOURNAL_BEGIN -> replayedBatch = new ArrayList<>();
+            case JOURNAL_COMMIT -> {
+                List<String> lines = replayedBatch;
+                replayedBatch = null;
+                if (lines != null) {
+                    for (String line : lines) {
+                        apply(parse(line));
+                    }
+                }
+            }
+            case JOURNAL_ROLLBACK -> replayedBatch = null;
+            default -> {
+                if (replayedBatch != null) {
+                    replayedBatch.add(copyOf(record));
+                } else {
+                    apply(record);
+                }
+            }
+        }
+    }
+
+    private void apply(CsvReader record) {
+        String operation = record.string(0);
+        switch (operation) {
+            case JOURNAL_PUT -> {
+                Task task = CsvTaskCodec.read(record, 1);
+                // Запись из старого сегмента может ссылаться на эпик, удалённый до снятия более нового снимка.
+                if (task instanceof Subtask subtask && !(findTask(subtask.getEpicId()) instanceof Epic)) {
+                    return;
+                }
+                restore(task);
             }
-            for (Epic epic : getEpics()) {
-                writer.write(toString(epic) + "\n");
+            case JOURNAL_DELETE -> {
+                int id = record.intField(1);
+                switch (CsvTaskCodec.type(record.field(2))) {
+                    case TASK -> super.removeTaskById(id);
+                    case EPIC -> super.removeEpicById(id);
+                    case SUBTASK -> super.removeSubtaskById(id);
+                }
+            }
+            case JOURNAL_CLEAR -> {
+                switch (CsvTaskCodec.type(record.field(2))) {
+                    case TASK -> super.removeTasks();
+                    case EPIC -> super.removeEpics();
+                    case SUBTASK -> super.removeSubtasks();
+                }
+            }
+            default -> throw new IllegalArgumentException("Неизвестная операция журнала: " + operation);
+        }
+    }
+
+    private static String copyOf(CsvReader record) {
+        StringWriter out = new StringWriter();
+        try {
+            CsvWriter writer = new CsvWriter(out);
+            for (int i = 0; i < record.size(); i++) {
+                writer.field(record.string(i));
             }
-            for (Subtask subtask : getSubtasks()) {
-                writer.write(toString(subtask) + "\n");
+            writer.endRecord();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    private static CsvReader parse(String line) {
+        CsvReader reader = new CsvReader(new StringReader(line));
+        try {
+            reader.next();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return reader;
+    }
+
+    public void save() {
+        if (store != null) {
+            flushDirty();
+        } else if (journal != null) {
+            compact();
+        } else {
+            writeSnapshot(encodeSnapshot());
+        }
+    }
+
+    // Пишет только записи, изменённые с последнего сохранения: отсутствующие в менеджере удаляются из хранилища.
+    private synchronized void flushDirty() {
+        try {
+            for (int id : dirty.toSortedArray()) {
+                Task task = findTask(id);
+                if (task == null) {
+                    store.remove(id);
+                } else {
+                    store.put(id, BinaryTaskWriter.encode(task));
+                }
             }
         } catch (IOException e) {
             throw new ManagerSaveException("Ошибка при сохранении данных в файл", e);
         }
+        dirty.clear();
     }
 
-    public static String toString(Task task) {
-        int epicId = 0;
-        if (task instanceof Subtask subtask) {
-            epicId = subtask.getEpicId();
+    // Число записей, ожидающих сохранения.
+    public synchronized int getDirtyCount() {
+        return dirty.size();
+    }
+
+    // Под блокировкой снимок кодируется в байты и закрывается сегмент журнала, а на диск байты пишутся уже
+    // без неё. Записи, сделанные во время записи файла, попадают в новый сегмент и при восстановлении
+    // применяются поверх снимка повторно, что безопасно, так как операции журнала идемпотентны.
+    public void compact() {
+        if (journal == null) {
+            throw new IllegalStateException("Сжатие доступно только в режиме журнала");
+        }
+        synchronized (compactionLock) {
+            byte[] snapshot;
+            int segment;
+            synchronized (this) {
+                snapshot = encodeSnapshot();
+                segment = journal.rotate();
+            }
+            writeSnapshot(snapshot);
+            journal.dropSegments(segment);
+            if (compactor != null) {
+                compactor.compacted();
+            }
         }
-        return task.getId() + "," + task.getTaskType() + "," + task.getNameTask() + "," + task.getStatus() + ","
-                + task.getDescriptionTask() + "," + task.getDuration() + "," + task.getStartTime() + "," + epicId;
     }
 
-    public static FileBackedTaskManager loadFromFile(File file, HistoryManager historyManager) {
-        if (!file.exists()) {
-            throw new ManagerSaveException("Файл не существует: " + file.getAbsolutePath(), null);
+    // Прежний планировщик закрывается вне блокировки: close ждёт начатое сжатие, а оно берёт блокировку менеджера.
+    public void startCompaction(CompactionPolicy policy) {
+        if (journal == null) {
+            throw new IllegalStateException("Сжатие доступно только в режиме журнала");
+        }
+        JournalCompactor previous;
+        synchronized (this) {
+            previous = compactor;
+            compactor = new JournalCompactor(journal, policy, this::compact);
+            compactor.start();
+        }
+        if (previous != null) {
+            previous.close();
         }
+    }
 
-        FileBackedTaskManager manager = new FileBackedTaskManager(file);
+    // Ждёт count фоновых сжатий, запущенных последним startCompaction.
+    public boolean awaitCompactions(long count, Duration timeout) throws InterruptedException {
+        JournalCompactor activeCompactor;
+        synchronized (this) {
+            activeCompactor = compactor;
+        }
+        if (activeCompactor == null) {
+            throw new IllegalStateException("Фоновое сжатие не запущено");
+        }
+        return activeCompactor.awaitCompactions(count, timeout);
+    }
+
+    @Override
+    public void close() {
+        JournalCompactor activeCompactor;
+        synchronized (this) {
+            activeCompactor = compactor;
+            compactor = null;
+        }
+        if (activeCompactor != null) {
+            activeCompactor.close();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+        if (store != null) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                throw new ManagerSaveException("Ошибка при закрытии хранилища", e);
+            }
+        }
+    }
 
+    // Строки снимка кодируются под блокировкой: время и длительность эпика вычисляются из его подзадач,
+    // и чтение живых записей параллельно с изменениями могло бы смешать в строке старые и новые значения.
+    private synchronized byte[] encodeSnapshot() {
+        List<Task> snapshot = new ArrayList<>(getTasks());
+        snapshot.addAll(getEpics());
+        snapshot.addAll(getSubtasks());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
         try {
-            List<String> lines = Files.readAllLines(file.toPath());
-
-            if (lines.size() > 1) {
-                for (String line : lines.subList(1, lines.size())) {
-                    line = line.trim();
-                    if (line.isEmpty()) continue;
-
-                    Task task = fromString(line);
-
-                    if (task instanceof Epic epic) {
-                        manager.createEpic(epic);
-                    } else if (task instanceof Subtask subtask) {
-                        manager.createSubtask(subtask);
-                        Epic epic = manager.getEpicById(subtask.getEpicId());
-                        if (epic != null) {
-                            epic.addSubtask(subtask);
-                        } else {
-                            throw new IllegalArgumentException("Эпик с ID " + subtask.getEpicId() + " не найден.");
-                        }
-                    } else {
-                        manager.createTask(task);
+            if (format == StorageFormat.BINARY) {
+                try (BinaryTaskWriter writer = new BinaryTaskWriter(bytes)) {
+                    for (Task task : snapshot) {
+                        writer.write(task);
+                    }
+                }
+            } else {
+                try (CsvWriter writer = new CsvWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8))) {
+                    CsvTaskCodec.writeHeader(writer);
+                    for (Task task : snapshot) {
+                        CsvTaskCodec.write(writer, task);
                     }
                 }
             }
         } catch (IOException e) {
             throw new ManagerSaveException("Ошибка при сохранении данных в файл", e);
         }
+        return bytes.toByteArray();
+    }
 
-        return manager;
+    private void writeSnapshot(byte[] snapshot) {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            Files.write(tempFile.toPath(), snapshot);
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при сохранении данных в файл", e);
+        }
+    }
+
+    // Записи хранилища идут в порядке слотов, а восстановлению нужны эпики раньше их подзадач.
+    private List<Task> readStore() throws IOException {
+        List<Task> epics = new ArrayList<>();
+        List<Task> others = new ArrayList<>();
+        BinaryTaskReader reader = new BinaryTaskReader();
+        store.forEach((id, record) -> {
+            Task task = reader.read(record);
+            (task instanceof Epic ? epics : others).add(task);
+        });
+        epics.addAll(others);
+        return epics;
     }
 
-    private static Task fromString(String value) {
-        String[] fields = value.split(",");
-        if (fields.length < 8) {
-            throw new IllegalArgumentException("Недостаточно данных для создания задачи");
+    public static String toString(Task task) {
+        StringWriter out = new StringWriter();
+        try {
+            CsvTaskCodec.writeFields(new CsvWriter(out), task);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        final int id = Integer.parseInt(fields[0]);
-        final TaskType type = TaskType.valueOf(fields[1]);
-        final String name = fields[2];
-        final TaskStatus status = TaskStatus.valueOf(fields[3]);
-        final String description = fields[4];
-        Duration duration = fields.length > 5 && !fields[5].isEmpty() ? Duration.parse(fields[5]) : null;
-        LocalDateTime startTime = fields.length > 6 && !fields[6].isEmpty() ? LocalDateTime.parse(fields[6]) : null;
-        final int epicId = fields.length > 7 ? Integer.parseInt(fields[7]) : 0;
+        return out.toString();
+    }
 
-        return switch (type) {
-            case TASK -> new Task(id, name, description, status, type, duration, startTime);
-            case EPIC -> new Epic(id, name, description, status, duration, startTime);
-            case SUBTASK -> new Subtask(id, name, description, status, duration, startTime, epicId);
-        };
+    public static FileBackedTaskManager loadFromFile(File file, HistoryManager historyManager) {
+        return loadFromFile(file, historyManager, PersistenceMode.SNAPSHOT);
     }
-}
 
+    public static FileBackedTaskManager loadFromFile(File file, HistoryManager historyManager,
+                                                     PersistenceMode mode) {
+        return loadFromFile(file, historyManager, mode, StorageFormat.CSV);
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, HistoryManager historyManager,
+                                                     PersistenceMode mode, StorageFormat format) {
+        return loadFromFile(file, historyManager, mode, format, DurabilityPolicy.osBuffered());
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, HistoryManager historyManager,
+                                                     PersistenceMode mode, StorageFormat format,
+                                                     DurabilityPolicy durability) {
+        if (!file.exists()) {
+            throw new ManagerSaveException("Файл не существует: " + file.getAbsolutePath(), null);
+        }
+
+        FileBackedTaskManager manager = new FileBackedTaskManager(file, mode, format, durability);
+
+        try {
+            if (manager.store != null) {
+                manager.bulkRestore(manager.readStore().iterator());
+            } else if (format == StorageFormat.BINARY) {
+                try (BinaryTaskReader reader = new BinaryTaskReader(file)) {
+                    manager.bulkRestore(reader);
+                }
+            } else {
+                try (CsvReader reader = CsvReader.open(file)) {
+                    manager.bulkRestore(CsvTaskCodec.tasks(reader));
+                }
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при чтении данных из файла", e);
+        }
+        if (manager.journal != null) {
+            manager.journal.replay(manager::replay);
+            // Пакет, оборванный сбоем, не применяется; ROLLBACK отделяет его от записей этого запуска.
+            if (manager.replayedBatch != null) {
+                manager.replayedBatch = null;
+                manager.journal.append(writer -> writer.field(JOURNAL_ROLLBACK));
+            }
+        }
+
+        return manager;
+    }
+}
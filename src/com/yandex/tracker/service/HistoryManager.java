@@ -2,6 +2,7 @@ package com.yandex.tracker.service;
 
 import com.yandex.tracker.model.Task;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public interface HistoryManager {
@@ -10,4 +11,20 @@ public interface HistoryManager {
     void remove(int id);
 
     List<Task> getHistory();
+
+    // До limit записей истории после записи с id afterId, null — с начала истории.
+    default List<Task> getHistoryPage(Integer afterId, int limit) {
+        List<Task> history = getHistory();
+        int from = 0;
+        if (afterId != null) {
+            while (from < history.size() && history.get(from).getId() != afterId) {
+                from++;
+            }
+            if (from == history.size()) {
+                throw new IllegalArgumentException("Записи с id " + afterId + " нет в истории");
+            }
+            from++;
+        }
+        return new ArrayList<>(history.subList(from, Math.min(history.size(), from + limit)));
+    }
 }
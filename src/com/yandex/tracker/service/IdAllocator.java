@@ -0,0 +1,59 @@
+package com.yandex.tracker.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+// Генератор id одного экземпляра менеджера. Поток берёт из общего счётчика блок из blockSize id и выдаёт
+// их без обращения к счётчику, поэтому параллельные создания не соревнуются за одну переменную.
+// Верхняя граница зарезервированных блоков передаётся слушателю до выдачи первого id из нового блока:
+// если граница сохранена, после перезагрузки id не повторятся, даже если запись с ними удалена.
+public class IdAllocator {
+    private final int blockSize;
+    private final IntConsumer reservationListener;
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final AtomicInteger floor = new AtomicInteger();
+    private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+    public IdAllocator() {
+        this(1, highWater -> {
+        });
+    }
+
+    public IdAllocator(int blockSize, IntConsumer reservationListener) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Размер блока id должен быть положительным: " + blockSize);
+        }
+        this.blockSize = blockSize;
+        this.reservationListener = reservationListener;
+    }
+
+    public int next() {
+        Block block = blocks.get();
+        if (block.next > block.end || block.next <= floor.get()) {
+            int end = reserved.addAndGet(blockSize);
+            if (end < 0) {
+                throw new IllegalStateException("Идентификаторы исчерпаны");
+            }
+            reservationListener.accept(end);
+            block.next = end - blockSize + 1;
+            block.end = end;
+        }
+        return block.next++;
+    }
+
+    // Отмечает id, уже занятый записью или сохранённой границей: следующие id будут больше него.
+    // Вызывается при загрузке, до параллельной работы с менеджером.
+    public void observe(int id) {
+        reserved.accumulateAndGet(id, Math::max);
+        floor.accumulateAndGet(id, Math::max);
+    }
+
+    public int getHighWater() {
+        return reserved.get();
+    }
+
+    private static final class Block {
+        private int next = 1;
+        private int end;
+    }
+}
@@ -1,6 +1,7 @@
 package com.yandex.tracker.service;
 
 import com.yandex.tracker.model.Task;
+import com.yandex.tracker.util.IntObjectMap;
 
 import java.util.*;
 
@@ -8,7 +9,7 @@ public class InMemoryHistoryManager implements HistoryManager {
 
     private Node<Task> first;
     private Node<Task> last;
-    private final Map<Integer, Node<Task>> history = new HashMap<>();
+    private final IntObjectMap<Node<Task>> history = new IntObjectMap<>();
 
     @Override
     public void add(Task task) {
@@ -34,6 +35,25 @@ public class InMemoryHistoryManager implements HistoryManager {
         return getTasks();
     }
 
+    // Продолжает обход с узла записи afterId, не проходя историю до него.
+    @Override
+    public List<Task> getHistoryPage(Integer afterId, int limit) {
+        Node<Task> node = first;
+        if (afterId != null) {
+            Node<Task> afterNode = history.get(afterId);
+            if (afterNode == null) {
+                throw new IllegalArgumentException("Записи с id " + afterId + " нет в истории");
+            }
+            node = afterNode.next;
+        }
+        List<Task> tasks = new ArrayList<>(Math.min(limit, history.size()));
+        while (node != null && tasks.size() < limit) {
+            tasks.add(node.task);
+            node = node.next;
+        }
+        return tasks;
+    }
+
     private void linkLast(Task task) {
         Node<Task> newNode = new Node<>(task);
         final Node<Task> oldLast = last;
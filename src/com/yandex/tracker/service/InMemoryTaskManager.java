@@ -3,27 +3,75 @@ package com.yandex.tracker.service;
 import com.yandex.tracker.model.Epic;
 import com.yandex.tracker.model.Subtask;
 import com.yandex.tracker.model.Task;
-
+import com.yandex.tracker.util.GapIndex;
+import com.yandex.tracker.util.IntBitmap;
+import com.yandex.tracker.util.IntHashSet;
+import com.yandex.tracker.util.IntObjectMap;
+import com.yandex.tracker.util.TextIndex;
+import com.yandex.tracker.util.VersionedSnapshot;
+
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 
 public class InMemoryTaskManager implements TaskManager {
 
-    private static int countID = 0;
-    private final Map<Integer, Task> tasks = new HashMap<>();
-    private final Map<Integer, Subtask> subtasks = new HashMap<>();
-    private final Map<Integer, Epic> epics = new HashMap<>();
+    private static final boolean VERIFY_EPIC_STATUS = Boolean.getBoolean("tracker.verifyEpicStatus");
+    private final IdAllocator ids;
+    private final IntObjectMap<Task> tasks = new IntObjectMap<>();
+    private final IntObjectMap<Subtask> subtasks = new IntObjectMap<>();
+    private final IntObjectMap<Epic> epics = new IntObjectMap<>();
+    private final IntObjectMap<IntHashSet> epicSubtaskIds = new IntObjectMap<>();
+    // Упорядоченные по id индексы: тип -> id записей и [тип][статус] -> id записей. Обновляются при каждом
+    // изменении записи или статуса эпика; по ним же строятся страницы списков.
+    private final IntBitmap[] typeIndex = new IntBitmap[TaskType.values().length];
+    private final IntBitmap[][] statusIndex = new IntBitmap[TaskType.values().length][TaskStatus.values().length];
+    private final TextIndex textIndex = new TextIndex();
+    private final TaskEventBus events = new TaskEventBus();
     private final HistoryManager historyManager;
-    private final TreeSet<Task> prioritizedTasks = new TreeSet<>(Comparator.comparing(Task::getStartTime,
-            Comparator.nullsLast(Comparator.naturalOrder())).thenComparing(Task::getId));
+    private final TreeSet<Task> prioritizedTasks = new TreeSet<>(Task::compareByStart);
+    // Свободные промежутки между задачами prioritizedTasks; меняется только вместе с ним.
+    private final GapIndex gaps = new GapIndex();
+    // Необязательная календарная сетка для проверки пересечений без сравнения с соседями.
+    private final CalendarGrid calendarGrid;
+    private final Timeline timeline = new SlotTimeline();
+    // Списки отдаются неизменяемыми снимками, как в ConcurrentTaskManager: повторное чтение без изменений
+    // не копирует коллекцию. Снимок сбрасывается при любом изменении состава индекса типа или расписания.
+    private final VersionedSnapshot<Task> taskSnapshot = new VersionedSnapshot<>(tasks::values);
+    private final VersionedSnapshot<Subtask> subtaskSnapshot = new VersionedSnapshot<>(subtasks::values);
+    private final VersionedSnapshot<Epic> epicSnapshot = new VersionedSnapshot<>(epics::values);
+    private final VersionedSnapshot<Task> prioritizedSnapshot = new VersionedSnapshot<>(() -> prioritizedTasks);
 
 
     public InMemoryTaskManager(HistoryManager historyManager) {
-        this.historyManager = historyManager;
+        this(historyManager, new IdAllocator());
     }
 
     public InMemoryTaskManager() {
-        this.historyManager = Managers.getDefaultHistory();
+        this(Managers.getDefaultHistory());
+    }
+
+    public InMemoryTaskManager(HistoryManager historyManager, CalendarGrid calendarGrid) {
+        this(historyManager, new IdAllocator(), calendarGrid);
+    }
+
+    protected InMemoryTaskManager(HistoryManager historyManager, IdAllocator ids) {
+        this(historyManager, ids, null);
+    }
+
+    private InMemoryTaskManager(HistoryManager historyManager, IdAllocator ids, CalendarGrid calendarGrid) {
+        this.historyManager = historyManager;
+        this.ids = ids;
+        this.calendarGrid = calendarGrid;
+        if (calendarGrid != null) {
+            calendarGrid.bind(prioritizedTasks);
+        }
+        for (int type = 0; type < typeIndex.length; type++) {
+            typeIndex[type] = new IntBitmap();
+            for (int status = 0; status < statusIndex[type].length; status++) {
+                statusIndex[type][status] = new IntBitmap();
+            }
+        }
     }
 
     @Override
@@ -32,11 +80,13 @@ public class InMemoryTaskManager implements TaskManager {
             throw new IllegalArgumentException("Задачи с одинаковым id не должны добавляться.");
         }
 
-        task.setId(++countID);
+        task.setId(ids.next());
         tasks.put(task.getId(), task);
-        if (task.getStartTime() != null) {
-            addToPrioritizedTasks(task);
+        index(TaskType.TASK, task);
+        if (task.hasStartTime()) {
+            timeline.add(task);
         }
+        events.publish(TaskEvent.Kind.CREATED, TaskType.TASK, task.getId(), null, events.snapshot(task));
         return task.getId();
     }
 
@@ -50,83 +100,86 @@ public class InMemoryTaskManager implements TaskManager {
             throw new IllegalArgumentException("Подзадачи с одинаковым id не должны добавляться.");
         }
 
-        subtask.setId(++countID);
+        subtask.setId(ids.next());
         subtasks.put(subtask.getId(), subtask);
-        if (subtask.getStartTime() != null) {
-            addToPrioritizedTasks(subtask);
+        index(TaskType.SUBTASK, subtask);
+        if (subtask.hasStartTime()) {
+            timeline.add(subtask);
         }
-        epic.getSubtasks().add(subtask);
+        events.publish(TaskEvent.Kind.CREATED, TaskType.SUBTASK, subtask.getId(), null, events.snapshot(subtask));
+        linkSubtask(epic, subtask);
         updateEpicStatus(epic.getId());
         return subtask.getId();
     }
 
     @Override
     public int createEpic(Epic epic) {
-        epic.setId(++countID);
+        epic.setId(ids.next());
         epics.put(epic.getId(), epic);
+        epicSubtaskIds.put(epic.getId(), new IntHashSet());
+        index(TaskType.EPIC, epic);
+        events.publish(TaskEvent.Kind.CREATED, TaskType.EPIC, epic.getId(), null, events.snapshot(epic));
         return epic.getId();
     }
 
-    private void addToPrioritizedTasks(Task newTask) {
-        prioritizedTasks.stream()
-                .filter(existingTask -> isOverlapping(newTask, existingTask))
-                .findFirst()
-                .ifPresentOrElse(
-                        overlappedTask -> {
-                            if (newTask instanceof Subtask) {
-                                throw new IllegalArgumentException("Подзадача пересекается с существующей подзадачей.");
-                            } else {
-                                throw new IllegalArgumentException("Задача пересекается с существующей задачей.");
-                            }
-                        },
-                        () -> prioritizedTasks.add(newTask)
-                );
-    }
-
-    private boolean isOverlapping(Task task1, Task task2) {
-        LocalDateTime start1 = task1.getStartTime();
-        LocalDateTime end1 = task1.getEndTime();
-
-        LocalDateTime start2 = task2.getStartTime();
-        LocalDateTime end2 = task2.getEndTime();
-
-        return (start1.isEqual(start2) || start1.isBefore(start2) && end1.isAfter(start2))
-                || (start2.isEqual(start1) || start2.isBefore(start1) && end2.isAfter(start1));
-    }
-
     @Override
     public void removeTasks() {
+        List<Task> removed = events.isActive() ? new ArrayList<>(tasks.values()) : List.of();
         for (Task task : tasks.values()) {
             historyManager.remove(task.getId());
-            prioritizedTasks.remove(task);
         }
+        timeline.removeIf(task -> !(task instanceof Subtask));
         tasks.clear();
+        clearIndex(TaskType.TASK);
+        publishDeleted(TaskType.TASK, removed);
     }
 
     @Override
     public void removeEpics() {
+        List<Epic> removedEpics = events.isActive() ? new ArrayList<>(epics.values()) : List.of();
+        List<Subtask> removedSubtasks = events.isActive() ? new ArrayList<>(subtasks.values()) : List.of();
         for (Epic epic : epics.values()) {
             historyManager.remove(epic.getId());
         }
         epics.clear();
+        epicSubtaskIds.clear();
         for (Subtask subtask : subtasks.values()) {
             historyManager.remove(subtask.getId());
-            prioritizedTasks.remove(subtask);
         }
+        timeline.removeIf(task -> task instanceof Subtask);
         subtasks.clear();
+        clearIndex(TaskType.EPIC);
+        clearIndex(TaskType.SUBTASK);
+        publishDeleted(TaskType.SUBTASK, removedSubtasks);
+        publishDeleted(TaskType.EPIC, removedEpics);
     }
 
     @Override
     public void removeSubtasks() {
+        List<Subtask> removed = events.isActive() ? new ArrayList<>(subtasks.values()) : List.of();
+        List<Epic> changed = new ArrayList<>();
+        List<TaskStatus> previousStatuses = new ArrayList<>();
         for (Epic epic : epics.values()) {
-            epic.getSubtasks().clear();
-            updateEpicStatus(epic.getId());
+            TaskStatus previous = epic.getStatus();
+            epic.cleanSubtasks();
+            epicSubtaskIds.get(epic.getId()).clear();
+            epic.updateStatus();
+            index(TaskType.EPIC, epic);
+            if (epic.getStatus() != previous && events.isActive()) {
+                changed.add(epic);
+                previousStatuses.add(previous);
+            }
         }
         for (Subtask subtask : subtasks.values()) {
             historyManager.remove(subtask.getId());
-            prioritizedTasks.remove(subtask);
         }
+        timeline.removeIf(task -> task instanceof Subtask);
         subtasks.clear();
+        clearIndex(TaskType.SUBTASK);
+        publishDeleted(TaskType.SUBTASK, removed);
+        for (int i = 0; i < changed.size(); i++) {
+            publishStatusChange(changed.get(i), previousStatuses.get(i));
+        }
     }
 
     @Override
@@ -158,37 +211,56 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public void updateTask(Task task) {
-        prioritizedTasks.remove(tasks.get(task.getId()));
+        Task oldTask = tasks.get(task.getId());
+        Task before = events.previous(oldTask);
+        timeline.replace(oldTask, task);
         tasks.put(task.getId(), task);
-        prioritizedTasks.add(task);
+        index(TaskType.TASK, task);
+        events.publish(oldTask == null ? TaskEvent.Kind.CREATED : TaskEvent.Kind.UPDATED, TaskType.TASK,
+                task.getId(), before, events.snapshot(task));
     }
 
     @Override
     public void updateSubtask(Subtask subtask) {
-        prioritizedTasks.remove(subtasks.get(subtask.getId()));
+        Subtask oldSubtask = subtasks.get(subtask.getId());
+        Task before = events.previous(oldSubtask);
+        timeline.replace(oldSubtask, subtask);
         subtasks.put(subtask.getId(), subtask);
+        index(TaskType.SUBTASK, subtask);
+        events.publish(oldSubtask == null ? TaskEvent.Kind.CREATED : TaskEvent.Kind.UPDATED, TaskType.SUBTASK,
+                subtask.getId(), before, events.snapshot(subtask));
+        if (oldSubtask != null) {
+            unlinkSubtask(oldSubtask);
+            if (oldSubtask.getEpicId() != subtask.getEpicId() && epics.containsKey(oldSubtask.getEpicId())) {
+                updateEpicStatus(oldSubtask.getEpicId());
+            }
+        }
         Epic epic = epics.get(subtask.getEpicId());
         if (epic != null) {
+            linkSubtask(epic, subtask);
             updateEpicStatus(epic.getId());
         }
-        prioritizedTasks.add(subtask);
     }
 
     @Override
     public void updateEpic(Epic epic) {
         Epic existingEpic = epics.get(epic.getId());
+        Task before = events.previous(existingEpic);
         existingEpic.setDescriptionTask(epic.getDescriptionTask());
         updateEpicStatus(existingEpic.getId());
         epics.put(epic.getId(), existingEpic);
+        events.publish(TaskEvent.Kind.UPDATED, TaskType.EPIC, epic.getId(), before, events.snapshot(existingEpic));
     }
 
     @Override
     public void removeTaskById(int id) {
         Task task = getTaskById(id);
         if (task != null) {
-            prioritizedTasks.remove(task);
+            timeline.remove(task);
             historyManager.remove(id);
             tasks.remove(task.getId());
+            unindex(TaskType.TASK, id);
+            events.publish(TaskEvent.Kind.DELETED, TaskType.TASK, id, events.previous(task), null);
         }
     }
 
@@ -196,57 +268,79 @@ public class InMemoryTaskManager implements TaskManager {
     public void removeSubtaskById(int id) {
         Subtask subtask = subtasks.remove(id);
         if (subtask != null) {
-            prioritizedTasks.remove(subtask);
+            unindex(TaskType.SUBTASK, id);
+            timeline.remove(subtask);
+            unlinkSubtask(subtask);
+            events.publish(TaskEvent.Kind.DELETED, TaskType.SUBTASK, id, events.previous(subtask), null);
             Epic epic = getEpicById(subtask.getEpicId());
             if (epic != null) {
-                epic.removeSubtask(subtask.getId());
                 updateEpicStatus(epic.getId());
             }
-            subtasks.remove(id);
         }
     }
 
     @Override
     public void removeEpicById(int id) {
-        Epic epic = epics.get(id);
+        Epic epic = epics.remove(id);
         if (epic != null) {
-            for (Subtask subtask : epic.getSubtasks()) {
-                historyManager.remove(subtask.getId());
-                prioritizedTasks.remove(subtask);
-                subtasks.remove(subtask.getId());
-            }
+            epicSubtaskIds.remove(id).forEach(subtaskId -> {
+                Subtask subtask = subtasks.remove(subtaskId);
+                historyManager.remove(subtaskId);
+                timeline.remove(subtask);
+                unindex(TaskType.SUBTASK, subtaskId);
+                events.publish(TaskEvent.Kind.DELETED, TaskType.SUBTASK, subtaskId, events.previous(subtask), null);
+            });
             historyManager.remove(id);
-            epics.remove(id);
+            unindex(TaskType.EPIC, id);
+            events.publish(TaskEvent.Kind.DELETED, TaskType.EPIC, id, events.previous(epic), null);
         }
     }
 
     @Override
     public List<Task> getTasks() {
-        return new ArrayList<>(tasks.values());
+        return taskSnapshot.get();
     }
 
     @Override
     public List<Subtask> getSubtasks() {
-        return new ArrayList<>(subtasks.values());
+        return subtaskSnapshot.get();
     }
 
     @Override
     public List<Epic> getEpics() {
-        return new ArrayList<>(epics.values());
+        return epicSnapshot.get();
     }
 
     @Override
     public List<Subtask> getEpicSubtasks(int epicId) {
-
-        List<Subtask> epicSubtasks = new ArrayList<>();
-        for (Subtask subtask : subtasks.values()) {
-            if (subtask.getEpicId() == epicId) {
-                epicSubtasks.add(subtask);
-            }
+        IntHashSet subtaskIds = epicSubtaskIds.get(epicId);
+        if (subtaskIds == null) {
+            return new ArrayList<>();
+        }
+        List<Subtask> epicSubtasks = new ArrayList<>(subtaskIds.size());
+        for (int subtaskId : subtaskIds.toSortedArray()) {
+            epicSubtasks.add(subtasks.get(subtaskId));
         }
         return epicSubtasks;
     }
 
+    // Индекс epicId -> id подзадач и список подзадач в самом эпике меняются только вместе.
+    private void linkSubtask(Epic epic, Subtask subtask) {
+        epicSubtaskIds.computeIfAbsent(epic.getId(), key -> new IntHashSet()).add(subtask.getId());
+        epic.attachSubtask(subtask);
+    }
+
+    private void unlinkSubtask(Subtask subtask) {
+        IntHashSet subtaskIds = epicSubtaskIds.get(subtask.getEpicId());
+        if (subtaskIds != null) {
+            subtaskIds.remove(subtask.getId());
+        }
+        Epic epic = epics.get(subtask.getEpicId());
+        if (epic != null) {
+            epic.detachSubtask(subtask.getId());
+        }
+    }
+
     @Override
     public List<Task> getHistory() {
         return historyManager.getHistory();
@@ -254,34 +348,363 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public List<Task> getPrioritizedTasks() {
-        return new ArrayList<>(prioritizedTasks);
+        return prioritizedSnapshot.get();
+    }
+
+    @Override
+    public List<Task> findByStatus(TaskStatus status) {
+        List<Task> result = new ArrayList<>();
+        for (TaskType type : TaskType.values()) {
+            collectByStatus(status, type, result);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Task> findByStatusAndType(TaskStatus status, TaskType type) {
+        List<Task> result = new ArrayList<>();
+        collectByStatus(status, type, result);
+        return result;
+    }
+
+    // Выборка по индексу пропорциональна числу найденных записей; порядок — по id.
+    private void collectByStatus(TaskStatus status, TaskType type, List<Task> result) {
+        IntObjectMap<? extends Task> records = recordsOf(type);
+        statusIndex[type.ordinal()][status.ordinal()].forEachFrom(Integer.MIN_VALUE, id -> {
+            result.add(records.get(id));
+            return true;
+        });
+    }
+
+    // Страница читается из индекса с позиции курсора и не затрагивает остальные записи.
+    @Override
+    public Page<Task> getPage(TaskType type, TaskStatus status, String cursor, int limit) {
+        Page.checkLimit(limit);
+        int from = Integer.MIN_VALUE;
+        if (cursor != null) {
+            int after = PageCursor.parse(cursor).getId();
+            if (after == Integer.MAX_VALUE) {
+                return new Page<>(new ArrayList<>(), null);
+            }
+            from = after + 1;
+        }
+        IntBitmap ids = status == null ? typeIndex[type.ordinal()] : statusIndex[type.ordinal()][status.ordinal()];
+        IntObjectMap<? extends Task> records = recordsOf(type);
+        List<Task> candidates = new ArrayList<>(limit + 1);
+        ids.forEachFrom(from, id -> {
+            candidates.add(records.get(id));
+            return candidates.size() <= limit;
+        });
+        return Page.of(candidates, limit, task -> PageCursor.byId(task.getId()));
+    }
+
+    @Override
+    public Page<Task> getPrioritizedPage(String cursor, int limit) {
+        return TimeWindows.page(prioritizedTasks, cursor, limit);
+    }
+
+    @Override
+    public Page<Task> getHistoryPage(String cursor, int limit) {
+        Page.checkLimit(limit);
+        Integer after = cursor == null ? null : PageCursor.parse(cursor).getId();
+        return Page.of(historyManager.getHistoryPage(after, limit + 1), limit,
+                task -> PageCursor.byId(task.getId()));
+    }
+
+    @Override
+    public List<Task> search(String query) {
+        List<Task> result = new ArrayList<>();
+        textIndex.search(query, id -> result.add(findTask(id)));
+        return result;
+    }
+
+    @Override
+    public LocalDateTime findFreeSlot(Duration duration, LocalDateTime notBefore) {
+        TimeWindows.checkSlot(duration, notBefore);
+        long from = TimeWindows.toNanos(notBefore);
+        long start = gaps.findFree(from, TimeWindows.busyNanos(duration));
+        return start == from ? notBefore : TimeWindows.fromNanos(start);
+    }
+
+    // Пакет проверяется по приоритетному индексу без копирования состояния.
+    @Override
+    public List<Integer> applyBatch(List<Command> commands) {
+        BatchPlan.check(commands, this::findTask, this::getEpicSubtasks, prioritizedTasks);
+        return BatchPlan.apply(this, commands);
+    }
+
+    private IntObjectMap<? extends Task> recordsOf(TaskType type) {
+        return switch (type) {
+            case TASK -> tasks;
+            case EPIC -> epics;
+            case SUBTASK -> subtasks;
+        };
+    }
+
+    // Статус и текст записи могли измениться прямо в объекте, поэтому прежнее положение ищется во всех
+    // колонках типа, а слова сравниваются с проиндексированными.
+    private void index(TaskType type, Task task) {
+        invalidateList(type);
+        typeIndex[type.ordinal()].add(task.getId());
+        textIndex.put(task.getId(), task.getNameTask(), task.getDescriptionTask());
+        IntBitmap[] byStatus = statusIndex[type.ordinal()];
+        for (IntBitmap ids : byStatus) {
+            ids.remove(task.getId());
+        }
+        if (task.getStatus() != null) {
+            byStatus[task.getStatus().ordinal()].add(task.getId());
+        }
+    }
+
+    private void unindex(TaskType type, int id) {
+        invalidateList(type);
+        typeIndex[type.ordinal()].remove(id);
+        textIndex.remove(id);
+        for (IntBitmap ids : statusIndex[type.ordinal()]) {
+            ids.remove(id);
+        }
+    }
+
+    private void clearIndex(TaskType type) {
+        invalidateList(type);
+        typeIndex[type.ordinal()].forEachFrom(Integer.MIN_VALUE, id -> {
+            textIndex.remove(id);
+            return true;
+        });
+        typeIndex[type.ordinal()].clear();
+        for (IntBitmap ids : statusIndex[type.ordinal()]) {
+            ids.clear();
+        }
+    }
+
+    // Индекс типа меняется вместе с каждым изменением состава записей типа, поэтому снимок сбрасывается здесь.
+    private void invalidateList(TaskType type) {
+        switch (type) {
+            case TASK -> taskSnapshot.invalidate();
+            case SUBTASK -> subtaskSnapshot.invalidate();
+            case EPIC -> epicSnapshot.invalidate();
+        }
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        return TimeWindows.overlapping(prioritizedTasks, from, to);
+    }
+
+    @Override
+    public EventSubscription subscribe(TaskEventListener listener, int capacity) {
+        List<Task> records = new ArrayList<>(tasks.values());
+        records.addAll(subtasks.values());
+        records.addAll(epics.values());
+        return events.subscribe(listener, capacity, records);
+    }
+
+    @Override
+    public List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        return TimeWindows.startingBetween(prioritizedTasks, from, to);
+    }
+
+    // Новые id будут больше переданного, например сохранённой границы выданных id.
+    protected void observeId(int id) {
+        ids.observe(id);
+    }
+
+    protected Task findTask(int id) {
+        Task task = tasks.get(id);
+        if (task != null) {
+            return task;
+        }
+        Subtask subtask = subtasks.get(id);
+        if (subtask != null) {
+            return subtask;
+        }
+        return epics.get(id);
+    }
+
+    protected void restore(Task task) {
+        ids.observe(task.getId());
+        if (task instanceof Epic epic) {
+            Epic existingEpic = epics.get(epic.getId());
+            if (existingEpic == null) {
+                epics.put(epic.getId(), epic);
+                epicSubtaskIds.put(epic.getId(), new IntHashSet());
+                index(TaskType.EPIC, epic);
+            } else {
+                existingEpic.setNameTask(epic.getNameTask());
+                existingEpic.setDescriptionTask(epic.getDescriptionTask());
+            }
+        } else if (task instanceof Subtask subtask) {
+            Epic epic = epics.get(subtask.getEpicId());
+            if (epic == null) {
+                throw new IllegalArgumentException("Эпик с ID " + subtask.getEpicId() + " не найден.");
+            }
+            Subtask oldSubtask = subtasks.put(subtask.getId(), subtask);
+            if (oldSubtask != null) {
+                timeline.remove(oldSubtask);
+                unlinkSubtask(oldSubtask);
+                if (oldSubtask.getEpicId() != subtask.getEpicId() && epics.containsKey(oldSubtask.getEpicId())) {
+                    updateEpicStatus(oldSubtask.getEpicId());
+                }
+            }
+            if (subtask.hasStartTime()) {
+                timeline.put(subtask);
+            }
+            index(TaskType.SUBTASK, subtask);
+            linkSubtask(epic, subtask);
+            updateEpicStatus(epic.getId());
+        } else {
+            Task oldTask = tasks.put(task.getId(), task);
+            if (oldTask != null) {
+                timeline.remove(oldTask);
+            }
+            if (task.hasStartTime()) {
+                timeline.put(task);
+            }
+            index(TaskType.TASK, task);
+        }
+    }
+
+    // Загрузка сохранённых записей с исходными идентификаторами: без проверок через публичное API,
+    // с одной проверкой пересечений по отсортированному списку и пересчётом статуса каждого эпика один раз.
+    protected void bulkRestore(Iterator<? extends Task> records) {
+        List<Task> timedTasks = new ArrayList<>();
+        Set<Epic> touchedEpics = new HashSet<>();
+        while (records.hasNext()) {
+            Task task = records.next();
+            int id = task.getId();
+            if (findTask(id) != null) {
+                throw duplicateError(task);
+            }
+            ids.observe(id);
+            if (task instanceof Epic epic) {
+                epics.put(id, epic);
+                epicSubtaskIds.put(id, new IntHashSet());
+                index(TaskType.EPIC, epic);
+                continue;
+            }
+            if (task instanceof Subtask subtask) {
+                Epic epic = epics.get(subtask.getEpicId());
+                if (epic == null) {
+                    throw new IllegalArgumentException("Эпик с ID " + subtask.getEpicId() + " не найден.");
+                }
+                subtasks.put(id, subtask);
+                linkSubtask(epic, subtask);
+                index(TaskType.SUBTASK, subtask);
+                touchedEpics.add(epic);
+            } else {
+                tasks.put(id, task);
+                index(TaskType.TASK, task);
+            }
+            if (task.hasStartTime()) {
+                timedTasks.add(task);
+            }
+        }
+
+        timeline.addAll(timedTasks);
+        for (Epic epic : touchedEpics) {
+            epic.updateStatus();
+            index(TaskType.EPIC, epic);
+        }
+    }
+
+    private IllegalArgumentException duplicateError(Task task) {
+        if (task instanceof Epic) {
+            return new IllegalArgumentException("Эпик с таким идентификатором уже существует");
+        }
+        if (task instanceof Subtask) {
+            return new IllegalArgumentException("Подзадача с таким идентификатором уже существует");
+        }
+        return new IllegalArgumentException("Задача с таким идентификатором уже существует");
     }
 
     private void updateEpicStatus(int epicId) {
-        Epic epic = getEpicById(epicId);
+        Epic epic = epics.get(epicId);
         if (epic == null) {
             throw new IllegalArgumentException("Эпик с ID " + epicId + " не найден.");
         }
+        TaskStatus previous = epic.getStatus();
+        epic.updateStatus();
+        index(TaskType.EPIC, epic);
+        if (VERIFY_EPIC_STATUS) {
+            verifyEpicStatus(epic);
+        }
+        publishStatusChange(epic, previous);
+    }
 
-        List<Subtask> subtasks = getEpicSubtasks(epicId);
-        boolean hasInProgress = false;
-        boolean hasDone = false;
+    // Смена статуса эпика из-за подзадач. Подзадачи к этому моменту уже изменены, поэтому прежняя версия
+    // эпика в событии отличается от новой только статусом.
+    private void publishStatusChange(Epic epic, TaskStatus previous) {
+        if (epic.getStatus() == previous || !events.isActive()) {
+            return;
+        }
+        Task before = events.snapshot(epic);
+        if (before != null) {
+            before.setStatus(previous);
+        }
+        events.publish(TaskEvent.Kind.UPDATED, TaskType.EPIC, epic.getId(), before, events.snapshot(epic));
+    }
 
-        for (Subtask subtask : subtasks) {
-            if (subtask.getStatus() == TaskStatus.IN_PROGRESS) {
-                hasInProgress = true;
-            } else if (subtask.getStatus() == TaskStatus.DONE) {
-                hasDone = true;
+    private void publishDeleted(TaskType type, List<? extends Task> removed) {
+        for (Task task : removed) {
+            events.publish(TaskEvent.Kind.DELETED, type, task.getId(), events.previous(task), null);
+        }
+    }
+
+    // Сверяет счётчики статусов каждого эпика с полным пересчётом его подзадач. Для тестов и отладки:
+    // при запуске с -Dtracker.verifyEpicStatus=true проверка выполняется после каждого изменения эпика.
+    public void verifyEpicStatuses() {
+        for (Epic epic : epics.values()) {
+            verifyEpicStatus(epic);
+        }
+    }
+
+    private void verifyEpicStatus(Epic epic) {
+        int[] counts = new int[TaskStatus.values().length];
+        for (Subtask subtask : getEpicSubtasks(epic.getId())) {
+            counts[subtask.getStatus().ordinal()]++;
+        }
+        for (TaskStatus status : TaskStatus.values()) {
+            if (epic.getSubtaskCount(status) != counts[status.ordinal()]) {
+                throw new IllegalStateException("Счётчик " + status + " эпика " + epic.getId() + " равен "
+                        + epic.getSubtaskCount(status) + ", а подзадач в этом статусе " + counts[status.ordinal()]);
             }
         }
+        TaskStatus expected = Epic.deriveStatus(counts[TaskStatus.NEW.ordinal()],
+                counts[TaskStatus.IN_PROGRESS.ordinal()], counts[TaskStatus.DONE.ordinal()]);
+        if (epic.getStatus() != expected) {
+            throw new IllegalStateException("Статус эпика " + epic.getId() + " " + epic.getStatus()
+                    + " не соответствует подзадачам: " + expected);
+        }
+    }
 
-        if (hasInProgress) {
-            epic.setStatus(TaskStatus.IN_PROGRESS);
-        } else if (hasDone) {
-            epic.setStatus(TaskStatus.DONE);
-        } else {
-            epic.setStatus(TaskStatus.NEW);
+    // Приоритетный список, который ведёт индекс свободных промежутков и календарную сетку, если она задана.
+    private final class SlotTimeline extends Timeline {
+        private SlotTimeline() {
+            super(prioritizedTasks);
+        }
+
+        @Override
+        CalendarGrid.Verdict precheck(Task task) {
+            return calendarGrid == null ? CalendarGrid.Verdict.UNKNOWN : calendarGrid.check(task);
+        }
+
+        @Override
+        void occupied(Task task) {
+            prioritizedSnapshot.invalidate();
+            gaps.occupy(task.getId(), task.getStartNanos(), task.getBusyUntilNanos());
+            if (calendarGrid != null) {
+                calendarGrid.reserve(task);
+            }
+        }
+
+        // Сетка восстанавливает отметки соседей по набору, поэтому освобождается после удаления из него.
+        @Override
+        void released(int id) {
+            prioritizedSnapshot.invalidate();
+            gaps.release(id);
+            if (calendarGrid != null) {
+                calendarGrid.release(id);
+            }
         }
     }
 }
-
@@ -13,6 +13,24 @@ public class Managers {
         return new FileBackedTaskManager(new File("resources/task.csv"));
     }
 
+    public static TaskManager getDefault(StorageFormat format) throws ManagerSaveException {
+        File file = new File(format == StorageFormat.BINARY ? "resources/task.bin" : "resources/task.csv");
+        return new FileBackedTaskManager(file, PersistenceMode.SNAPSHOT, format);
+    }
+
+    public static TaskManager getJournaled() throws ManagerSaveException {
+        return FileBackedTaskManager.loadFromFile(new File("resources/task.csv"), getDefaultHistory(),
+                PersistenceMode.JOURNAL);
+    }
+
+    public static TaskManager getMapped() throws ManagerSaveException {
+        return new MappedTaskManager(new File("resources/task.map"), getDefaultHistory());
+    }
+
+    public static TaskManager getConcurrent() {
+        return new ConcurrentTaskManager(getDefaultHistory());
+    }
+
     public static HistoryManager getDefaultHistory() {
         return new InMemoryHistoryManager();
     }
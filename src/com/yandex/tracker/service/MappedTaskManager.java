@@ -0,0 +1,569 @@
+package com.yandex.tracker.service;
+
+import com.yandex.tracker.model.Epic;
+import com.yandex.tracker.model.Subtask;
+import com.yandex.tracker.model.Task;
+import com.yandex.tracker.storage.MappedRecordFile;
+import com.yandex.tracker.util.GapIndex;
+import com.yandex.tracker.util.IntBitmap;
+import com.yandex.tracker.util.IntHashSet;
+import com.yandex.tracker.util.IntIntMap;
+import com.yandex.tracker.util.IntObjectMap;
+import com.yandex.tracker.util.TextIndex;
+import com.yandex.tracker.util.TimeIndex;
+
+import java.io.Closeable;
+import java.io.File;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Менеджер, хранящий записи в отображённом в память файле вместо объектов в куче. В памяти держатся только
+// примитивные индексы: id -> слот, упорядоченные id записей каждого типа, подзадачи эпиков, дерево начал
+// для приоритетного списка и свободные промежутки между задачами. Объекты задач создаются по запросу,
+// поэтому возвращаемые задачи — копии: изменения в них применяются через update*. При запуске индексы
+// строятся проходом по слотам без разбора строк.
+public class MappedTaskManager implements TaskManager, Closeable {
+    private static final int NO_SLOT = -1;
+
+    private final MappedRecordFile records;
+    private final HistoryManager historyManager;
+    private final IntIntMap slots = new IntIntMap();
+    private final IntBitmap[] typeIds = new IntBitmap[TaskType.values().length];
+    private final IntObjectMap<IntHashSet> epicSubtasks = new IntObjectMap<>();
+    private final TimeIndex prioritized = new TimeIndex();
+    private final GapIndex gaps = new GapIndex();
+    // Индекс слов строится при первом поиске, чтобы запуск не разбирал строки записей.
+    private TextIndex textIndex;
+    // Стек свободных слотов: освобождённый последним занимается первым.
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private final TaskEventBus events = new TaskEventBus();
+
+    public MappedTaskManager(File file, HistoryManager historyManager) {
+        this.records = new MappedRecordFile(file);
+        this.historyManager = historyManager;
+        for (TaskType type : TaskType.values()) {
+            typeIds[type.ordinal()] = new IntBitmap();
+        }
+        for (int slot = 0; slot < records.getSlotCount(); slot++) {
+            if (!records.isUsed(slot)) {
+                pushFreeSlot(slot);
+                continue;
+            }
+            int id = records.id(slot);
+            TaskType type = records.type(slot);
+            slots.put(id, slot);
+            typeIds[type.ordinal()].add(id);
+            switch (type) {
+                case EPIC -> epicSubtasks.computeIfAbsent(id, key -> new IntHashSet());
+                case SUBTASK -> {
+                    epicSubtasks.computeIfAbsent(records.epicId(slot), key -> new IntHashSet()).add(id);
+                    load(slot);
+                }
+                case TASK -> load(slot);
+            }
+        }
+        prioritized.build();
+    }
+
+    @Override
+    public int createTask(Task task) {
+        if (task.getId() != 0 && slotOf(task.getId(), TaskType.TASK) != NO_SLOT) {
+            throw new IllegalArgumentException("Задачи с одинаковым id не должны добавляться.");
+        }
+        checkOverlap(task, 0);
+        task.setId(nextId());
+        store(task);
+        events.publish(TaskEvent.Kind.CREATED, TaskType.TASK, task.getId(), null, events.snapshot(task));
+        return task.getId();
+    }
+
+    @Override
+    public Integer createSubtask(Subtask subtask) {
+        if (slotOf(subtask.getEpicId(), TaskType.EPIC) == NO_SLOT) {
+            throw new IllegalArgumentException("Эпик с ID " + subtask.getEpicId() + "  не существует.");
+        }
+        if (subtask.getId() != 0 && slotOf(subtask.getId(), TaskType.SUBTASK) != NO_SLOT) {
+            throw new IllegalArgumentException("Подзадачи с одинаковым id не должны добавляться.");
+        }
+        checkOverlap(subtask, 0);
+        subtask.setId(nextId());
+        store(subtask);
+        events.publish(TaskEvent.Kind.CREATED, TaskType.SUBTASK, subtask.getId(), null, events.snapshot(subtask));
+        epicSubtasks.get(subtask.getEpicId()).add(subtask.getId());
+        updateEpicStatus(subtask.getEpicId());
+        return subtask.getId();
+    }
+
+    @Override
+    public int createEpic(Epic epic) {
+        epic.setId(nextId());
+        int slot = store(epic);
+        epicSubtasks.put(epic.getId(), new IntHashSet());
+        records.setStatus(slot, epicStatus(epic.getId()));
+        events.publish(TaskEvent.Kind.CREATED, TaskType.EPIC, epic.getId(), null, stored(slot));
+        return epic.getId();
+    }
+
+    private int nextId() {
+        int id = records.getCounter() + 1;
+        records.setCounter(id);
+        return id;
+    }
+
+    private int store(Task task) {
+        int slot = slots.getOrDefault(task.getId(), NO_SLOT);
+        if (slot != NO_SLOT && records.type(slot) != task.getTaskType()) {
+            throw new IllegalArgumentException("Идентификатор " + task.getId() + " занят задачей другого типа.");
+        }
+        if (task.getId() > records.getCounter()) {
+            records.setCounter(task.getId());
+        }
+        if (slot == NO_SLOT) {
+            slot = freeCount == 0 ? records.append() : freeSlots[--freeCount];
+            slots.put(task.getId(), slot);
+            typeIds[task.getTaskType().ordinal()].add(task.getId());
+        } else {
+            unindex(slot);
+        }
+        records.write(slot, task);
+        if (textIndex != null) {
+            textIndex.put(task.getId(), task.getNameTask(), task.getDescriptionTask());
+        }
+        if (!(task instanceof Epic)) {
+            index(slot);
+        }
+        return slot;
+    }
+
+    private void delete(int id) {
+        int slot = slots.getOrDefault(id, NO_SLOT);
+        if (slot == NO_SLOT) {
+            return;
+        }
+        TaskType type = records.type(slot);
+        Task before = stored(slot);
+        slots.remove(id);
+        typeIds[type.ordinal()].remove(id);
+        unindex(slot);
+        if (textIndex != null) {
+            textIndex.remove(id);
+        }
+        records.free(slot);
+        pushFreeSlot(slot);
+        historyManager.remove(id);
+        events.publish(TaskEvent.Kind.DELETED, type, id, before, null);
+    }
+
+    private void pushFreeSlot(int slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    // Сохранённая версия записи для события или null, если подписок нет. Чтение из файла уже даёт копию.
+    private Task stored(int slot) {
+        if (!events.isActive()) {
+            return null;
+        }
+        return records.type(slot) == TaskType.EPIC ? readEpic(slot) : records.read(slot);
+    }
+
+    private int slotOf(int id, TaskType type) {
+        int slot = slots.getOrDefault(id, NO_SLOT);
+        return slot != NO_SLOT && records.type(slot) == type ? slot : NO_SLOT;
+    }
+
+    private Task read(int id) {
+        return records.read(slots.getOrDefault(id, NO_SLOT));
+    }
+
+    // При запуске начала собираются без порядка и сортируются один раз.
+    private void load(int slot) {
+        long seconds = records.startSeconds(slot);
+        if (seconds != MappedRecordFile.NULL_TIME) {
+            prioritized.append(seconds, records.startNanos(slot), records.id(slot));
+            occupy(slot);
+        }
+    }
+
+    private void index(int slot) {
+        long seconds = records.startSeconds(slot);
+        if (seconds != MappedRecordFile.NULL_TIME) {
+            prioritized.add(seconds, records.startNanos(slot), records.id(slot));
+            occupy(slot);
+        }
+    }
+
+    // Интервал записи в индексе промежутков; занятость считается по тем же правилам, что и у Task.
+    private void occupy(int slot) {
+        LocalDateTime start = records.startTime(slot);
+        gaps.occupy(records.id(slot), TimeWindows.toNanos(start),
+                TimeWindows.toNanos(TimeWindows.busyUntil(start, records.duration(slot))));
+    }
+
+    // Вызывается, пока слот ещё хранит прежнее начало записи.
+    private void unindex(int slot) {
+        long seconds = records.startSeconds(slot);
+        if (seconds != MappedRecordFile.NULL_TIME) {
+            prioritized.remove(seconds, records.startNanos(slot), records.id(slot));
+            gaps.release(records.id(slot));
+        }
+    }
+
+    // Интервалы в индексе не пересекаются, поэтому достаточно проверить соседей нового интервала. Соседи
+    // читаются из файла и сравниваются по тем же правилам, что и в остальных менеджерах.
+    private void checkOverlap(Task task, int ownId) {
+        if (!task.hasStartTime()) {
+            return;
+        }
+        LocalDateTime start = task.getStartTime();
+        int position = prioritized.lowerBound(start.toEpochSecond(ZoneOffset.UTC), start.getNano(),
+                Integer.MIN_VALUE);
+        int before = position - 1;
+        if (before >= 0 && prioritized.idAt(before) == ownId) {
+            before--;
+        }
+        int after = position;
+        if (after < prioritized.size() && prioritized.idAt(after) == ownId) {
+            after++;
+        }
+        if (before >= 0 && read(prioritized.idAt(before)).conflictsWith(task)
+                || after < prioritized.size() && read(prioritized.idAt(after)).conflictsWith(task)) {
+            throw Timeline.overlapError(task);
+        }
+    }
+
+    private void updateEpicStatus(int epicId) {
+        int epicSlot = slotOf(epicId, TaskType.EPIC);
+        if (epicSlot == NO_SLOT) {
+            throw new IllegalArgumentException("Эпик с ID " + epicId + " не найден.");
+        }
+        TaskStatus status = epicStatus(epicId);
+        if (status == records.status(epicSlot)) {
+            return;
+        }
+        // Смена статуса эпика из-за подзадач: подзадачи уже изменены, версии отличаются только статусом.
+        Task before = stored(epicSlot);
+        records.setStatus(epicSlot, status);
+        events.publish(TaskEvent.Kind.UPDATED, TaskType.EPIC, epicId, before, stored(epicSlot));
+    }
+
+    private TaskStatus epicStatus(int epicId) {
+        int[] counts = new int[TaskStatus.values().length];
+        for (int subtaskId : epicSubtasks.get(epicId).toSortedArray()) {
+            counts[records.status(slots.getOrDefault(subtaskId, NO_SLOT)).ordinal()]++;
+        }
+        return Epic.deriveStatus(counts[TaskStatus.NEW.ordinal()], counts[TaskStatus.IN_PROGRESS.ordinal()],
+                counts[TaskStatus.DONE.ordinal()]);
+    }
+
+    @Override
+    public void removeTasks() {
+        for (int id : idsOf(TaskType.TASK)) {
+            delete(id);
+        }
+    }
+
+    @Override
+    public void removeEpics() {
+        for (int id : idsOf(TaskType.SUBTASK)) {
+            delete(id);
+        }
+        for (int id : idsOf(TaskType.EPIC)) {
+            delete(id);
+        }
+        epicSubtasks.clear();
+    }
+
+    @Override
+    public void removeSubtasks() {
+        for (int id : idsOf(TaskType.SUBTASK)) {
+            delete(id);
+        }
+        for (int epicId : idsOf(TaskType.EPIC)) {
+            epicSubtasks.get(epicId).clear();
+            updateEpicStatus(epicId);
+        }
+    }
+
+    @Override
+    public Task getTaskById(int id) {
+        int slot = slotOf(id, TaskType.TASK);
+        return slot == NO_SLOT ? null : viewed(records.read(slot));
+    }
+
+    @Override
+    public Subtask getSubtaskById(int id) {
+        int slot = slotOf(id, TaskType.SUBTASK);
+        return slot == NO_SLOT ? null : viewed((Subtask) records.read(slot));
+    }
+
+    @Override
+    public Epic getEpicById(int id) {
+        int slot = slotOf(id, TaskType.EPIC);
+        return slot == NO_SLOT ? null : viewed(readEpic(slot));
+    }
+
+    private <T extends Task> T viewed(T task) {
+        historyManager.add(task);
+        return task;
+    }
+
+    private Epic readEpic(int slot) {
+        Epic epic = (Epic) records.read(slot);
+        for (Subtask subtask : getEpicSubtasks(epic.getId())) {
+            epic.attachSubtask(subtask);
+        }
+        return epic;
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        checkOverlap(task, task.getId());
+        int oldSlot = slotOf(task.getId(), TaskType.TASK);
+        Task before = oldSlot == NO_SLOT ? null : stored(oldSlot);
+        store(task);
+        events.publish(oldSlot == NO_SLOT ? TaskEvent.Kind.CREATED : TaskEvent.Kind.UPDATED, TaskType.TASK,
+                task.getId(), before, events.snapshot(task));
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        if (slotOf(subtask.getEpicId(), TaskType.EPIC) == NO_SLOT) {
+            throw new IllegalArgumentException("Эпик с ID " + subtask.getEpicId() + " не найден.");
+        }
+        checkOverlap(subtask, subtask.getId());
+        int oldSlot = slotOf(subtask.getId(), TaskType.SUBTASK);
+        int oldEpicId = oldSlot == NO_SLOT ? 0 : records.epicId(oldSlot);
+        Task before = oldSlot == NO_SLOT ? null : stored(oldSlot);
+        store(subtask);
+        events.publish(oldSlot == NO_SLOT ? TaskEvent.Kind.CREATED : TaskEvent.Kind.UPDATED, TaskType.SUBTASK,
+                subtask.getId(), before, events.snapshot(subtask));
+        if (oldSlot != NO_SLOT && oldEpicId != subtask.getEpicId() && epicSubtasks.containsKey(oldEpicId)) {
+            epicSubtasks.get(oldEpicId).remove(subtask.getId());
+            updateEpicStatus(oldEpicId);
+        }
+        epicSubtasks.get(subtask.getEpicId()).add(subtask.getId());
+        updateEpicStatus(subtask.getEpicId());
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        int slot = slotOf(epic.getId(), TaskType.EPIC);
+        if (slot == NO_SLOT) {
+            throw new IllegalArgumentException("Эпик с ID " + epic.getId() + " не найден.");
+        }
+        Task before = stored(slot);
+        Epic existingEpic = (Epic) records.read(slot);
+        existingEpic.setDescriptionTask(epic.getDescriptionTask());
+        store(existingEpic);
+        updateEpicStatus(existingEpic.getId());
+        events.publish(TaskEvent.Kind.UPDATED, TaskType.EPIC, epic.getId(), before, stored(slot));
+    }
+
+    @Override
+    public void removeTaskById(int id) {
+        if (slotOf(id, TaskType.TASK) != NO_SLOT) {
+            delete(id);
+        }
+    }
+
+    @Override
+    public void removeSubtaskById(int id) {
+        int slot = slotOf(id, TaskType.SUBTASK);
+        if (slot == NO_SLOT) {
+            return;
+        }
+        int epicId = records.epicId(slot);
+        delete(id);
+        IntHashSet subtaskIds = epicSubtasks.get(epicId);
+        if (subtaskIds != null) {
+            subtaskIds.remove(id);
+            updateEpicStatus(epicId);
+        }
+    }
+
+    @Override
+    public void removeEpicById(int id) {
+        if (slotOf(id, TaskType.EPIC) == NO_SLOT) {
+            return;
+        }
+        for (int subtaskId : epicSubtasks.remove(id).toSortedArray()) {
+            delete(subtaskId);
+        }
+        delete(id);
+    }
+
+    // id записей типа по возрастанию; копия, поэтому по ней можно удалять.
+    private int[] idsOf(TaskType type) {
+        IntBitmap ids = typeIds[type.ordinal()];
+        int[] result = new int[ids.size()];
+        int[] count = new int[1];
+        ids.forEachFrom(Integer.MIN_VALUE, id -> {
+            result[count[0]++] = id;
+            return true;
+        });
+        return result;
+    }
+
+    @Override
+    public List<Task> getTasks() {
+        List<Task> result = new ArrayList<>();
+        for (int id : idsOf(TaskType.TASK)) {
+            result.add(read(id));
+        }
+        return result;
+    }
+
+    @Override
+    public List<Subtask> getSubtasks() {
+        List<Subtask> result = new ArrayList<>();
+        for (int id : idsOf(TaskType.SUBTASK)) {
+            result.add((Subtask) read(id));
+        }
+        return result;
+    }
+
+    @Override
+    public List<Epic> getEpics() {
+        List<Epic> result = new ArrayList<>();
+        for (int id : idsOf(TaskType.EPIC)) {
+            result.add(readEpic(slots.getOrDefault(id, NO_SLOT)));
+        }
+        return result;
+    }
+
+    @Override
+    public List<Subtask> getEpicSubtasks(int epicId) {
+        List<Subtask> result = new ArrayList<>();
+        IntHashSet subtaskIds = epicSubtasks.get(epicId);
+        if (subtaskIds == null) {
+            return result;
+        }
+        for (int subtaskId : subtaskIds.toSortedArray()) {
+            result.add((Subtask) read(subtaskId));
+        }
+        return result;
+    }
+
+    // Страница читается из индекса id с позиции курсора; статус сравнивается по слоту без разбора записи.
+    @Override
+    public Page<Task> getPage(TaskType type, TaskStatus status, String cursor, int limit) {
+        Page.checkLimit(limit);
+        int from = Integer.MIN_VALUE;
+        if (cursor != null) {
+            int after = PageCursor.parse(cursor).getId();
+            if (after == Integer.MAX_VALUE) {
+                return new Page<>(new ArrayList<>(), null);
+            }
+            from = after + 1;
+        }
+        List<Task> candidates = new ArrayList<>(limit + 1);
+        typeIds[type.ordinal()].forEachFrom(from, id -> {
+            int slot = slots.getOrDefault(id, NO_SLOT);
+            if (status == null || records.status(slot) == status) {
+                candidates.add(type == TaskType.EPIC ? readEpic(slot) : records.read(slot));
+            }
+            return candidates.size() <= limit;
+        });
+        return Page.of(candidates, limit, task -> PageCursor.byId(task.getId()));
+    }
+
+    @Override
+    public List<Task> search(String query) {
+        if (textIndex == null) {
+            TextIndex index = new TextIndex();
+            for (int slot = 0; slot < records.getSlotCount(); slot++) {
+                if (records.isUsed(slot)) {
+                    Task task = records.read(slot);
+                    index.put(task.getId(), task.getNameTask(), task.getDescriptionTask());
+                }
+            }
+            textIndex = index;
+        }
+        List<Task> result = new ArrayList<>();
+        textIndex.search(query, id -> {
+            int slot = slots.getOrDefault(id, NO_SLOT);
+            result.add(records.type(slot) == TaskType.EPIC ? readEpic(slot) : records.read(slot));
+            return true;
+        });
+        return result;
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return readRange(0, prioritized.size());
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        TimeWindows.check(from, to);
+        int first = lowerBound(from, 0);
+        List<Task> result = new ArrayList<>();
+        if (first > 0) {
+            Task before = read(prioritized.idAt(first - 1));
+            if (TimeWindows.busyUntil(before).isAfter(from)) {
+                result.add(before);
+            }
+        }
+        result.addAll(readRange(first, lowerBound(to, prioritized.size())));
+        return result;
+    }
+
+    @Override
+    public LocalDateTime findFreeSlot(Duration duration, LocalDateTime notBefore) {
+        TimeWindows.checkSlot(duration, notBefore);
+        long from = TimeWindows.toNanos(notBefore);
+        long start = gaps.findFree(from, TimeWindows.busyNanos(duration));
+        return start == from ? notBefore : TimeWindows.fromNanos(start);
+    }
+
+    @Override
+    public List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        TimeWindows.check(from, to);
+        return readRange(lowerBound(from, 0), lowerBound(to, prioritized.size()));
+    }
+
+    // Позиция первой задачи с началом не раньше time; граница null не ограничивает и даёт unbounded.
+    private int lowerBound(LocalDateTime time, int unbounded) {
+        return time == null ? unbounded
+                : prioritized.lowerBound(time.toEpochSecond(ZoneOffset.UTC), time.getNano(), Integer.MIN_VALUE);
+    }
+
+    private List<Task> readRange(int from, int to) {
+        List<Task> result = new ArrayList<>(Math.max(0, to - from));
+        for (int position = from; position < to; position++) {
+            result.add(read(prioritized.idAt(position)));
+        }
+        return result;
+    }
+
+    @Override
+    public EventSubscription subscribe(TaskEventListener listener, int capacity) {
+        List<Task> current = new ArrayList<>(getTasks());
+        current.addAll(getSubtasks());
+        current.addAll(getEpics());
+        return events.subscribe(listener, capacity, current);
+    }
+
+    // Сбрасывает изменения на диск. Без вызова изменения сохраняет ОС при выгрузке страниц.
+    public void force() {
+        records.force();
+    }
+
+    @Override
+    public void close() {
+        records.close();
+    }
+}
@@ -0,0 +1,40 @@
+package com.yandex.tracker.service;
+
+import java.util.List;
+import java.util.function.Function;
+
+// Страница списка: элементы и непрозрачный курсор следующей страницы, null — страница последняя.
+public class Page<T> {
+    public static final int MAX_LIMIT = 1000;
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public static void checkLimit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Размер страницы должен быть от 1 до " + MAX_LIMIT + ": " + limit);
+        }
+    }
+
+    // Собирает страницу из не более чем limit + 1 кандидатов: лишний кандидат означает, что есть продолжение.
+    static <T> Page<T> of(List<T> candidates, int limit, Function<T, String> cursorOf) {
+        if (candidates.size() <= limit) {
+            return new Page<>(candidates, null);
+        }
+        List<T> items = candidates.subList(0, limit);
+        return new Page<>(items, cursorOf.apply(items.get(limit - 1)));
+    }
+}
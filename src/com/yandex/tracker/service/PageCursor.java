@@ -0,0 +1,59 @@
+package com.yandex.tracker.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// Курсор постраничной выдачи: позиция последнего выданного элемента — id или пара (начало, id)
+// для приоритетного списка. Клиенту курсор передаётся строкой Base64 и разбирается только здесь.
+public final class PageCursor {
+    private static final String BY_ID = "i";
+    private static final String BY_START_TIME = "t";
+    private static final String SEPARATOR = "|";
+
+    private final LocalDateTime startTime;
+    private final int id;
+
+    private PageCursor(LocalDateTime startTime, int id) {
+        this.startTime = startTime;
+        this.id = id;
+    }
+
+    public static String byId(int id) {
+        return encode(BY_ID + SEPARATOR + id);
+    }
+
+    public static String byStartTime(LocalDateTime startTime, int id) {
+        return encode(BY_START_TIME + SEPARATOR + startTime + SEPARATOR + id);
+    }
+
+    public static PageCursor parse(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                    .split("\\" + SEPARATOR, -1);
+            if (parts.length == 2 && BY_ID.equals(parts[0])) {
+                return new PageCursor(null, Integer.parseInt(parts[1]));
+            }
+            if (parts.length == 3 && BY_START_TIME.equals(parts[0])) {
+                return new PageCursor(LocalDateTime.parse(parts[1]), Integer.parseInt(parts[2]));
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Некорректный курсор: " + cursor, e);
+        }
+        throw new IllegalArgumentException("Некорректный курсор: " + cursor);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    // Начало для курсора приоритетного списка; null для курсора по id.
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
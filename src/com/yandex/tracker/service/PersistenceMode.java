@@ -0,0 +1,8 @@
+package com.yandex.tracker.service;
+
+public enum PersistenceMode {
+    SNAPSHOT,
+    JOURNAL,
+    ASYNC_JOURNAL,
+    INCREMENTAL
+}
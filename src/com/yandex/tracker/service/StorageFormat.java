@@ -0,0 +1,6 @@
+package com.yandex.tracker.service;
+
+public enum StorageFormat {
+    CSV,
+    BINARY
+}
@@ -0,0 +1,59 @@
+package com.yandex.tracker.service;
+
+import com.yandex.tracker.model.Task;
+
+// Изменение записи менеджера. version — порядковый номер события в менеджере: номера событий одной
+// подписки возрастают, и пропуск номера означает, что событие было вытеснено из переполненного буфера.
+// before и after — копии записи до и после изменения: у создания before равен null, у удаления — after.
+public final class TaskEvent {
+    public enum Kind {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Kind kind;
+    private final TaskType type;
+    private final int id;
+    private final long version;
+    private final Task before;
+    private final Task after;
+
+    TaskEvent(Kind kind, TaskType type, int id, long version, Task before, Task after) {
+        this.kind = kind;
+        this.type = type;
+        this.id = id;
+        this.version = version;
+        this.before = before;
+        this.after = after;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public TaskType getType() {
+        return type;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Task getBefore() {
+        return before;
+    }
+
+    public Task getAfter() {
+        return after;
+    }
+
+    @Override
+    public String toString() {
+        return version + " " + kind + " " + type + " " + id;
+    }
+}
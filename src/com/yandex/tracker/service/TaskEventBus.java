@@ -0,0 +1,107 @@
+package com.yandex.tracker.service;
+
+import com.yandex.tracker.model.Epic;
+import com.yandex.tracker.model.Subtask;
+import com.yandex.tracker.model.Task;
+import com.yandex.tracker.util.IntObjectMap;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Рассылка событий менеджера по подпискам. Копии записей и сами события создаются, только пока есть
+// хотя бы одна подписка, так что без подписчиков изменение стоит одной проверки.
+// Менеджеры хранят объекты, переданные вызывающим кодом, и тот может изменить запись на месте до вызова
+// update*. Поэтому прежняя версия берётся не из живого объекта, а из последней опубликованной копии записи.
+final class TaskEventBus {
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private final List<EventSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong version = new AtomicLong();
+    // id -> копия записи из последнего события о ней. Ведётся, только пока есть подписки.
+    private final IntObjectMap<Task> published = new IntObjectMap<>();
+
+    // records — текущие записи менеджера: первая подписка запоминает их копии как прежние версии.
+    EventSubscription subscribe(TaskEventListener listener, int capacity, Collection<? extends Task> records) {
+        EventSubscription subscription = new EventSubscription(this, listener, capacity);
+        synchronized (this) {
+            if (subscriptions.isEmpty()) {
+                for (Task task : records) {
+                    published.put(task.getId(), copyOf(task));
+                }
+            }
+            subscriptions.add(subscription);
+        }
+        return subscription;
+    }
+
+    synchronized void remove(EventSubscription subscription) {
+        subscriptions.remove(subscription);
+        if (subscriptions.isEmpty()) {
+            published.clear();
+        }
+    }
+
+    boolean isActive() {
+        return !subscriptions.isEmpty();
+    }
+
+    // Копия записи для события или null, если подписок нет.
+    Task snapshot(Task task) {
+        return task == null || subscriptions.isEmpty() ? null : copyOf(task);
+    }
+
+    // Прежняя версия записи для изменения или удаления: опубликованная копия, а если её нет — копия task.
+    Task previous(Task task) {
+        if (task == null || subscriptions.isEmpty()) {
+            return null;
+        }
+        synchronized (this) {
+            Task copy = published.get(task.getId());
+            return copy != null ? copy : copyOf(task);
+        }
+    }
+
+    // Номер выдаётся и событие раскладывается по подпискам атомарно, поэтому при изменениях из разных
+    // потоков каждая подписка получает события в порядке version.
+    void publish(TaskEvent.Kind kind, TaskType type, int id, Task before, Task after) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            TaskEvent event = new TaskEvent(kind, type, id, version.incrementAndGet(), before, after);
+            if (after != null) {
+                published.put(id, after);
+            } else {
+                published.remove(id);
+            }
+            for (EventSubscription subscription : subscriptions) {
+                subscription.offer(event);
+            }
+        }
+    }
+
+    // Копия эпика с теми же подзадачами и статусом. Ею же ConcurrentTaskManager публикует эпики читателям.
+    static Epic copyOf(Epic epic) {
+        Epic copy = new Epic(epic.getId(), epic.getNameTask(), epic.getDescriptionTask(), epic.getStatus(),
+                null, null);
+        for (Subtask subtask : epic.getSubtasks()) {
+            copy.attachSubtask(subtask);
+        }
+        copy.setStatus(epic.getStatus());
+        return copy;
+    }
+
+    private static Task copyOf(Task task) {
+        if (task instanceof Epic epic) {
+            return copyOf(epic);
+        }
+        if (task instanceof Subtask subtask) {
+            return new Subtask(subtask.getId(), subtask.getNameTask(), subtask.getDescriptionTask(),
+                    subtask.getStatus(), subtask.getDuration(), subtask.getStartTime(), subtask.getEpicId());
+        }
+        return new Task(task.getId(), task.getNameTask(), task.getDescriptionTask(), task.getStatus(),
+                task.getTaskType(), task.getDuration(), task.getStartTime());
+    }
+}
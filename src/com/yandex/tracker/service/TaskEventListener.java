@@ -0,0 +1,8 @@
+package com.yandex.tracker.service;
+
+// Получатель событий подписки. Вызывается из потока подписки, по одному событию в порядке version;
+// исключение слушателя печатается, учитывается в getFailedCount подписки и не прерывает доставку следующих.
+@FunctionalInterface
+public interface TaskEventListener {
+    void onEvent(TaskEvent event);
+}
@@ -3,8 +3,16 @@ package com.yandex.tracker.service;
 import com.yandex.tracker.model.Epic;
 import com.yandex.tracker.model.Subtask;
 import com.yandex.tracker.model.Task;
+import com.yandex.tracker.util.TextIndex;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 
 public interface TaskManager {
 
@@ -49,6 +57,190 @@ public interface TaskManager {
     List<Task> getHistory();
 
     List<Task> getPrioritizedTasks();
+
+    // Записи всех типов в статусе status: сначала задачи, затем эпики и подзадачи.
+    default List<Task> findByStatus(TaskStatus status) {
+        List<Task> result = new ArrayList<>();
+        for (TaskType type : TaskType.values()) {
+            result.addAll(findByStatusAndType(status, type));
+        }
+        return result;
+    }
+
+    default List<Task> findByStatusAndType(TaskStatus status, TaskType type) {
+        List<Task> result = new ArrayList<>();
+        for (Task task : recordsOf(type)) {
+            if (task.getStatus() == status) {
+                result.add(task);
+            }
+        }
+        return result;
+    }
+
+    // Страница записей типа type в порядке id, status == null — без фильтра по статусу.
+    // Курсор — nextCursor предыдущей страницы или null для первой.
+    default Page<Task> getPage(TaskType type, TaskStatus status, String cursor, int limit) {
+        Page.checkLimit(limit);
+        int after = cursor == null ? Integer.MIN_VALUE : PageCursor.parse(cursor).getId();
+        List<Task> candidates = new ArrayList<>();
+        for (Task task : status == null ? recordsOf(type) : findByStatusAndType(status, type)) {
+            if (cursor == null || task.getId() > after) {
+                candidates.add(task);
+            }
+        }
+        candidates.sort(Comparator.comparingInt(Task::getId));
+        return Page.of(candidates.subList(0, Math.min(candidates.size(), limit + 1)), limit,
+                task -> PageCursor.byId(task.getId()));
+    }
+
+    // Страница приоритетного списка; курсор хранит начало и id последней выданной задачи.
+    default Page<Task> getPrioritizedPage(String cursor, int limit) {
+        Page.checkLimit(limit);
+        List<Task> prioritized = getPrioritizedTasks();
+        int from = 0;
+        if (cursor != null) {
+            PageCursor position = PageCursor.parse(cursor);
+            if (position.getStartTime() == null) {
+                throw new IllegalArgumentException("Курсор не относится к приоритетному списку: " + cursor);
+            }
+            while (from < prioritized.size() && TimeWindows.compare(prioritized.get(from), position) <= 0) {
+                from++;
+            }
+        }
+        return Page.of(prioritized.subList(from, Math.min(prioritized.size(), from + limit + 1)), limit,
+                task -> PageCursor.byStartTime(task.getStartTime(), task.getId()));
+    }
+
+    // Страница истории просмотров; курсор хранит id последней выданной записи.
+    default Page<Task> getHistoryPage(String cursor, int limit) {
+        Page.checkLimit(limit);
+        List<Task> history = getHistory();
+        int from = 0;
+        if (cursor != null) {
+            int after = PageCursor.parse(cursor).getId();
+            while (from < history.size() && history.get(from).getId() != after) {
+                from++;
+            }
+            if (from == history.size()) {
+                throw new IllegalArgumentException("Запись курсора больше не в истории: " + cursor);
+            }
+            from++;
+        }
+        return Page.of(history.subList(from, Math.min(history.size(), from + limit + 1)), limit,
+                task -> PageCursor.byId(task.getId()));
+    }
+
+    // Записи всех типов, в названии или описании которых каждое слово запроса является началом какого-либо
+    // слова, в порядке id. Регистр не учитывается; запрос без слов — ошибка.
+    default List<Task> search(String query) {
+        List<Task> result = new ArrayList<>();
+        for (TaskType type : TaskType.values()) {
+            for (Task task : recordsOf(type)) {
+                if (TextIndex.matches(query, task.getNameTask(), task.getDescriptionTask())) {
+                    result.add(task);
+                }
+            }
+        }
+        result.sort(Comparator.comparingInt(Task::getId));
+        return result;
+    }
+
+    // Применяет пакет команд целиком или не применяет ничего: сначала проверяется весь пакет, и при ошибке
+    // выбрасывается IllegalArgumentException с номером команды, а состояние не меняется. Возвращает id записи
+    // каждой команды, для созданий — выданные id. Базовая реализация строит копии списков; проверка
+    // и применение не атомарны относительно других потоков.
+    default List<Integer> applyBatch(List<Command> commands) {
+        Map<Integer, Task> records = new HashMap<>();
+        for (TaskType type : TaskType.values()) {
+            for (Task task : recordsOf(type)) {
+                records.put(task.getId(), task);
+            }
+        }
+        TreeSet<Task> prioritized = new TreeSet<>(Task::compareByStart);
+        prioritized.addAll(getPrioritizedTasks());
+        BatchPlan.check(commands, records::get, this::getEpicSubtasks, prioritized);
+        return BatchPlan.apply(this, commands);
+    }
+
+    private List<? extends Task> recordsOf(TaskType type) {
+        return switch (type) {
+            case TASK -> getTasks();
+            case EPIC -> getEpics();
+            case SUBTASK -> getSubtasks();
+        };
+    }
+
+    // Самое раннее начало не раньше notBefore, с которого задача длительности duration ни с чем не пересекается.
+    default LocalDateTime findFreeSlot(Duration duration, LocalDateTime notBefore) {
+        TimeWindows.checkSlot(duration, notBefore);
+        LocalDateTime candidate = notBefore;
+        for (Task task : getPrioritizedTasks()) {
+            LocalDateTime busyUntil = TimeWindows.busyUntil(task);
+            if (!busyUntil.isAfter(candidate)) {
+                continue;
+            }
+            if (!task.getStartTime().isBefore(TimeWindows.busyUntil(candidate, duration))) {
+                break;
+            }
+            candidate = busyUntil;
+        }
+        return candidate;
+    }
+
+    // Создаёт задачи и подзадачи списка: записи со временем начала — как есть и первыми, остальные — по порядку
+    // в самый ранний свободный интервал не раньше notBefore. Отсутствующая длительность считается нулевой.
+    // Время начала проставляется в сами объекты; при ошибке созданные до неё записи остаются.
+    default List<Task> autoSchedule(List<Task> tasks, LocalDateTime notBefore) {
+        for (Task task : tasks) {
+            if (task instanceof Epic) {
+                throw new IllegalArgumentException("Время эпика складывается из подзадач, его нельзя планировать");
+            }
+        }
+        for (Task task : tasks) {
+            if (task.hasStartTime()) {
+                schedule(task);
+            }
+        }
+        for (Task task : tasks) {
+            if (!task.hasStartTime()) {
+                Duration duration = task.getDuration() == null ? Duration.ZERO : task.getDuration();
+                task.setStartTime(findFreeSlot(duration, notBefore));
+                schedule(task);
+            }
+        }
+        return tasks;
+    }
+
+    default List<Task> autoSchedule(List<Task> tasks) {
+        return autoSchedule(tasks, LocalDateTime.now());
+    }
+
+    private void schedule(Task task) {
+        if (task instanceof Subtask subtask) {
+            createSubtask(subtask);
+        } else {
+            createTask(task);
+        }
+    }
+
+    // Задачи, интервал которых пересекается с окном [from, to), в порядке начала. Граница null не ограничивает.
+    default List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        return TimeWindows.filter(getPrioritizedTasks(), from, to, true);
+    }
+
+    // Задачи с началом в окне [from, to), в порядке начала. Граница null не ограничивает.
+    default List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        return TimeWindows.filter(getPrioritizedTasks(), from, to, false);
+    }
+
+    // Подписка на события создания, изменения и удаления записей, включая каскадные удаления и смену
+    // статуса эпика из-за подзадач. События доставляются в отдельном потоке через буфер на capacity
+    // событий; переполнение вытесняет старые события, а не задерживает изменения.
+    EventSubscription subscribe(TaskEventListener listener, int capacity);
+
+    default EventSubscription subscribe(TaskEventListener listener) {
+        return subscribe(listener, TaskEventBus.DEFAULT_CAPACITY);
+    }
 }
 
 
@@ -0,0 +1,157 @@
+package com.yandex.tracker.service;
+
+import com.yandex.tracker.model.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+
+// Выборки по временному окну [from, to) из набора задач, упорядоченного по началу и id. Граница null
+// означает отсутствие ограничения. Задачи в наборе не пересекаются, поэтому окно с началом from может
+// пересекать не более одной задачи, начавшейся раньше, — ближайшую слева.
+final class TimeWindows {
+
+    private TimeWindows() {
+    }
+
+    static void check(LocalDateTime from, LocalDateTime to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("Начало периода " + from + " позже его окончания " + to);
+        }
+    }
+
+    // Задачи с началом в окне: подпредставление набора, работа пропорциональна размеру результата.
+    static List<Task> startingBetween(NavigableSet<Task> prioritized, LocalDateTime from, LocalDateTime to) {
+        check(from, to);
+        return new ArrayList<>(window(prioritized, from, to));
+    }
+
+    // Задачи, интервал которых пересекается с окном.
+    static List<Task> overlapping(NavigableSet<Task> prioritized, LocalDateTime from, LocalDateTime to) {
+        check(from, to);
+        Collection<Task> window = window(prioritized, from, to);
+        List<Task> result = new ArrayList<>(window.size() + 1);
+        if (from != null) {
+            Task before = prioritized.lower(probe(from));
+            if (before != null && endOf(before).isAfter(from)) {
+                result.add(before);
+            }
+        }
+        result.addAll(window);
+        return result;
+    }
+
+    // Линейный вариант для менеджеров без упорядоченного индекса.
+    static List<Task> filter(List<Task> prioritized, LocalDateTime from, LocalDateTime to, boolean overlapping) {
+        check(from, to);
+        List<Task> result = new ArrayList<>();
+        for (Task task : prioritized) {
+            LocalDateTime start = task.getStartTime();
+            boolean startsBeforeEnd = to == null || start.isBefore(to);
+            boolean startsInside = from == null || !start.isBefore(from);
+            if (startsBeforeEnd && (startsInside || overlapping && endOf(task).isAfter(from))) {
+                result.add(task);
+            }
+        }
+        return result;
+    }
+
+    private static NavigableSet<Task> window(NavigableSet<Task> prioritized, LocalDateTime from, LocalDateTime to) {
+        if (from == null && to == null) {
+            return prioritized;
+        }
+        if (from == null) {
+            return prioritized.headSet(probe(to), false);
+        }
+        if (to == null) {
+            return prioritized.tailSet(probe(from), true);
+        }
+        return prioritized.subSet(probe(from), true, probe(to), false);
+    }
+
+    // Страница набора после позиции курсора: обход подпредставления останавливается на limit + 1 задаче.
+    static Page<Task> page(NavigableSet<Task> prioritized, String cursor, int limit) {
+        Page.checkLimit(limit);
+        NavigableSet<Task> rest = prioritized;
+        if (cursor != null) {
+            PageCursor position = PageCursor.parse(cursor);
+            if (position.getStartTime() == null) {
+                throw new IllegalArgumentException("Курсор не относится к приоритетному списку: " + cursor);
+            }
+            rest = prioritized.tailSet(probe(position.getStartTime(), position.getId()), false);
+        }
+        List<Task> candidates = new ArrayList<>(limit + 1);
+        for (Task task : rest) {
+            candidates.add(task);
+            if (candidates.size() > limit) {
+                break;
+            }
+        }
+        return Page.of(candidates, limit, task -> PageCursor.byStartTime(task.getStartTime(), task.getId()));
+    }
+
+    // Сравнивает задачу с позицией курсора в порядке приоритетного списка.
+    static int compare(Task task, PageCursor position) {
+        int result = task.getStartTime().compareTo(position.getStartTime());
+        return result != 0 ? result : Integer.compare(task.getId(), position.getId());
+    }
+
+    static void checkSlot(Duration duration, LocalDateTime notBefore) {
+        if (duration == null || duration.isNegative() || notBefore == null) {
+            throw new IllegalArgumentException("Нужны неотрицательная длительность и время, с которого искать");
+        }
+    }
+
+    // Конец занятости интервала: нулевая длительность занимает одну наносекунду, поэтому две задачи
+    // с одинаковым началом пересекаются, а касание концом и началом пересечением не считается.
+    static LocalDateTime busyUntil(LocalDateTime start, Duration duration) {
+        return start.plus(duration == null || duration.isZero() ? Duration.ofNanos(1) : duration);
+    }
+
+    static long busyNanos(Duration duration) {
+        if (duration.isZero()) {
+            return 1;
+        }
+        return duration.getSeconds() >= Long.MAX_VALUE / 1_000_000_000L ? Long.MAX_VALUE : duration.toNanos();
+    }
+
+    static LocalDateTime busyUntil(Task task) {
+        return busyUntil(task.getStartTime(), task.getDuration());
+    }
+
+    // Наносекунды эпохи UTC для индекса промежутков; время за пределами long (после 2262 года)
+    // прижимается к краю оси.
+    static long toNanos(LocalDateTime time) {
+        long seconds = time.toEpochSecond(ZoneOffset.UTC);
+        if (seconds >= Long.MAX_VALUE / 1_000_000_000L) {
+            return Long.MAX_VALUE;
+        }
+        if (seconds < Long.MIN_VALUE / 1_000_000_000L) {
+            return Long.MIN_VALUE;
+        }
+        return seconds * 1_000_000_000L + time.getNano();
+    }
+
+    static LocalDateTime fromNanos(long nanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+                (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    // Ключ поиска: сортируется раньше всех задач с тем же началом.
+    static Task probe(LocalDateTime time) {
+        return probe(time, Integer.MIN_VALUE);
+    }
+
+    private static Task probe(LocalDateTime time, int id) {
+        return new Task(id, null, null, TaskStatus.NEW, TaskType.TASK, null, time);
+    }
+
+    static LocalDateTime endOf(Task task) {
+        LocalDateTime endTime = task.getEndTime();
+        return endTime != null ? endTime : task.getStartTime();
+    }
+}
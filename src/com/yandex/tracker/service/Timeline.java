@@ -0,0 +1,116 @@
+package com.yandex.tracker.service;
+
+import com.yandex.tracker.model.Subtask;
+import com.yandex.tracker.model.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.function.Predicate;
+
+// Приоритетный список с проверкой пересечений, общий для менеджеров в памяти. Задачи в наборе попарно
+// не пересекаются и упорядочены по началу, поэтому новая задача может пересечься только с ближайшими
+// соседями: проверка и вставка выполняются за O(log n). Набор и синхронизацию задаёт менеджер.
+// Наследник может ответить на проверку раньше соседей и узнаёт о занятии и освобождении времени задач.
+class Timeline {
+    private final NavigableSet<Task> tasks;
+
+    Timeline(NavigableSet<Task> tasks) {
+        this.tasks = tasks;
+    }
+
+    void add(Task newTask) {
+        CalendarGrid.Verdict verdict = precheck(newTask);
+        if (verdict == CalendarGrid.Verdict.BUSY) {
+            throw overlapError(newTask);
+        }
+        if (verdict == CalendarGrid.Verdict.UNKNOWN) {
+            Task before = tasks.floor(newTask);
+            Task after = tasks.higher(newTask);
+            if (newTask.conflictsWith(before) || newTask.conflictsWith(after)) {
+                throw overlapError(newTask);
+            }
+        }
+        put(newTask);
+    }
+
+    // Добавляет уже проверенные задачи. В пустой набор — одной проверкой соседей по отсортированному списку.
+    void addAll(List<Task> timedTasks) {
+        if (!tasks.isEmpty()) {
+            timedTasks.forEach(this::add);
+            return;
+        }
+        timedTasks.sort(tasks.comparator());
+        for (int i = 1; i < timedTasks.size(); i++) {
+            if (timedTasks.get(i - 1).conflictsWith(timedTasks.get(i))) {
+                throw overlapError(timedTasks.get(i));
+            }
+        }
+        tasks.addAll(timedTasks);
+        timedTasks.forEach(this::occupied);
+    }
+
+    // Добавляет задачу без проверки, например при восстановлении сохранённых записей.
+    void put(Task task) {
+        tasks.add(task);
+        occupied(task);
+    }
+
+    // Заменяет версию задачи. При пересечении прежняя версия возвращается на место.
+    void replace(Task oldTask, Task newTask) {
+        if (oldTask != null) {
+            remove(oldTask);
+        }
+        if (!newTask.hasStartTime()) {
+            return;
+        }
+        try {
+            add(newTask);
+        } catch (IllegalArgumentException e) {
+            if (oldTask != null && oldTask.hasStartTime()) {
+                put(oldTask);
+            }
+            throw e;
+        }
+    }
+
+    // Если время задачи изменили прямо в объекте, поиск по ключу её не найдёт — тогда удаляем по id.
+    void remove(Task task) {
+        if (!tasks.remove(task) && task.hasStartTime()) {
+            int id = task.getId();
+            tasks.removeIf(existingTask -> existingTask.getId() == id);
+        }
+        released(task.getId());
+    }
+
+    void removeIf(Predicate<Task> filter) {
+        List<Integer> removed = new ArrayList<>();
+        tasks.removeIf(task -> {
+            if (!filter.test(task)) {
+                return false;
+            }
+            removed.add(task.getId());
+            return true;
+        });
+        removed.forEach(this::released);
+    }
+
+    // Ответ без сравнения с соседями; UNKNOWN — сравнить с соседями.
+    CalendarGrid.Verdict precheck(Task task) {
+        return CalendarGrid.Verdict.UNKNOWN;
+    }
+
+    void occupied(Task task) {
+    }
+
+    // Вызывается после удаления задачи из набора.
+    void released(int id) {
+    }
+
+    static IllegalArgumentException overlapError(Task task) {
+        if (task instanceof Subtask) {
+            return new IllegalArgumentException("Подзадача пересекается с существующей подзадачей.");
+        }
+        return new IllegalArgumentException("Задача пересекается с существующей задачей.");
+    }
+}
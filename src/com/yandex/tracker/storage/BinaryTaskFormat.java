@@ -0,0 +1,32 @@
+package com.yandex.tracker.storage;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+// Двоичный формат снимка: заголовок файла (MAGIC, VERSION), затем записи с заголовком фиксированной длины
+// id:int, type:byte, status:byte, epicId:int, start:long секунд + int наносекунд, duration:long секунд + int
+// наносекунд, после которых идут name и description как длина в байтах (int, -1 для null) и байты UTF-8.
+// Отсутствующие start и duration кодируются значением NULL_TIME.
+public final class BinaryTaskFormat {
+    public static final int MAGIC = 0x4B414E42;
+    public static final short VERSION = 1;
+    public static final int FILE_HEADER_BYTES = Integer.BYTES + Short.BYTES;
+    public static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES + 2 + 2 * (Long.BYTES + Integer.BYTES);
+    public static final long NULL_TIME = Long.MIN_VALUE;
+
+    private BinaryTaskFormat() {
+    }
+
+    public static boolean isBinary(File file) {
+        if (file.length() < FILE_HEADER_BYTES) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
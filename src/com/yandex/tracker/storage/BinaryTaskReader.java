@@ -0,0 +1,125 @@
+package com.yandex.tracker.storage;
+
+import com.yandex.tracker.exception.ManagerSaveException;
+import com.yandex.tracker.model.Epic;
+import com.yandex.tracker.model.Subtask;
+import com.yandex.tracker.model.Task;
+import com.yandex.tracker.service.TaskStatus;
+import com.yandex.tracker.service.TaskType;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Читает двоичный снимок через MappedByteBuffer: данные берутся из страничного кэша ОС без копирования файла в кучу.
+public class BinaryTaskReader implements Iterator<Task>, Closeable {
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private byte[] scratch = new byte[256];
+
+    // Читатель отдельных записей без заголовка файла, см. read(ByteBuffer).
+    public BinaryTaskReader() {
+        channel = null;
+        buffer = ByteBuffer.allocate(0);
+    }
+
+    public BinaryTaskReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new ManagerSaveException("Двоичный снимок больше 2 ГБ не поддерживается: " + file, null);
+        }
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        buffer = mapped;
+        if (size == 0) {
+            return;
+        }
+        if (size < BinaryTaskFormat.FILE_HEADER_BYTES || buffer.getInt() != BinaryTaskFormat.MAGIC) {
+            channel.close();
+            throw new ManagerSaveException("Файл не является двоичным снимком задач: " + file, null);
+        }
+        short version = buffer.getShort();
+        if (version != BinaryTaskFormat.VERSION) {
+            channel.close();
+            throw new ManagerSaveException("Неподдерживаемая версия двоичного снимка: " + version, null);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return buffer.hasRemaining();
+    }
+
+    @Override
+    public Task next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return read(buffer);
+    }
+
+    // Читает одну запись с текущей позиции буфера.
+    public Task read(ByteBuffer buffer) {
+        try {
+            final int id = buffer.getInt();
+            final TaskType type = TYPES[buffer.get()];
+            final TaskStatus status = STATUSES[buffer.get()];
+            final int epicId = buffer.getInt();
+            final long startSeconds = buffer.getLong();
+            final int startNanos = buffer.getInt();
+            final long durationSeconds = buffer.getLong();
+            final int durationNanos = buffer.getInt();
+            final String name = readString(buffer);
+            final String description = readString(buffer);
+            final LocalDateTime startTime = startSeconds == BinaryTaskFormat.NULL_TIME ? null
+                    : LocalDateTime.ofEpochSecond(startSeconds, startNanos, ZoneOffset.UTC);
+            final Duration duration = durationSeconds == BinaryTaskFormat.NULL_TIME ? null
+                    : Duration.ofSeconds(durationSeconds, durationNanos);
+
+            return switch (type) {
+                case TASK -> new Task(id, name, description, status, type, duration, startTime);
+                case EPIC -> new Epic(id, name, description, status, duration, startTime);
+                case SUBTASK -> new Subtask(id, name, description, status, duration, startTime, epicId);
+            };
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new ManagerSaveException("Повреждённая запись двоичного снимка", e);
+        }
+    }
+
+    private String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
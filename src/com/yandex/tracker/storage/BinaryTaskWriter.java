@@ -0,0 +1,79 @@
+package com.yandex.tracker.storage;
+
+import com.yandex.tracker.model.Subtask;
+import com.yandex.tracker.model.Task;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+public class BinaryTaskWriter implements Closeable {
+    private final DataOutputStream out;
+
+    public BinaryTaskWriter(File file) throws IOException {
+        this(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+    }
+
+    public BinaryTaskWriter(OutputStream stream) throws IOException {
+        out = new DataOutputStream(stream);
+        out.writeInt(BinaryTaskFormat.MAGIC);
+        out.writeShort(BinaryTaskFormat.VERSION);
+    }
+
+    public void write(Task task) throws IOException {
+        writeRecord(out, task);
+    }
+
+    // Кодирует одну запись без заголовка файла, для хранилищ с адресацией по id.
+    public static byte[] encode(Task task) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(BinaryTaskFormat.RECORD_HEADER_BYTES + 64);
+        try {
+            writeRecord(new DataOutputStream(bytes), task);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeRecord(DataOutputStream out, Task task) throws IOException {
+        out.writeInt(task.getId());
+        out.writeByte(task.getTaskType().ordinal());
+        out.writeByte(task.getStatus().ordinal());
+        out.writeInt(task instanceof Subtask subtask ? subtask.getEpicId() : 0);
+        LocalDateTime startTime = task.getStartTime();
+        if (startTime == null) {
+            out.writeLong(BinaryTaskFormat.NULL_TIME);
+            out.writeInt(0);
+        } else {
+            out.writeLong(startTime.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(startTime.getNano());
+        }
+        Duration duration = task.getDuration();
+        if (duration == null) {
+            out.writeLong(BinaryTaskFormat.NULL_TIME);
+            out.writeInt(0);
+        } else {
+            out.writeLong(duration.getSeconds());
+            out.writeInt(duration.getNano());
+        }
+        writeString(out, task.getNameTask());
+        writeString(out, task.getDescriptionTask());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
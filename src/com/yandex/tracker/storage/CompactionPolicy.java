@@ -0,0 +1,55 @@
+package com.yandex.tracker.storage;
+
+import java.time.Duration;
+
+// Пороги, при достижении любого из которых журнал сворачивается в снимок. Нулевое значение отключает порог.
+public class CompactionPolicy {
+    private final long maxLogBytes;
+    private final long maxRecords;
+    private final Duration interval;
+    private final Duration checkPeriod;
+
+    public CompactionPolicy(long maxLogBytes, long maxRecords, Duration interval) {
+        this(maxLogBytes, maxRecords, interval, Duration.ofSeconds(1));
+    }
+
+    public CompactionPolicy(long maxLogBytes, long maxRecords, Duration interval, Duration checkPeriod) {
+        if (maxLogBytes < 0 || maxRecords < 0 || interval.isNegative() || checkPeriod.isNegative()
+                || checkPeriod.isZero()) {
+            throw new IllegalArgumentException("Некорректные пороги сжатия журнала");
+        }
+        this.maxLogBytes = maxLogBytes;
+        this.maxRecords = maxRecords;
+        this.interval = interval;
+        this.checkPeriod = checkPeriod;
+    }
+
+    public static CompactionPolicy defaults() {
+        return new CompactionPolicy(16 * 1024 * 1024, 100_000, Duration.ofMinutes(10));
+    }
+
+    public boolean isExceeded(long logBytes, long records, long millisSinceLastCompaction) {
+        if (records == 0) {
+            return false;
+        }
+        return maxLogBytes > 0 && logBytes >= maxLogBytes
+                || maxRecords > 0 && records >= maxRecords
+                || !interval.isZero() && millisSinceLastCompaction >= interval.toMillis();
+    }
+
+    public long getMaxLogBytes() {
+        return maxLogBytes;
+    }
+
+    public long getMaxRecords() {
+        return maxRecords;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public Duration getCheckPeriod() {
+        return checkPeriod;
+    }
+}
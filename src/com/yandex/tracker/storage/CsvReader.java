@@ -0,0 +1,217 @@
+package com.yandex.tracker.storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+// Потоковое чтение CSV по RFC 4180. В памяти хранится только текущая запись, поля отдаются
+// как представления над общим буфером без создания подстрок.
+public class CsvReader implements Closeable {
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private final StringBuilder record = new StringBuilder(256);
+    private int[] ends = new int[16];
+    private int size;
+    private FieldView[] views = new FieldView[16];
+
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    public static CsvReader open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        return new CsvReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+    }
+
+    public boolean next() throws IOException {
+        while (true) {
+            record.setLength(0);
+            size = 0;
+            int c = read();
+            if (c == -1) {
+                return false;
+            }
+            boolean quoted = false;
+            boolean fieldStart = true;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        endField();
+                        break;
+                    }
+                    if (c == '"') {
+                        c = read();
+                        if (c == '"') {
+                            record.append('"');
+                            c = read();
+                        } else {
+                            quoted = false;
+                        }
+                        continue;
+                    }
+                    record.append((char) c);
+                    c = read();
+                    continue;
+                }
+                if (c == -1 || c == '\n') {
+                    endField();
+                    break;
+                }
+                if (c == ',') {
+                    endField();
+                    fieldStart = true;
+                } else if (c == '"' && fieldStart) {
+                    quoted = true;
+                    fieldStart = false;
+                } else if (c != '\r') {
+                    record.append((char) c);
+                    fieldStart = false;
+                }
+                c = read();
+            }
+            if (size > 1 || !isBlank(0)) {
+                return true;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public CharSequence field(int index) {
+        checkIndex(index);
+        if (index >= views.length) {
+            FieldView[] grown = new FieldView[Math.max(views.length * 2, index + 1)];
+            System.arraycopy(views, 0, grown, 0, views.length);
+            views = grown;
+        }
+        if (views[index] == null) {
+            views[index] = new FieldView(index);
+        }
+        return views[index];
+    }
+
+    public String string(int index) {
+        checkIndex(index);
+        return record.substring(start(index), ends[index]);
+    }
+
+    public int intField(int index) {
+        checkIndex(index);
+        int from = start(index);
+        int to = ends[index];
+        if (from == to) {
+            throw new NumberFormatException("Пустое числовое поле");
+        }
+        boolean negative = record.charAt(from) == '-';
+        if (negative && ++from == to) {
+            throw new NumberFormatException("Некорректное числовое поле");
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = record.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Некорректное числовое поле: " + field(index));
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException("Числовое поле вне диапазона: " + field(index));
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Числовое поле вне диапазона: " + field(index));
+        }
+        return (int) value;
+    }
+
+    // Пустое поле и строка null, которую писали прежние версии, означают отсутствие значения.
+    public boolean isNull(int index) {
+        checkIndex(index);
+        int from = start(index);
+        int length = ends[index] - from;
+        return length == 0 || length == 4 && record.charAt(from) == 'n' && record.charAt(from + 1) == 'u'
+                && record.charAt(from + 2) == 'l' && record.charAt(from + 3) == 'l';
+    }
+
+    private boolean isBlank(int index) {
+        for (int i = start(index); i < ends[index]; i++) {
+            if (!Character.isWhitespace(record.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int start(int index) {
+        return index == 0 ? 0 : ends[index - 1];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IllegalArgumentException("Недостаточно данных для создания задачи");
+        }
+    }
+
+    private void endField() {
+        if (size == ends.length) {
+            int[] grown = new int[ends.length * 2];
+            System.arraycopy(ends, 0, grown, 0, ends.length);
+            ends = grown;
+        }
+        ends[size++] = record.length();
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private class FieldView implements CharSequence {
+        private final int index;
+
+        private FieldView(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public int length() {
+            return ends[index] - start(index);
+        }
+
+        @Override
+        public char charAt(int i) {
+            return record.charAt(start(index) + i);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return record.subSequence(start(index) + from, start(index) + to);
+        }
+
+        @Override
+        public String toString() {
+            return record.substring(start(index), ends[index]);
+        }
+    }
+}
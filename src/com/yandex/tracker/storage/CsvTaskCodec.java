@@ -0,0 +1,129 @@
+package com.yandex.tracker.storage;
+
+import com.yandex.tracker.exception.ManagerSaveException;
+import com.yandex.tracker.model.Epic;
+import com.yandex.tracker.model.Subtask;
+import com.yandex.tracker.model.Task;
+import com.yandex.tracker.service.TaskStatus;
+import com.yandex.tracker.service.TaskType;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public final class CsvTaskCodec {
+    public static final String[] HEADER = {"id", "type", "name", "status", "description", "duration", "startTime",
+            "epic"};
+    public static final int FIELDS = HEADER.length;
+
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+    private CsvTaskCodec() {
+    }
+
+    public static void writeHeader(CsvWriter writer) throws IOException {
+        for (String name : HEADER) {
+            writer.field(name);
+        }
+        writer.endRecord();
+    }
+
+    public static void writeFields(CsvWriter writer, Task task) throws IOException {
+        int epicId = 0;
+        if (task instanceof Subtask subtask) {
+            epicId = subtask.getEpicId();
+        }
+        writer.field(task.getId())
+                .field(task.getTaskType())
+                .field(task.getNameTask())
+                .field(task.getStatus())
+                .field(task.getDescriptionTask())
+                .field(task.getDuration())
+                .field(task.getStartTime())
+                .field(epicId);
+    }
+
+    public static void write(CsvWriter writer, Task task) throws IOException {
+        writeFields(writer, task);
+        writer.endRecord();
+    }
+
+    // Разбирает задачу из полей текущей записи, начиная с поля offset.
+    public static Task read(CsvReader reader, int offset) {
+        if (reader.size() < offset + FIELDS) {
+            throw new IllegalArgumentException("Недостаточно данных для создания задачи");
+        }
+        final int id = reader.intField(offset);
+        final TaskType type = type(reader.field(offset + 1));
+        final String name = reader.string(offset + 2);
+        final TaskStatus status = status(reader.field(offset + 3));
+        final String description = reader.string(offset + 4);
+        final Duration duration = reader.isNull(offset + 5) ? null : Duration.parse(reader.field(offset + 5));
+        final LocalDateTime startTime = reader.isNull(offset + 6) ? null
+                : LocalDateTime.parse(reader.field(offset + 6));
+        final int epicId = reader.intField(offset + 7);
+
+        return switch (type) {
+            case TASK -> new Task(id, name, description, status, type, duration, startTime);
+            case EPIC -> new Epic(id, name, description, status, duration, startTime);
+            case SUBTASK -> new Subtask(id, name, description, status, duration, startTime, epicId);
+        };
+    }
+
+    public static TaskType type(CharSequence value) {
+        for (TaskType type : TYPES) {
+            if (type.name().contentEquals(value)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный тип задачи: " + value);
+    }
+
+    public static TaskStatus status(CharSequence value) {
+        for (TaskStatus status : STATUSES) {
+            if (status.name().contentEquals(value)) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный статус задачи: " + value);
+    }
+
+    // Итератор по задачам файла со строкой заголовка. Записи разбираются по мере обхода.
+    public static Iterator<Task> tasks(CsvReader reader) {
+        return new Iterator<>() {
+            private boolean headerSkipped;
+            private Boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (hasNext == null) {
+                    try {
+                        if (!headerSkipped) {
+                            headerSkipped = true;
+                            if (!reader.next()) {
+                                hasNext = false;
+                                return false;
+                            }
+                        }
+                        hasNext = reader.next();
+                    } catch (IOException e) {
+                        throw new ManagerSaveException("Ошибка при чтении данных из файла", e);
+                    }
+                }
+                return hasNext;
+            }
+
+            @Override
+            public Task next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                hasNext = null;
+                return read(reader, 0);
+            }
+        };
+    }
+}
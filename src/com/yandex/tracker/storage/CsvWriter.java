@@ -0,0 +1,113 @@
+package com.yandex.tracker.storage;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+// Потоковая запись CSV по RFC 4180: поля с запятыми, кавычками и переводами строк берутся в кавычки.
+public class CsvWriter implements Closeable, Flushable {
+    private final Writer writer;
+    private final char[] digits = new char[20];
+    private boolean recordStart = true;
+
+    public CsvWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    public static CsvWriter open(File file, boolean append) throws IOException {
+        FileChannel channel = append
+                ? FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)
+                : FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        return new CsvWriter(new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), 8192));
+    }
+
+    public CsvWriter field(CharSequence value) throws IOException {
+        separate();
+        if (value == null) {
+            return this;
+        }
+        if (!needsQuotes(value)) {
+            writer.append(value);
+            return this;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+        return this;
+    }
+
+    public CsvWriter field(long value) throws IOException {
+        separate();
+        if (value == Long.MIN_VALUE) {
+            writer.write(Long.toString(value));
+            return this;
+        }
+        if (value < 0) {
+            writer.write('-');
+            value = -value;
+        }
+        int position = digits.length;
+        do {
+            digits[--position] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        writer.write(digits, position, digits.length - position);
+        return this;
+    }
+
+    public CsvWriter field(LocalDateTime value) throws IOException {
+        separate();
+        if (value != null) {
+            DateTimeFormatter.ISO_LOCAL_DATE_TIME.formatTo(value, writer);
+        }
+        return this;
+    }
+
+    public CsvWriter field(Object value) throws IOException {
+        return field(value == null ? null : value.toString());
+    }
+
+    public void endRecord() throws IOException {
+        writer.write('\n');
+        recordStart = true;
+    }
+
+    private void separate() throws IOException {
+        if (!recordStart) {
+            writer.write(',');
+        }
+        recordStart = false;
+    }
+
+    private static boolean needsQuotes(CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,44 @@
+package com.yandex.tracker.storage;
+
+import java.time.Duration;
+
+// Когда записи журнала сбрасываются на диск: после каждой фиксации, не реже заданного интервала
+// или на усмотрение операционной системы.
+public class DurabilityPolicy {
+    public enum Mode {
+        FSYNC_PER_COMMIT,
+        FSYNC_INTERVAL,
+        OS_BUFFERED
+    }
+
+    private final Mode mode;
+    private final Duration interval;
+
+    private DurabilityPolicy(Mode mode, Duration interval) {
+        this.mode = mode;
+        this.interval = interval;
+    }
+
+    public static DurabilityPolicy fsyncPerCommit() {
+        return new DurabilityPolicy(Mode.FSYNC_PER_COMMIT, Duration.ZERO);
+    }
+
+    public static DurabilityPolicy fsyncEvery(Duration interval) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("Интервал сброса журнала должен быть положительным");
+        }
+        return new DurabilityPolicy(Mode.FSYNC_INTERVAL, interval);
+    }
+
+    public static DurabilityPolicy osBuffered() {
+        return new DurabilityPolicy(Mode.OS_BUFFERED, Duration.ZERO);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+}
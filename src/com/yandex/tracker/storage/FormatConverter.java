@@ -0,0 +1,65 @@
+package com.yandex.tracker.storage;
+
+import com.yandex.tracker.exception.ManagerSaveException;
+import com.yandex.tracker.model.Task;
+import com.yandex.tracker.service.StorageFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+// Потоковая конвертация снимка между CSV и двоичным форматом. Формат источника определяется по сигнатуре файла.
+public final class FormatConverter {
+
+    private FormatConverter() {
+    }
+
+    public static long convert(File source, File target, StorageFormat targetFormat) {
+        long count = 0;
+        try {
+            if (BinaryTaskFormat.isBinary(source)) {
+                try (BinaryTaskReader reader = new BinaryTaskReader(source)) {
+                    count = write(reader, target, targetFormat);
+                }
+            } else {
+                try (CsvReader reader = CsvReader.open(source)) {
+                    count = write(CsvTaskCodec.tasks(reader), target, targetFormat);
+                }
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при конвертации " + source + " в " + target, e);
+        }
+        return count;
+    }
+
+    private static long write(Iterator<Task> tasks, File target, StorageFormat format) throws IOException {
+        long count = 0;
+        if (format == StorageFormat.BINARY) {
+            try (BinaryTaskWriter writer = new BinaryTaskWriter(target)) {
+                while (tasks.hasNext()) {
+                    writer.write(tasks.next());
+                    count++;
+                }
+            }
+        } else {
+            try (CsvWriter writer = CsvWriter.open(target, false)) {
+                CsvTaskCodec.writeHeader(writer);
+                while (tasks.hasNext()) {
+                    CsvTaskCodec.write(writer, tasks.next());
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.out.println("Использование: FormatConverter <csv|binary> <исходный файл> <целевой файл>");
+            return;
+        }
+        StorageFormat format = StorageFormat.valueOf(args[0].toUpperCase());
+        long count = convert(new File(args[1]), new File(args[2]), format);
+        System.out.println("Сконвертировано записей: " + count);
+    }
+}
@@ -0,0 +1,52 @@
+package com.yandex.tracker.storage;
+
+import com.yandex.tracker.exception.ManagerSaveException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+// Граница выданных id в отдельном файле рядом с данными. Значение только растёт, файл заменяется атомарно.
+public class HighWaterMark {
+    private final File file;
+    private int value = -1;
+
+    public HighWaterMark(File file) {
+        this.file = file;
+    }
+
+    public synchronized int read() {
+        if (value < 0) {
+            value = load();
+        }
+        return value;
+    }
+
+    public synchronized void advance(int highWater) {
+        if (highWater <= read()) {
+            return;
+        }
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            Files.writeString(tempFile.toPath(), Integer.toString(highWater), StandardCharsets.UTF_8);
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при сохранении границы id: " + file.getAbsolutePath(), e);
+        }
+        value = highWater;
+    }
+
+    private int load() {
+        if (!file.exists()) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(Files.readString(file.toPath(), StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            throw new ManagerSaveException("Ошибка при чтении границы id: " + file.getAbsolutePath(), e);
+        }
+    }
+}
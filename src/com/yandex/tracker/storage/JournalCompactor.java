@@ -0,0 +1,95 @@
+package com.yandex.tracker.storage;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class JournalCompactor implements Closeable {
+    private final TaskJournal journal;
+    private final CompactionPolicy policy;
+    private final Runnable compaction;
+    private ScheduledExecutorService executor;
+    private volatile long lastCompaction = System.currentTimeMillis();
+    // Число сжатий, выполненных по порогам политики; ожидающие в awaitCompactions будятся после каждого.
+    private long completed;
+
+    public JournalCompactor(TaskJournal journal, CompactionPolicy policy, Runnable compaction) {
+        this.journal = journal;
+        this.policy = policy;
+        this.compaction = compaction;
+    }
+
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = policy.getCheckPeriod().toMillis();
+        executor.scheduleWithFixedDelay(this::check, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean compactIfNeeded() {
+        long sinceLast = System.currentTimeMillis() - lastCompaction;
+        if (!policy.isExceeded(journal.getSize(), journal.getRecords(), sinceLast)) {
+            return false;
+        }
+        compaction.run();
+        compacted();
+        synchronized (this) {
+            completed++;
+            notifyAll();
+        }
+        return true;
+    }
+
+    // Ждёт, пока по порогам не будет выполнено хотя бы count сжатий. Возвращает false, если время вышло.
+    public synchronized boolean awaitCompactions(long count, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (completed < count) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, left);
+        }
+        return true;
+    }
+
+    public void compacted() {
+        lastCompaction = System.currentTimeMillis();
+    }
+
+    private void check() {
+        try {
+            compactIfNeeded();
+        } catch (RuntimeException e) {
+            // следующая проверка повторит попытку, журнал при этом остаётся целым
+            e.printStackTrace();
+        }
+    }
+
+    // Дожидается уже начатого сжатия: после возврата журнал можно закрывать, не опасаясь rotate и dropSegments.
+    @Override
+    public void close() {
+        ScheduledExecutorService activeExecutor;
+        synchronized (this) {
+            activeExecutor = executor;
+            executor = null;
+        }
+        if (activeExecutor == null) {
+            return;
+        }
+        activeExecutor.shutdown();
+        try {
+            activeExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
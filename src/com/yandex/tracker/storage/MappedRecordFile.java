@@ -0,0 +1,439 @@
+package com.yandex.tracker.storage;
+
+import com.yandex.tracker.exception.ManagerSaveException;
+import com.yandex.tracker.model.Epic;
+import com.yandex.tracker.model.Subtask;
+import com.yandex.tracker.model.Task;
+import com.yandex.tracker.service.TaskStatus;
+import com.yandex.tracker.service.TaskType;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Записи задач в отображённом в память файле. Основной файл — заголовок и слоты фиксированного размера
+// с числовыми полями задачи, строки лежат в отдельной области (файл <имя>.strings.<поколение>), в слоте
+// хранятся их смещение и длина. Изменённые строки дописываются в конец области, место старых копий
+// освобождается сжатием, которое пишет новое поколение обоих файлов и атомарно подменяет основной файл.
+//
+// Слот: state:byte, type:byte, status:byte, резерв, id:int, epicId:int, startNanos:int, startSeconds:long,
+// durationSeconds:long, durationNanos:int, nameLength:int, nameOffset:long, descriptionLength:int,
+// descriptionOffset:long. Отсутствующие время и строка кодируются NULL_TIME и длиной -1.
+public class MappedRecordFile implements Closeable {
+    public static final int MAGIC = 0x4B414E4D;
+    public static final short VERSION = 1;
+    public static final int HEADER_BYTES = 64;
+    public static final int SLOT_BYTES = 64;
+    public static final long NULL_TIME = Long.MIN_VALUE;
+
+    private static final int GENERATION = 8;
+    private static final int COUNTER = 12;
+    private static final int STRINGS_USED = 16;
+    private static final int STRINGS_DEAD = 24;
+    private static final int SLOT_COUNT = 32;
+
+    private static final int STATE = 0;
+    private static final int TYPE = 1;
+    private static final int STATUS = 2;
+    private static final int ID = 4;
+    private static final int EPIC_ID = 8;
+    private static final int START_NANOS = 12;
+    private static final int START_SECONDS = 16;
+    private static final int DURATION_SECONDS = 24;
+    private static final int DURATION_NANOS = 32;
+    private static final int NAME_LENGTH = 36;
+    private static final int NAME_OFFSET = 40;
+    private static final int DESCRIPTION_LENGTH = 48;
+    private static final int DESCRIPTION_OFFSET = 52;
+
+    private static final byte FREE = 0;
+    private static final byte USED = 1;
+    private static final int INITIAL_SLOTS = 1024;
+    private static final long INITIAL_STRINGS = 64 * 1024;
+    private static final long COMPACTION_THRESHOLD = 1024 * 1024;
+
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+    private final File file;
+    private FileChannel slotChannel;
+    private FileChannel stringChannel;
+    private MappedByteBuffer slots;
+    private MappedByteBuffer strings;
+    private int capacity;
+
+    public MappedRecordFile(File file) {
+        this.file = file;
+        try {
+            slotChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            long size = slotChannel.size();
+            if (size == 0) {
+                mapSlots(INITIAL_SLOTS);
+                slots.putInt(0, MAGIC);
+                slots.putShort(4, VERSION);
+            } else {
+                if (size < HEADER_BYTES) {
+                    throw new ManagerSaveException("Файл не является файлом записей задач: " + file, null);
+                }
+                mapSlots((int) Math.min(Integer.MAX_VALUE, (size - HEADER_BYTES) / SLOT_BYTES));
+                if (slots.getInt(0) != MAGIC) {
+                    throw new ManagerSaveException("Файл не является файлом записей задач: " + file, null);
+                }
+                if (slots.getShort(4) != VERSION) {
+                    throw new ManagerSaveException("Неподдерживаемая версия файла записей: " + slots.getShort(4),
+                            null);
+                }
+            }
+            openStrings(getGeneration());
+            deleteStaleGenerations();
+        } catch (IOException e) {
+            closeQuietly();
+            throw new ManagerSaveException("Ошибка при открытии файла записей: " + file.getAbsolutePath(), e);
+        } catch (RuntimeException e) {
+            closeQuietly();
+            throw e;
+        }
+    }
+
+    private void mapSlots(int slotCapacity) throws IOException {
+        long size = HEADER_BYTES + (long) slotCapacity * SLOT_BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new ManagerSaveException("Файл записей больше 2 ГБ не поддерживается: " + file, null);
+        }
+        slots = slotChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        capacity = slotCapacity;
+    }
+
+    private void openStrings(int generation) throws IOException {
+        stringChannel = FileChannel.open(stringsFile(generation).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapStrings(Math.max(INITIAL_STRINGS, Math.max(stringChannel.size(), getStringsUsed())));
+    }
+
+    private void mapStrings(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new ManagerSaveException("Область строк больше 2 ГБ не поддерживается: " + file, null);
+        }
+        strings = stringChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private File stringsFile(int generation) {
+        return new File(file.getPath() + ".strings." + generation);
+    }
+
+    private void deleteStaleGenerations() throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        String prefix = file.getName() + ".strings.";
+        String current = prefix + getGeneration();
+        String[] names = dir == null ? null
+                : dir.list((d, name) -> name.startsWith(prefix) && !name.equals(current));
+        if (names != null) {
+            for (String name : names) {
+                Files.deleteIfExists(new File(dir, name).toPath());
+            }
+        }
+    }
+
+    public int getSlotCount() {
+        return slots.getInt(SLOT_COUNT);
+    }
+
+    // Произвольный счётчик владельца файла, например последний выданный идентификатор.
+    public int getCounter() {
+        return slots.getInt(COUNTER);
+    }
+
+    public void setCounter(int value) {
+        slots.putInt(COUNTER, value);
+    }
+
+    private int getGeneration() {
+        return slots.getInt(GENERATION);
+    }
+
+    private long getStringsUsed() {
+        return slots.getLong(STRINGS_USED);
+    }
+
+    public long getDeadStringBytes() {
+        return slots.getLong(STRINGS_DEAD);
+    }
+
+    public boolean isUsed(int slot) {
+        return slots.get(position(slot) + STATE) == USED;
+    }
+
+    public int id(int slot) {
+        return slots.getInt(position(slot) + ID);
+    }
+
+    public TaskType type(int slot) {
+        return TYPES[slots.get(position(slot) + TYPE)];
+    }
+
+    public TaskStatus status(int slot) {
+        return STATUSES[slots.get(position(slot) + STATUS)];
+    }
+
+    public void setStatus(int slot, TaskStatus status) {
+        slots.put(position(slot) + STATUS, (byte) status.ordinal());
+    }
+
+    public int epicId(int slot) {
+        return slots.getInt(position(slot) + EPIC_ID);
+    }
+
+    // Начало записи в секундах эпохи UTC или NULL_TIME, если начала нет; для индексов без создания объектов.
+    public long startSeconds(int slot) {
+        return slots.getLong(position(slot) + START_SECONDS);
+    }
+
+    public int startNanos(int slot) {
+        return slots.getInt(position(slot) + START_NANOS);
+    }
+
+    public LocalDateTime startTime(int slot) {
+        int base = position(slot);
+        long seconds = slots.getLong(base + START_SECONDS);
+        return seconds == NULL_TIME ? null
+                : LocalDateTime.ofEpochSecond(seconds, slots.getInt(base + START_NANOS), ZoneOffset.UTC);
+    }
+
+    public Duration duration(int slot) {
+        int base = position(slot);
+        long seconds = slots.getLong(base + DURATION_SECONDS);
+        return seconds == NULL_TIME ? null : Duration.ofSeconds(seconds, slots.getInt(base + DURATION_NANOS));
+    }
+
+    public String name(int slot) {
+        int base = position(slot);
+        return readString(slots.getInt(base + NAME_LENGTH), slots.getLong(base + NAME_OFFSET));
+    }
+
+    public String description(int slot) {
+        int base = position(slot);
+        return readString(slots.getInt(base + DESCRIPTION_LENGTH), slots.getLong(base + DESCRIPTION_OFFSET));
+    }
+
+    // Создаёт объект задачи по слоту. Эпик создаётся без подзадач, их привязывает вызывающий.
+    public Task read(int slot) {
+        int id = id(slot);
+        String name = name(slot);
+        String description = description(slot);
+        TaskStatus status = status(slot);
+        Duration duration = duration(slot);
+        LocalDateTime startTime = startTime(slot);
+        return switch (type(slot)) {
+            case TASK -> new Task(id, name, description, status, TaskType.TASK, duration, startTime);
+            case EPIC -> new Epic(id, name, description, status, duration, startTime);
+            case SUBTASK -> new Subtask(id, name, description, status, duration, startTime, epicId(slot));
+        };
+    }
+
+    // Выделяет слот: свободный слот выбирает вызывающий, иначе слот добавляется в конец файла.
+    public int append() {
+        int slot = getSlotCount();
+        if (slot == capacity) {
+            try {
+                mapSlots(Math.max(INITIAL_SLOTS, capacity * 2));
+            } catch (IOException e) {
+                throw new ManagerSaveException("Ошибка при расширении файла записей", e);
+            }
+        }
+        slots.putInt(SLOT_COUNT, slot + 1);
+        return slot;
+    }
+
+    // Записывает задачу в слот. Строки пишутся до числовых полей, а признак занятости — последним.
+    public void write(int slot, Task task) {
+        int base = position(slot);
+        if (isUsed(slot)) {
+            release(base);
+        }
+        long nameOffset = appendString(task.getNameTask());
+        long descriptionOffset = appendString(task.getDescriptionTask());
+        slots.put(base + TYPE, (byte) task.getTaskType().ordinal());
+        slots.put(base + STATUS, (byte) task.getStatus().ordinal());
+        slots.putInt(base + ID, task.getId());
+        slots.putInt(base + EPIC_ID, task instanceof Subtask subtask ? subtask.getEpicId() : 0);
+        LocalDateTime startTime = task instanceof Epic ? null : task.getStartTime();
+        slots.putLong(base + START_SECONDS, startTime == null ? NULL_TIME : startTime.toEpochSecond(ZoneOffset.UTC));
+        slots.putInt(base + START_NANOS, startTime == null ? 0 : startTime.getNano());
+        Duration duration = task instanceof Epic ? null : task.getDuration();
+        slots.putLong(base + DURATION_SECONDS, duration == null ? NULL_TIME : duration.getSeconds());
+        slots.putInt(base + DURATION_NANOS, duration == null ? 0 : duration.getNano());
+        slots.putInt(base + NAME_LENGTH, byteLength(task.getNameTask()));
+        slots.putLong(base + NAME_OFFSET, nameOffset);
+        slots.putInt(base + DESCRIPTION_LENGTH, byteLength(task.getDescriptionTask()));
+        slots.putLong(base + DESCRIPTION_OFFSET, descriptionOffset);
+        slots.put(base + STATE, USED);
+        compactIfNeeded();
+    }
+
+    public void free(int slot) {
+        int base = position(slot);
+        if (slots.get(base + STATE) != USED) {
+            return;
+        }
+        slots.put(base + STATE, FREE);
+        release(base);
+        compactIfNeeded();
+    }
+
+    private void release(int base) {
+        long dead = Math.max(0, slots.getInt(base + NAME_LENGTH))
+                + Math.max(0, slots.getInt(base + DESCRIPTION_LENGTH));
+        slots.putLong(STRINGS_DEAD, getDeadStringBytes() + dead);
+    }
+
+    private static int byteLength(String value) {
+        return value == null ? -1 : value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private long appendString(String value) {
+        if (value == null) {
+            return 0;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long offset = getStringsUsed();
+        if (offset + bytes.length > strings.capacity()) {
+            try {
+                mapStrings(Math.max((long) strings.capacity() * 2, offset + bytes.length));
+            } catch (IOException e) {
+                throw new ManagerSaveException("Ошибка при расширении области строк", e);
+            }
+        }
+        strings.put((int) offset, bytes);
+        slots.putLong(STRINGS_USED, offset + bytes.length);
+        return offset;
+    }
+
+    private String readString(int length, long offset) {
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        strings.get((int) offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int position(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private void compactIfNeeded() {
+        long dead = getDeadStringBytes();
+        if (dead > COMPACTION_THRESHOLD && dead > getStringsUsed() / 2) {
+            compact();
+        }
+    }
+
+    // Переписывает живые строки в новое поколение области строк и основной файл во временный файл,
+    // затем атомарно подменяет основной файл. Номера слотов сохраняются. При сбое на любом шаге
+    // остаётся целым либо старое, либо новое поколение.
+    public void compact() {
+        int generation = getGeneration() + 1;
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            long used = 0;
+            int slotCount = getSlotCount();
+            ByteBuffer slot = ByteBuffer.allocate(SLOT_BYTES);
+            try (FileChannel newStrings = FileChannel.open(stringsFile(generation).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 FileChannel newSlots = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                         StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = slots.duplicate().position(0).limit(HEADER_BYTES).slice();
+                writeFully(newSlots, header, 0);
+                for (int i = 0; i < slotCount; i++) {
+                    int base = position(i);
+                    slot.clear();
+                    slot.put(slots.duplicate().position(base).limit(base + SLOT_BYTES));
+                    if (slot.get(STATE) == USED) {
+                        used = copyString(newStrings, slot, NAME_LENGTH, NAME_OFFSET, used);
+                        used = copyString(newStrings, slot, DESCRIPTION_LENGTH, DESCRIPTION_OFFSET, used);
+                    }
+                    slot.flip();
+                    writeFully(newSlots, slot, base);
+                }
+                ByteBuffer fields = ByteBuffer.allocate(Integer.BYTES + 2 * Long.BYTES);
+                fields.putInt(generation).putInt(getCounter()).putLong(used).flip();
+                writeFully(newSlots, fields, GENERATION);
+                writeFully(newSlots, ByteBuffer.allocate(Long.BYTES), STRINGS_DEAD);
+                newStrings.force(false);
+                newSlots.force(false);
+            }
+            int oldGeneration = getGeneration();
+            closeChannels();
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            slotChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            mapSlots(capacity);
+            openStrings(generation);
+            Files.deleteIfExists(stringsFile(oldGeneration).toPath());
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при сжатии файла записей: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    private long copyString(FileChannel target, ByteBuffer slot, int lengthField, int offsetField, long used)
+            throws IOException {
+        int length = slot.getInt(lengthField);
+        if (length < 0) {
+            return used;
+        }
+        int offset = (int) slot.getLong(offsetField);
+        writeFully(target, strings.duplicate().position(offset).limit(offset + length), used);
+        slot.putLong(offsetField, used);
+        return used + length;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    // Сбрасывает изменённые страницы обоих файлов на диск.
+    public void force() {
+        slots.force();
+        strings.force();
+    }
+
+    private void closeChannels() throws IOException {
+        if (slotChannel != null) {
+            slotChannel.close();
+        }
+        if (stringChannel != null) {
+            stringChannel.close();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            closeChannels();
+        } catch (IOException ignored) {
+            // исходная ошибка важнее
+        }
+    }
+
+    @Override
+    public void close() {
+        force();
+        try {
+            closeChannels();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при закрытии файла записей: " + file.getAbsolutePath(), e);
+        }
+    }
+}
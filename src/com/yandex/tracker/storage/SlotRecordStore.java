@@ -0,0 +1,263 @@
+package com.yandex.tracker.storage;
+
+import com.yandex.tracker.exception.ManagerSaveException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+// Хранилище записей с адресацией по id. Файл состоит из заголовка и слотов фиксированного размера,
+// запись занимает цепочку слотов. Заголовок слота: state:byte, id:int, version:long, next:int, length:short.
+// Новая версия записи пишется в свободные слоты (головной слот последним), после чего головной слот старой
+// версии помечается свободным, поэтому при сбое на диске остаётся хотя бы одна целая версия. При открытии
+// из нескольких головных слотов с одним id выбирается целая цепочка с наибольшей версией.
+public class SlotRecordStore implements Closeable {
+    public static final int MAGIC = 0x4B414E53;
+    public static final short VERSION = 1;
+    public static final int FILE_HEADER_BYTES = 16;
+    public static final int SLOT_BYTES = 128;
+    public static final int SLOT_HEADER_BYTES = 1 + Integer.BYTES + Long.BYTES + Integer.BYTES + Short.BYTES;
+    public static final int SLOT_PAYLOAD_BYTES = SLOT_BYTES - SLOT_HEADER_BYTES;
+
+    private static final byte FREE = 0;
+    private static final byte HEAD = 1;
+    private static final byte CONTINUATION = 2;
+    private static final int NO_SLOT = -1;
+
+    private final File file;
+    private final FileChannel channel;
+    private final Map<Integer, int[]> chains = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final ByteBuffer slot = ByteBuffer.allocate(SLOT_BYTES);
+    private int slotCount;
+    private long version;
+
+    public SlotRecordStore(File file) {
+        this.file = file;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при открытии хранилища: " + file.getAbsolutePath(), e);
+        }
+        try {
+            open();
+        } catch (IOException | RuntimeException e) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // исходная ошибка важнее
+            }
+            if (e instanceof ManagerSaveException saveException) {
+                throw saveException;
+            }
+            throw new ManagerSaveException("Ошибка при чтении хранилища: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    private void open() throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+            header.putInt(MAGIC).putShort(VERSION).clear();
+            channel.write(header, 0);
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+        if (size < FILE_HEADER_BYTES || channel.read(header, 0) < FILE_HEADER_BYTES
+                || header.getInt(0) != MAGIC) {
+            throw new ManagerSaveException("Файл не является хранилищем записей задач: " + file, null);
+        }
+        if (header.getShort(Integer.BYTES) != VERSION) {
+            throw new ManagerSaveException("Неподдерживаемая версия хранилища: " + header.getShort(Integer.BYTES),
+                    null);
+        }
+        scan((int) ((size - FILE_HEADER_BYTES) / SLOT_BYTES));
+    }
+
+    private void scan(int count) throws IOException {
+        byte[] states = new byte[count];
+        int[] ids = new int[count];
+        long[] versions = new long[count];
+        int[] nexts = new int[count];
+        ByteBuffer chunk = ByteBuffer.allocate(SLOT_BYTES * 512);
+        for (int first = 0; first < count; first += 512) {
+            chunk.clear();
+            chunk.limit(Math.min(512, count - first) * SLOT_BYTES);
+            long position = offset(first);
+            while (chunk.hasRemaining() && channel.read(chunk, position + chunk.position()) > 0) {
+                // дочитываем блок целиком
+            }
+            for (int i = first; i < first + chunk.limit() / SLOT_BYTES; i++) {
+                int base = (i - first) * SLOT_BYTES;
+                states[i] = chunk.get(base);
+                ids[i] = chunk.getInt(base + 1);
+                versions[i] = chunk.getLong(base + 1 + Integer.BYTES);
+                nexts[i] = chunk.getInt(base + 1 + Integer.BYTES + Long.BYTES);
+                version = Math.max(version, versions[i]);
+            }
+        }
+        slotCount = count;
+
+        Map<Integer, Integer> winners = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            if (states[i] != HEAD) {
+                continue;
+            }
+            Integer current = winners.get(ids[i]);
+            if ((current == null || versions[current] < versions[i])
+                    && isComplete(i, states, ids, versions, nexts)) {
+                winners.put(ids[i], i);
+            }
+        }
+        boolean[] used = new boolean[count];
+        for (Map.Entry<Integer, Integer> entry : winners.entrySet()) {
+            int length = 0;
+            for (int i = entry.getValue(); i != NO_SLOT; i = nexts[i]) {
+                length++;
+            }
+            int[] chain = new int[length];
+            int position = 0;
+            for (int i = entry.getValue(); i != NO_SLOT; i = nexts[i]) {
+                chain[position++] = i;
+                used[i] = true;
+            }
+            chains.put(entry.getKey(), chain);
+        }
+        for (int i = 0; i < count; i++) {
+            if (used[i]) {
+                continue;
+            }
+            // Вытесненные и оборванные версии помечаются свободными, иначе после удаления записи
+            // её старая версия ожила бы при следующем открытии.
+            if (states[i] == HEAD) {
+                markFree(i);
+            }
+            freeSlots.push(i);
+        }
+    }
+
+    private static boolean isComplete(int head, byte[] states, int[] ids, long[] versions, int[] nexts) {
+        int steps = 0;
+        for (int i = nexts[head]; i != NO_SLOT; i = nexts[i]) {
+            if (i < 0 || i >= states.length || ++steps > states.length || states[i] != CONTINUATION
+                    || ids[i] != ids[head] || versions[i] != versions[head]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void put(int id, byte[] record) throws IOException {
+        int count = Math.max(1, (record.length + SLOT_PAYLOAD_BYTES - 1) / SLOT_PAYLOAD_BYTES);
+        int[] chain = new int[count];
+        for (int i = 0; i < count; i++) {
+            chain[i] = freeSlots.isEmpty() ? slotCount++ : freeSlots.pop();
+        }
+        long recordVersion = ++version;
+        for (int i = count - 1; i >= 0; i--) {
+            int from = i * SLOT_PAYLOAD_BYTES;
+            int length = Math.min(SLOT_PAYLOAD_BYTES, record.length - from);
+            Arrays.fill(slot.array(), (byte) 0);
+            slot.clear();
+            slot.put(i == 0 ? HEAD : CONTINUATION)
+                    .putInt(id)
+                    .putLong(recordVersion)
+                    .putInt(i == count - 1 ? NO_SLOT : chain[i + 1])
+                    .putShort((short) length)
+                    .put(record, from, length);
+            slot.clear();
+            writeFully(slot, offset(chain[i]));
+        }
+        int[] previous = chains.put(id, chain);
+        release(previous);
+    }
+
+    public void remove(int id) throws IOException {
+        release(chains.remove(id));
+    }
+
+    private void release(int[] chain) throws IOException {
+        if (chain == null) {
+            return;
+        }
+        markFree(chain[0]);
+        for (int i : chain) {
+            freeSlots.push(i);
+        }
+    }
+
+    private void markFree(int index) throws IOException {
+        writeFully(ByteBuffer.wrap(new byte[]{FREE}), offset(index));
+    }
+
+    // Передаёт каждую запись потребителю. Буфер записи действителен только во время вызова.
+    public void forEach(BiConsumer<Integer, ByteBuffer> consumer) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(SLOT_PAYLOAD_BYTES * 4);
+        for (Map.Entry<Integer, int[]> entry : chains.entrySet()) {
+            int[] chain = entry.getValue();
+            if (record.capacity() < chain.length * SLOT_PAYLOAD_BYTES) {
+                record = ByteBuffer.allocate(chain.length * SLOT_PAYLOAD_BYTES);
+            }
+            record.clear();
+            for (int index : chain) {
+                slot.clear();
+                readFully(slot, offset(index));
+                int length = slot.getShort(SLOT_HEADER_BYTES - Short.BYTES);
+                record.put(slot.array(), SLOT_HEADER_BYTES, length);
+            }
+            record.flip();
+            consumer.accept(entry.getKey(), record);
+        }
+    }
+
+    public int size() {
+        return chains.size();
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    public int getFreeSlots() {
+        return freeSlots.size();
+    }
+
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    private static long offset(int index) {
+        return FILE_HEADER_BYTES + (long) index * SLOT_BYTES;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new ManagerSaveException("Повреждённый слот хранилища: " + file, null);
+            }
+            position += read;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
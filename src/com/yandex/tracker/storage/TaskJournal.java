@@ -0,0 +1,373 @@
+package com.yandex.tracker.storage;
+
+import com.yandex.tracker.exception.ManagerSaveException;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+// Журнал изменений. В синхронном режиме запись выполняется в потоке вызывающего. В асинхронном режиме
+// записи сериализуются в потоке вызывающего, а отдельный поток пишет их на диск пачками
+// (групповая фиксация) и завершает future каждой записи согласно DurabilityPolicy.
+public class TaskJournal implements Closeable {
+    private static final CompletableFuture<Void> COMPLETED = CompletableFuture.completedFuture(null);
+
+    private final File file;
+    private final DurabilityPolicy durability;
+    private final boolean async;
+    private final Object ioLock = new Object();
+    private FileChannel channel;
+    private Writer writer;
+    private long records;
+    private int generation;
+    private volatile long lastForce = System.currentTimeMillis();
+
+    private List<Pending> pending = new ArrayList<>();
+    private final List<Pending> unsynced = new ArrayList<>();
+    private CompletableFuture<Void> lastCommit = COMPLETED;
+    private Thread writerThread;
+    private boolean closing;
+
+    public TaskJournal(File file) {
+        this(file, DurabilityPolicy.osBuffered(), false);
+    }
+
+    public TaskJournal(File file, DurabilityPolicy durability, boolean async) {
+        this.file = file;
+        this.durability = durability;
+        this.async = async;
+        for (int segment : listSegments()) {
+            generation = Math.max(generation, segment);
+        }
+    }
+
+    public CompletableFuture<Void> append(Record record) {
+        String line = format(record);
+        if (!async) {
+            synchronized (ioLock) {
+                try {
+                    write(line);
+                    writer.flush();
+                    if (durability.getMode() == DurabilityPolicy.Mode.FSYNC_PER_COMMIT || isForceDue()) {
+                        force();
+                    }
+                } catch (IOException e) {
+                    throw new ManagerSaveException("Ошибка при записи в журнал: " + file.getAbsolutePath(), e);
+                }
+                synchronized (this) {
+                    records++;
+                }
+            }
+            return COMPLETED;
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        synchronized (this) {
+            if (closing) {
+                throw new ManagerSaveException("Журнал закрыт: " + file.getAbsolutePath(), null);
+            }
+            pending.add(new Pending(line, future));
+            records++;
+            lastCommit = future;
+            if (writerThread == null) {
+                writerThread = new Thread(this::runWriter, "journal-writer");
+                writerThread.setDaemon(true);
+                writerThread.start();
+            }
+            notifyAll();
+        }
+        return future;
+    }
+
+    // Future, завершающийся после фиксации всех записей, добавленных к текущему моменту.
+    public synchronized CompletableFuture<Void> lastCommit() {
+        return lastCommit;
+    }
+
+    private static String format(Record record) {
+        StringWriter out = new StringWriter();
+        CsvWriter csv = new CsvWriter(out);
+        try {
+            record.writeTo(csv);
+            csv.endRecord();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    private void runWriter() {
+        while (true) {
+            synchronized (this) {
+                while (pending.isEmpty() && !closing && !hasDueSync()) {
+                    try {
+                        wait(waitMillis());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (closing && pending.isEmpty()) {
+                    break;
+                }
+            }
+            synchronized (ioLock) {
+                commit(takePending(), false);
+            }
+        }
+        synchronized (ioLock) {
+            commit(new ArrayList<>(), true);
+        }
+    }
+
+    private synchronized boolean hasDueSync() {
+        synchronized (unsynced) {
+            return !unsynced.isEmpty() && isForceDue();
+        }
+    }
+
+    private long waitMillis() {
+        if (durability.getMode() != DurabilityPolicy.Mode.FSYNC_INTERVAL) {
+            return 0;
+        }
+        long left = lastForce + durability.getInterval().toMillis() - System.currentTimeMillis();
+        return Math.max(1, left);
+    }
+
+    private boolean isForceDue() {
+        return durability.getMode() == DurabilityPolicy.Mode.FSYNC_INTERVAL
+                && System.currentTimeMillis() - lastForce >= durability.getInterval().toMillis();
+    }
+
+    private synchronized List<Pending> takePending() {
+        List<Pending> batch = pending;
+        pending = new ArrayList<>();
+        return batch;
+    }
+
+    // Пишет пачку одним сбросом буфера и завершает future тех записей, чья долговечность уже обеспечена.
+    // Вызывается под ioLock.
+    private void commit(List<Pending> batch, boolean forceAll) {
+        List<Pending> completed = new ArrayList<>();
+        try {
+            for (Pending record : batch) {
+                write(record.line);
+            }
+            if (writer != null) {
+                writer.flush();
+            }
+            synchronized (unsynced) {
+                if (durability.getMode() == DurabilityPolicy.Mode.OS_BUFFERED) {
+                    completed.addAll(batch);
+                } else {
+                    unsynced.addAll(batch);
+                    if (forceAll || durability.getMode() == DurabilityPolicy.Mode.FSYNC_PER_COMMIT
+                            || isForceDue()) {
+                        force();
+                        completed.addAll(unsynced);
+                        unsynced.clear();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            ManagerSaveException error = new ManagerSaveException("Ошибка при записи в журнал: "
+                    + file.getAbsolutePath(), e);
+            synchronized (unsynced) {
+                batch.forEach(record -> record.future.completeExceptionally(error));
+                unsynced.forEach(record -> record.future.completeExceptionally(error));
+                unsynced.clear();
+            }
+            return;
+        }
+        completed.forEach(record -> record.future.complete(null));
+    }
+
+    private void write(String line) throws IOException {
+        if (writer == null) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), 8192);
+        }
+        writer.write(line);
+    }
+
+    private void force() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+        }
+        lastForce = System.currentTimeMillis();
+    }
+
+    public void replay(Consumer<CsvReader> consumer) {
+        synchronized (ioLock) {
+            for (int segment : listSegments()) {
+                replay(segmentFile(segment), consumer);
+            }
+            synchronized (this) {
+                records = 0;
+            }
+            replay(file, consumer);
+        }
+    }
+
+    private void replay(File source, Consumer<CsvReader> consumer) {
+        if (!source.exists()) {
+            return;
+        }
+        try (CsvReader reader = CsvReader.open(source)) {
+            while (reader.next()) {
+                try {
+                    consumer.accept(reader);
+                    synchronized (this) {
+                        records++;
+                    }
+                } catch (RuntimeException e) {
+                    // Оборванная последняя запись — след незавершённой записи при сбое, её пропускаем.
+                    if (reader.next()) {
+                        throw e;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при чтении журнала: " + source.getAbsolutePath(), e);
+        }
+    }
+
+    // Закрывает текущий сегмент журнала и начинает новый. Возвращает номер закрытого сегмента,
+    // все записи до него должны быть покрыты следующим снимком. Ожидающие записи дописываются в закрываемый
+    // сегмент до переименования.
+    public int rotate() {
+        synchronized (ioLock) {
+            commit(takePending(), true);
+            closeChannel();
+            if (file.exists() && file.length() > 0) {
+                try {
+                    Files.move(file.toPath(), segmentFile(++generation).toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    throw new ManagerSaveException("Ошибка при ротации журнала: " + file.getAbsolutePath(), e);
+                }
+            }
+            synchronized (this) {
+                records = 0;
+            }
+            return generation;
+        }
+    }
+
+    public void dropSegments(int upTo) {
+        synchronized (ioLock) {
+            for (int segment : listSegments()) {
+                if (segment <= upTo) {
+                    try {
+                        Files.deleteIfExists(segmentFile(segment).toPath());
+                    } catch (IOException e) {
+                        throw new ManagerSaveException("Ошибка при удалении сегмента журнала", e);
+                    }
+                }
+            }
+        }
+    }
+
+    public void truncate() {
+        synchronized (ioLock) {
+            dropSegments(rotate());
+        }
+    }
+
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    public long getSize() {
+        return file.length();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    private File segmentFile(int segment) {
+        return new File(file.getPath() + "." + segment);
+    }
+
+    private List<Integer> listSegments() {
+        List<Integer> segments = new ArrayList<>();
+        File dir = file.getAbsoluteFile().getParentFile();
+        String prefix = file.getName() + ".";
+        String[] names = dir == null ? null : dir.list((d, name) -> name.startsWith(prefix));
+        if (names == null) {
+            return segments;
+        }
+        for (String name : names) {
+            try {
+                segments.add(Integer.parseInt(name.substring(prefix.length())));
+            } catch (NumberFormatException ignored) {
+                // посторонний файл с похожим именем
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private void closeChannel() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка при закрытии журнала: " + file.getAbsolutePath(), e);
+        } finally {
+            writer = null;
+            channel = null;
+        }
+    }
+
+    public interface Record {
+        void writeTo(CsvWriter writer) throws IOException;
+    }
+
+    private static class Pending {
+        private final String line;
+        private final CompletableFuture<Void> future;
+
+        private Pending(String line, CompletableFuture<Void> future) {
+            this.line = line;
+            this.future = future;
+        }
+    }
+
+    // Дожидается записи всех принятых записей и закрывает файл. После закрытия журнал можно снова
+    // использовать: при следующей записи файл и поток записи откроются заново.
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            thread = writerThread;
+            closing = thread != null;
+            notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                writerThread = null;
+                closing = false;
+            }
+        }
+        synchronized (ioLock) {
+            commit(takePending(), true);
+            closeChannel();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.yandex.tracker.util;
+
+// Свободные промежутки оси long между занятыми полуинтервалами [start, end). Промежутки хранятся в
+// декартовом дереве по началу, и каждый узел помнит длину самого длинного промежутка в своём поддереве,
+// поэтому самый ранний промежуток нужной длины после заданной точки находится за O(log n), как и
+// занятие и освобождение интервала. Занятые интервалы не должны пересекаться; освобождение идёт по id.
+public class GapIndex {
+    private final IntObjectMap<long[]> occupied = new IntObjectMap<>();
+    private long seed = 0x9E3779B97F4A7C15L;
+    private Node root;
+
+    public GapIndex() {
+        clear();
+    }
+
+    // Занимает [start, end) под запись id, заменяя её прежний интервал. Пустой интервал ничего не занимает.
+    public void occupy(int id, long start, long end) {
+        release(id);
+        occupied.put(id, new long[]{start, end});
+        if (start >= end) {
+            return;
+        }
+        // Обычно интервал лежит внутри одного промежутка; при пересечении с занятым вырезаются все задетые.
+        Node gap = floor(start);
+        if (gap == null || gap.end <= start) {
+            gap = higher(start);
+        }
+        while (gap != null && gap.start < end) {
+            long gapStart = gap.start;
+            long gapEnd = gap.end;
+            root = remove(root, gapStart);
+            if (gapStart < start) {
+                root = insert(root, new Node(gapStart, start, nextPriority()));
+            }
+            if (end < gapEnd) {
+                root = insert(root, new Node(end, gapEnd, nextPriority()));
+            }
+            gap = higher(gapStart);
+        }
+    }
+
+    public void release(int id) {
+        long[] interval = occupied.remove(id);
+        if (interval == null || interval[0] >= interval[1]) {
+            return;
+        }
+        long start = interval[0];
+        long end = interval[1];
+        Node before = floor(start);
+        if (before != null && before.end == start) {
+            start = before.start;
+            root = remove(root, before.start);
+        }
+        Node after = floor(end);
+        if (after != null && after.start == end) {
+            end = after.end;
+            root = remove(root, after.start);
+        }
+        root = insert(root, new Node(start, end, nextPriority()));
+    }
+
+    public boolean isOccupied(int id) {
+        return occupied.containsKey(id);
+    }
+
+    public void clear() {
+        occupied.clear();
+        root = new Node(Long.MIN_VALUE, Long.MAX_VALUE, nextPriority());
+    }
+
+    // Самая ранняя точка t >= notBefore, для которой [t, t + length) свободен.
+    public long findFree(long notBefore, long length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Длина интервала должна быть положительной: " + length);
+        }
+        Node gap = floor(notBefore);
+        if (gap != null && gap.end > notBefore && length(notBefore, gap.end) >= length) {
+            return notBefore;
+        }
+        Node found = firstAfter(root, notBefore, length);
+        if (found == null) {
+            throw new IllegalArgumentException("Нет свободного интервала длины " + length + " после " + notBefore);
+        }
+        return found.start;
+    }
+
+    // Промежуток с наибольшим началом, не превосходящим key.
+    private Node floor(long key) {
+        Node result = null;
+        Node node = root;
+        while (node != null) {
+            if (node.start <= key) {
+                result = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return result;
+    }
+
+    private Node higher(long key) {
+        Node result = null;
+        Node node = root;
+        while (node != null) {
+            if (node.start > key) {
+                result = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return result;
+    }
+
+    // Поддеревья без достаточно длинного промежутка отсекаются по longest.
+    private static Node firstAfter(Node node, long key, long length) {
+        if (node == null || node.longest < length) {
+            return null;
+        }
+        if (node.start <= key) {
+            return firstAfter(node.right, key, length);
+        }
+        Node found = firstAfter(node.left, key, length);
+        if (found != null) {
+            return found;
+        }
+        if (length(node.start, node.end) >= length) {
+            return node;
+        }
+        return firstAfter(node.right, key, length);
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (added.priority > node.priority) {
+            Node[] parts = split(node, added.start);
+            added.left = parts[0];
+            added.right = parts[1];
+            return added.update();
+        }
+        if (added.start < node.start) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+        return node.update();
+    }
+
+    private static Node remove(Node node, long start) {
+        if (node == null) {
+            return null;
+        }
+        if (start == node.start) {
+            return merge(node.left, node.right);
+        }
+        if (start < node.start) {
+            node.left = remove(node.left, start);
+        } else {
+            node.right = remove(node.right, start);
+        }
+        return node.update();
+    }
+
+    // Делит дерево на узлы с началом меньше key и остальные.
+    private static Node[] split(Node node, long key) {
+        if (node == null) {
+            return new Node[2];
+        }
+        if (node.start < key) {
+            Node[] parts = split(node.right, key);
+            node.right = parts[0];
+            parts[0] = node.update();
+            return parts;
+        }
+        Node[] parts = split(node.left, key);
+        node.left = parts[1];
+        parts[1] = node.update();
+        return parts;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return left.update();
+        }
+        right.left = merge(left, right.left);
+        return right.update();
+    }
+
+    // Длина без переполнения: промежутки у краёв оси длиннее Long.MAX_VALUE.
+    private static long length(long start, long end) {
+        long length = end - start;
+        return length < 0 ? Long.MAX_VALUE : length;
+    }
+
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return (int) seed;
+    }
+
+    private static final class Node {
+        private final long start;
+        private final long end;
+        private final int priority;
+        private long longest;
+        private Node left;
+        private Node right;
+
+        private Node(long start, long end, int priority) {
+            this.start = start;
+            this.end = end;
+            this.priority = priority;
+            this.longest = length(start, end);
+        }
+
+        private Node update() {
+            longest = length(start, end);
+            if (left != null && left.longest > longest) {
+                longest = left.longest;
+            }
+            if (right != null && right.longest > longest) {
+                longest = right.longest;
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.yandex.tracker.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+
+// Упорядоченное множество int в виде разреженной битовой карты: блоки по 4096 бит хранятся в TreeMap
+// по старшим разрядам значения, пустые блоки удаляются. Для плотных id это около бита на элемент,
+// а обход от заданного значения начинается сразу с нужного блока и идёт в порядке возрастания.
+public class IntBitmap {
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+    private static final int WORDS = (1 << CHUNK_SHIFT) / Long.SIZE;
+
+    private final TreeMap<Integer, long[]> chunks = new TreeMap<>();
+    private int size;
+
+    public boolean add(int value) {
+        long[] words = chunks.computeIfAbsent(value >> CHUNK_SHIFT, key -> new long[WORDS]);
+        int bit = value & CHUNK_MASK;
+        long mask = 1L << bit;
+        if ((words[bit >>> 6] & mask) != 0) {
+            return false;
+        }
+        words[bit >>> 6] |= mask;
+        size++;
+        return true;
+    }
+
+    public boolean remove(int value) {
+        long[] words = chunks.get(value >> CHUNK_SHIFT);
+        int bit = value & CHUNK_MASK;
+        long mask = 1L << bit;
+        if (words == null || (words[bit >>> 6] & mask) == 0) {
+            return false;
+        }
+        words[bit >>> 6] &= ~mask;
+        size--;
+        if (isEmpty(words)) {
+            chunks.remove(value >> CHUNK_SHIFT);
+        }
+        return true;
+    }
+
+    public boolean contains(int value) {
+        long[] words = chunks.get(value >> CHUNK_SHIFT);
+        int bit = value & CHUNK_MASK;
+        return words != null && (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        chunks.clear();
+        size = 0;
+    }
+
+    // Передаёт элементы не меньше from в порядке возрастания, пока action возвращает true.
+    // Менять множество во время обхода нельзя.
+    public void forEachFrom(int from, IntPredicate action) {
+        int firstChunk = from >> CHUNK_SHIFT;
+        for (Map.Entry<Integer, long[]> entry : chunks.tailMap(firstChunk, true).entrySet()) {
+            int base = entry.getKey() << CHUNK_SHIFT;
+            long[] words = entry.getValue();
+            int startBit = entry.getKey() == firstChunk ? from & CHUNK_MASK : 0;
+            for (int index = startBit >>> 6; index < WORDS; index++) {
+                long word = words[index];
+                if (index == startBit >>> 6) {
+                    word &= -1L << (startBit & 63);
+                }
+                while (word != 0) {
+                    if (!action.test(base + (index << 6) + Long.numberOfTrailingZeros(word))) {
+                        return;
+                    }
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    private static boolean isEmpty(long[] words) {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,229 @@
+package com.yandex.tracker.util;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+
+// Отображение int -> объект без упаковки ключей и без объекта-записи на каждый элемент. Ключи и значения
+// лежат в плотных массивах в порядке вставки, поиск идёт по таблице открытой адресации с линейным
+// пробированием, которая хранит позицию элемента в плотных массивах (+1, ноль — пустая ячейка).
+// Удаление оставляет дыру в плотных массивах, они уплотняются, когда дыр становится больше половины.
+// Значения null не поддерживаются.
+public class IntObjectMap<V> {
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private int[] keys;
+    private Object[] values;
+    private int[] table;
+    private int end;
+    private int size;
+    private int modCount;
+
+    public IntObjectMap() {
+        this(8);
+    }
+
+    public IntObjectMap(int expectedSize) {
+        int capacity = Math.max(4, expectedSize);
+        keys = new int[capacity];
+        values = new Object[capacity];
+        table = new int[tableSize(capacity)];
+    }
+
+    private static int tableSize(int capacity) {
+        return Integer.highestOneBit((int) (capacity / LOAD_FACTOR) + 1) << 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int slot = find(key);
+        return slot < 0 ? null : (V) values[table[slot] - 1];
+    }
+
+    public boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new NullPointerException("Значение не может быть null");
+        }
+        int slot = find(key);
+        if (slot >= 0) {
+            int position = table[slot] - 1;
+            V previous = (V) values[position];
+            values[position] = value;
+            return previous;
+        }
+        if (end == keys.length) {
+            grow();
+        }
+        keys[end] = key;
+        values[end] = value;
+        end++;
+        size++;
+        modCount++;
+        insert(key, end);
+        return null;
+    }
+
+    public V computeIfAbsent(int key, IntFunction<? extends V> factory) {
+        V value = get(key);
+        if (value == null) {
+            value = factory.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        int position = table[slot] - 1;
+        V previous = (V) values[position];
+        values[position] = null;
+        size--;
+        modCount++;
+        shiftBack(slot);
+        if (position == end - 1) {
+            end--;
+        }
+        return previous;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, 0, end, null);
+        Arrays.fill(table, 0);
+        end = 0;
+        size = 0;
+        modCount++;
+    }
+
+    // Представление значений в порядке вставки.
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValueIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int find(int key) {
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while (table[slot] != 0) {
+            if (keys[table[slot] - 1] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(int key, int reference) {
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = reference;
+    }
+
+    private void shiftBack(int gap) {
+        int mask = table.length - 1;
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            int reference = table[slot];
+            if (reference == 0) {
+                table[gap] = 0;
+                return;
+            }
+            int home = hash(keys[reference - 1]) & mask;
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                table[gap] = reference;
+                gap = slot;
+            }
+        }
+    }
+
+    // Уплотняет массивы, если дыр много, иначе расширяет их. Таблица строится заново в обоих случаях.
+    private void grow() {
+        int capacity = size > keys.length / 2 ? keys.length * 2 : keys.length;
+        int[] newKeys = new int[capacity];
+        Object[] newValues = new Object[capacity];
+        int position = 0;
+        for (int i = 0; i < end; i++) {
+            if (values[i] != null) {
+                newKeys[position] = keys[i];
+                newValues[position] = values[i];
+                position++;
+            }
+        }
+        keys = newKeys;
+        values = newValues;
+        end = position;
+        table = new int[tableSize(capacity)];
+        for (int i = 0; i < end; i++) {
+            insert(keys[i], i + 1);
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private class ValueIterator implements Iterator<V> {
+        private final int expectedModCount = modCount;
+        private int position = skipHoles(0);
+
+        private int skipHoles(int from) {
+            while (from < end && values[from] == null) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < end;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (position >= end) {
+                throw new NoSuchElementException();
+            }
+            V value = (V) values[position];
+            position = skipHoles(position + 1);
+            return value;
+        }
+    }
+}
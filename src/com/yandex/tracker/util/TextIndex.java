@@ -0,0 +1,147 @@
+package com.yandex.tracker.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.IntPredicate;
+
+// Инвертированный индекс по словам текста: слово -> упорядоченное множество id (IntBitmap).
+// Словарь хранится в TreeMap, поэтому все слова с общим префиксом лежат подряд и находятся одним subMap.
+// Для каждого id запоминаются его слова, чтобы при изменении или удалении снять только прежние вхождения.
+public class TextIndex {
+    private final TreeMap<String, IntBitmap> postings = new TreeMap<>();
+    private final IntObjectMap<String[]> tokensById = new IntObjectMap<>();
+
+    // Индексирует тексты записи id, заменяя прежние. Если набор слов не изменился, индекс не трогается.
+    public void put(int id, String... texts) {
+        String[] tokens = tokenize(texts);
+        String[] previous = tokensById.get(id);
+        if (previous != null && Arrays.equals(previous, tokens)) {
+            return;
+        }
+        if (previous != null) {
+            unlink(id, previous);
+        }
+        if (tokens.length == 0) {
+            tokensById.remove(id);
+            return;
+        }
+        tokensById.put(id, tokens);
+        for (String token : tokens) {
+            postings.computeIfAbsent(token, key -> new IntBitmap()).add(id);
+        }
+    }
+
+    public void remove(int id) {
+        String[] previous = tokensById.remove(id);
+        if (previous != null) {
+            unlink(id, previous);
+        }
+    }
+
+    public void clear() {
+        postings.clear();
+        tokensById.clear();
+    }
+
+    // Передаёт id записей, в которых каждое слово запроса является началом какого-либо слова текста,
+    // в порядке возрастания, пока action возвращает true. Менять индекс во время обхода нельзя.
+    public void search(String query, IntPredicate action) {
+        String[] terms = terms(query);
+        List<IntBitmap> matches = new ArrayList<>(terms.length);
+        for (String term : terms) {
+            IntBitmap match = match(term);
+            if (match.isEmpty()) {
+                return;
+            }
+            matches.add(match);
+        }
+        // Обходится самое короткое множество, остальные только проверяются.
+        matches.sort((left, right) -> Integer.compare(left.size(), right.size()));
+        IntBitmap driver = matches.get(0);
+        List<IntBitmap> others = matches.subList(1, matches.size());
+        driver.forEachFrom(Integer.MIN_VALUE, id -> {
+            for (IntBitmap other : others) {
+                if (!other.contains(id)) {
+                    return true;
+                }
+            }
+            return action.test(id);
+        });
+    }
+
+    // Проверка без индекса по тем же правилам, что и search.
+    public static boolean matches(String query, String... texts) {
+        String[] tokens = tokenize(texts);
+        for (String term : terms(query)) {
+            int position = Arrays.binarySearch(tokens, term);
+            if (position < 0 && (-position - 1 >= tokens.length || !tokens[-position - 1].startsWith(term))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Слова текста без учёта регистра: последовательности букв и цифр, отсортированные и без повторов.
+    public static String[] tokenize(String... texts) {
+        TreeSet<String> tokens = new TreeSet<>();
+        for (String text : texts) {
+            if (text != null) {
+                collect(text, tokens);
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    private static String[] terms(String query) {
+        String[] terms = query == null ? new String[0] : tokenize(query);
+        if (terms.length == 0) {
+            throw new IllegalArgumentException("Поисковый запрос не содержит слов: " + query);
+        }
+        return terms;
+    }
+
+    private static void collect(String text, Collection<String> tokens) {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+    }
+
+    // Объединение вхождений всех слов с префиксом term; для единственного слова отдаётся его множество.
+    private IntBitmap match(String term) {
+        NavigableMap<String, IntBitmap> range = postings.subMap(term, true, term + Character.MAX_VALUE, false);
+        // size() у представления TreeMap считает элементы обходом, поэтому единственность проверяется по краям.
+        if (!range.isEmpty() && range.firstKey().equals(range.lastKey())) {
+            return range.firstEntry().getValue();
+        }
+        IntBitmap union = new IntBitmap();
+        for (IntBitmap ids : range.values()) {
+            ids.forEachFrom(Integer.MIN_VALUE, id -> {
+                union.add(id);
+                return true;
+            });
+        }
+        return union;
+    }
+
+    private void unlink(int id, String[] tokens) {
+        for (String token : tokens) {
+            IntBitmap ids = postings.get(token);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                postings.remove(token);
+            }
+        }
+    }
+}
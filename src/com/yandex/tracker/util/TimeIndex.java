@@ -0,0 +1,265 @@
+package com.yandex.tracker.util;
+
+import java.util.Arrays;
+
+// Упорядоченный набор ключей (секунды, наносекунды, id) с доступом по позиции, без объектов на элемент.
+// Ключи лежат в дереве, сбалансированном по весу поддеревьев (delta = 3, ratio = 2). Узлы хранятся в
+// параллельных массивах, а размер поддерева даёт позицию ключа и ключ по позиции. Вставка, удаление,
+// поиск позиции и чтение по позиции выполняются за O(log n). Для загрузки ключи сначала добавляются
+// без порядка через append, затем build один раз сортирует их и строит идеально сбалансированное дерево.
+public class TimeIndex {
+    private static final int NIL = 0;
+    private static final int DELTA = 3;
+    private static final int RATIO = 2;
+
+    private long[] seconds = new long[16];
+    private int[] nanos = new int[16];
+    private int[] ids = new int[16];
+    private int[] left = new int[16];
+    private int[] right = new int[16];
+    private int[] sizes = new int[16];
+    // Узел 0 — пустое поддерево; свободные узлы связаны через left.
+    private int nodeCount = 1;
+    private int freeNode = NIL;
+    private int root = NIL;
+    private int pending;
+
+    public int size() {
+        return sizes[root];
+    }
+
+    // Добавляет ключ без упорядочивания; до вызова build индекс нельзя читать и менять.
+    public void append(long startSeconds, int startNanos, int id) {
+        if (nodeCount != pending + 1) {
+            throw new IllegalStateException("Загрузка без порядка возможна только в новый индекс");
+        }
+        allocate(startSeconds, startNanos, id);
+        pending++;
+    }
+
+    // Упорядочивает добавленные через append ключи за O(n log n) и строит из них дерево.
+    public void build() {
+        if (pending == 0) {
+            return;
+        }
+        int[] order = new int[pending];
+        for (int i = 0; i < pending; i++) {
+            order[i] = i + 1;
+        }
+        sort(order, new int[pending], 0, pending);
+        root = build(order, 0, pending);
+        pending = 0;
+    }
+
+    private int build(int[] order, int from, int to) {
+        if (from >= to) {
+            return NIL;
+        }
+        int middle = (from + to) >>> 1;
+        int node = order[middle];
+        left[node] = build(order, from, middle);
+        right[node] = build(order, middle + 1, to);
+        sizes[node] = to - from;
+        return node;
+    }
+
+    // Сортировка слиянием номеров узлов по ключу.
+    private void sort(int[] order, int[] buffer, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sort(order, buffer, from, middle);
+        sort(order, buffer, middle, to);
+        if (compare(order[middle - 1], order[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, buffer, from, to - from);
+        int i = from;
+        int j = middle;
+        for (int k = from; k < to; k++) {
+            if (j >= to || i < middle && compare(buffer[i], buffer[j]) <= 0) {
+                order[k] = buffer[i++];
+            } else {
+                order[k] = buffer[j++];
+            }
+        }
+    }
+
+    public void add(long startSeconds, int startNanos, int id) {
+        root = insert(root, allocate(startSeconds, startNanos, id));
+    }
+
+    public void remove(long startSeconds, int startNanos, int id) {
+        root = remove(root, startSeconds, startNanos, id);
+    }
+
+    // id ключа на позиции position в порядке возрастания.
+    public int idAt(int position) {
+        int node = root;
+        while (true) {
+            int leftSize = sizes[left[node]];
+            if (position < leftSize) {
+                node = left[node];
+            } else if (position == leftSize) {
+                return ids[node];
+            } else {
+                position -= leftSize + 1;
+                node = right[node];
+            }
+        }
+    }
+
+    // Позиция первого ключа, не меньшего (seconds, nanos, id).
+    public int lowerBound(long startSeconds, int startNanos, int id) {
+        int position = 0;
+        int node = root;
+        while (node != NIL) {
+            if (compareTo(node, startSeconds, startNanos, id) < 0) {
+                position += sizes[left[node]] + 1;
+                node = right[node];
+            } else {
+                node = left[node];
+            }
+        }
+        return position;
+    }
+
+    private int insert(int node, int added) {
+        if (node == NIL) {
+            return added;
+        }
+        if (compare(added, node) < 0) {
+            left[node] = insert(left[node], added);
+        } else {
+            right[node] = insert(right[node], added);
+        }
+        return balance(node);
+    }
+
+    private int remove(int node, long startSeconds, int startNanos, int id) {
+        if (node == NIL) {
+            return NIL;
+        }
+        int result = compareTo(node, startSeconds, startNanos, id);
+        if (result > 0) {
+            left[node] = remove(left[node], startSeconds, startNanos, id);
+        } else if (result < 0) {
+            right[node] = remove(right[node], startSeconds, startNanos, id);
+        } else {
+            int rest;
+            if (left[node] == NIL) {
+                rest = right[node];
+            } else if (right[node] == NIL) {
+                rest = left[node];
+            } else {
+                // Место удалённого узла занимает наименьший узел правого поддерева.
+                int successor = right[node];
+                while (left[successor] != NIL) {
+                    successor = left[successor];
+                }
+                right[successor] = removeMin(right[node]);
+                left[successor] = left[node];
+                rest = balance(successor);
+            }
+            release(node);
+            return rest;
+        }
+        return balance(node);
+    }
+
+    private int removeMin(int node) {
+        if (left[node] == NIL) {
+            return right[node];
+        }
+        left[node] = removeMin(left[node]);
+        return balance(node);
+    }
+
+    // Восстанавливает баланс после изменения одного из поддеревьев на один узел и пересчитывает размер.
+    // Вес поддерева — размер плюс один: с ним параметры (3, 2) гарантируют баланс после одного поворота.
+    private int balance(int node) {
+        int leftWeight = sizes[left[node]] + 1;
+        int rightWeight = sizes[right[node]] + 1;
+        if (rightWeight > DELTA * leftWeight) {
+            int child = right[node];
+            if (sizes[left[child]] + 1 >= RATIO * (sizes[right[child]] + 1)) {
+                right[node] = rotateRight(child);
+            }
+            return rotateLeft(node);
+        }
+        if (leftWeight > DELTA * rightWeight) {
+            int child = left[node];
+            if (sizes[right[child]] + 1 >= RATIO * (sizes[left[child]] + 1)) {
+                left[node] = rotateLeft(child);
+            }
+            return rotateRight(node);
+        }
+        sizes[node] = leftWeight + rightWeight - 1;
+        return node;
+    }
+
+    private int rotateLeft(int node) {
+        int child = right[node];
+        right[node] = left[child];
+        left[child] = node;
+        sizes[node] = sizes[left[node]] + sizes[right[node]] + 1;
+        sizes[child] = sizes[node] + sizes[right[child]] + 1;
+        return child;
+    }
+
+    private int rotateRight(int node) {
+        int child = left[node];
+        left[node] = right[child];
+        right[child] = node;
+        sizes[node] = sizes[left[node]] + sizes[right[node]] + 1;
+        sizes[child] = sizes[left[child]] + sizes[node] + 1;
+        return child;
+    }
+
+    private int allocate(long startSeconds, int startNanos, int id) {
+        int node = freeNode;
+        if (node != NIL) {
+            freeNode = left[node];
+        } else {
+            if (nodeCount == ids.length) {
+                grow(nodeCount * 2);
+            }
+            node = nodeCount++;
+        }
+        seconds[node] = startSeconds;
+        nanos[node] = startNanos;
+        ids[node] = id;
+        left[node] = NIL;
+        right[node] = NIL;
+        sizes[node] = 1;
+        return node;
+    }
+
+    private void release(int node) {
+        left[node] = freeNode;
+        right[node] = NIL;
+        freeNode = node;
+    }
+
+    private void grow(int capacity) {
+        seconds = Arrays.copyOf(seconds, capacity);
+        nanos = Arrays.copyOf(nanos, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+    }
+
+    private int compare(int node, int other) {
+        return compareTo(node, seconds[other], nanos[other], ids[other]);
+    }
+
+    private int compareTo(int node, long startSeconds, int startNanos, int id) {
+        int result = Long.compare(seconds[node], startSeconds);
+        if (result == 0) {
+            result = Integer.compare(nanos[node], startNanos);
+        }
+        return result != 0 ? result : Integer.compare(ids[node], id);
+    }
+}
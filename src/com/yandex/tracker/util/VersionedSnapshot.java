@@ -0,0 +1,55 @@
+package com.yandex.tracker.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+// Неизменяемый снимок коллекции с номером версии. Писатель после каждого изменения вызывает invalidate(),
+// читатель получает опубликованный список без блокировок и копирования, пока версия не изменилась.
+// Устаревший снимок строится заново первым читателем и публикуется атомарно, если более новый ещё не
+// опубликован. Снимок содержит все изменения, завершённые до начала чтения, и может включать изменения,
+// выполняемые в этот момент, если источник их уже показывает.
+public class VersionedSnapshot<T> {
+    private final Supplier<? extends Collection<? extends T>> source;
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicReference<Snapshot<T>> published = new AtomicReference<>(new Snapshot<>(-1, List.of()));
+
+    public VersionedSnapshot(Supplier<? extends Collection<? extends T>> source) {
+        this.source = source;
+    }
+
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public List<T> get() {
+        long current = version.get();
+        Snapshot<T> snapshot = published.get();
+        if (snapshot.version == current) {
+            return snapshot.items;
+        }
+        // Версия читается до обхода источника: изменение во время обхода сделает снимок устаревшим.
+        Snapshot<T> fresh = new Snapshot<>(current, Collections.unmodifiableList(new ArrayList<>(source.get())));
+        published.accumulateAndGet(fresh, (existing, candidate) ->
+                existing.version >= candidate.version ? existing : candidate);
+        return fresh.items;
+    }
+
+    private static final class Snapshot<T> {
+        private final long version;
+        private final List<T> items;
+
+        private Snapshot(long version, List<T> items) {
+            this.version = version;
+            this.items = items;
+        }
+    }
+}
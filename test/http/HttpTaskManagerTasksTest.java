@@ -1,6 +1,8 @@
 package http;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.yandex.tracker.http.HttpTaskServer;
 import com.yandex.tracker.model.Epic;
 import com.yandex.tracker.model.Subtask;
@@ -257,5 +259,134 @@ public class HttpTaskManagerTasksTest {
         List<Epic> epicsFromManager = manager.getEpics();
         assertEquals(0, epicsFromManager.size());
     }
-}
 
+    @Test
+    public void testGetPrioritizedTimeWindow() throws IOException, InterruptedException {
+        LocalDateTime start = LocalDateTime.of(2024, 6, 1, 9, 0);
+        for (int hour = 0; hour < 5; hour++) {
+            manager.createTask(new Task(0, "Task " + hour, "Window", TaskStatus.NEW, TaskType.TASK,
+                    Duration.ofMinutes(90), start.plusHours(hour * 2)));
+        }
+
+        HttpClient client = HttpClient.newHttpClient();
+        URI url = URI.create("http://localhost:8080/prioritized?from=2024-06-01T12:00&to=2024-06-01T15:00");
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder().uri(url).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        Task[] tasks = gson.fromJson(response.body(), Task[].class);
+        assertEquals(2, tasks.length);
+        assertEquals("Task 1", tasks[0].getNameTask());
+        assertEquals("Task 2", tasks[1].getNameTask());
+
+        URI invalid = URI.create("http://localhost:8080/prioritized?from=2024-06-01T15:00&to=2024-06-01T12:00");
+        response = client.send(HttpRequest.newBuilder().uri(invalid).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, response.statusCode());
+    }
+
+    @Test
+    public void testGetSubtasksByStatus() throws IOException, InterruptedException {
+        int epicId = manager.createEpic(new Epic(0, "Epic", "Status filter", TaskStatus.NEW, null, null));
+        manager.createSubtask(new Subtask(0, "Open", "Status filter", TaskStatus.NEW, null, null, epicId));
+        manager.createSubtask(new Subtask(0, "Closed", "Status filter", TaskStatus.DONE, null, null, epicId));
+
+        HttpClient client = HttpClient.newHttpClient();
+        URI url = URI.create("http://localhost:8080/subtasks?status=done");
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder().uri(url).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        Subtask[] subtasks = gson.fromJson(response.body(), Subtask[].class);
+        assertEquals(1, subtasks.length);
+        assertEquals("Closed", subtasks[0].getNameTask());
+
+        URI invalid = URI.create("http://localhost:8080/tasks?status=archived");
+        response = client.send(HttpRequest.newBuilder().uri(invalid).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, response.statusCode());
+    }
+
+    @Test
+    public void testGetTasksByPages() throws IOException, InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            manager.createTask(new Task(0, "Task " + i, "Pages", TaskStatus.NEW, TaskType.TASK, null, null));
+        }
+
+        HttpClient client = HttpClient.newHttpClient();
+        URI url = URI.create("http://localhost:8080/tasks?limit=2");
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder().uri(url).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        JsonObject page = JsonParser.parseString(response.body()).getAsJsonObject();
+        Task[] tasks = gson.fromJson(page.get("items"), Task[].class);
+        assertEquals(2, tasks.length);
+        assertEquals("Task 0", tasks[0].getNameTask());
+
+        URI next = URI.create("http://localhost:8080/tasks?limit=2&cursor="
+                + page.get("nextCursor").getAsString());
+        response = client.send(HttpRequest.newBuilder().uri(next).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        page = JsonParser.parseString(response.body()).getAsJsonObject();
+        tasks = gson.fromJson(page.get("items"), Task[].class);
+        assertEquals(1, tasks.length);
+        assertEquals("Task 2", tasks[0].getNameTask());
+        assertFalse(page.has("nextCursor"));
+
+        URI invalid = URI.create("http://localhost:8080/prioritized?limit=2&from=2024-06-01T12:00");
+        response = client.send(HttpRequest.newBuilder().uri(invalid).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, response.statusCode());
+    }
+
+    @Test
+    public void testSearch() throws IOException, InterruptedException {
+        int epicId = manager.createEpic(new Epic(0, "Release", "Publish artifacts", TaskStatus.NEW, null, null));
+        manager.createSubtask(new Subtask(0, "Release notes", "Draft", TaskStatus.NEW, null, null, epicId));
+        manager.createTask(new Task(0, "Fix build", "Release blocker", TaskStatus.NEW, TaskType.TASK, null, null));
+
+        HttpClient client = HttpClient.newHttpClient();
+        URI url = URI.create("http://localhost:8080/search?q=release+not");
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder().uri(url).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        Task[] tasks = gson.fromJson(response.body(), Task[].class);
+        assertEquals(1, tasks.length);
+        assertEquals("Release notes", tasks[0].getNameTask());
+
+        URI invalid = URI.create("http://localhost:8080/search");
+        response = client.send(HttpRequest.newBuilder().uri(invalid).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, response.statusCode());
+    }
+
+    @Test
+    public void testBatch() throws IOException, InterruptedException {
+        int taskId = manager.createTask(new Task(0, "Old", "Batch", TaskStatus.NEW, TaskType.TASK, null, null));
+        String body = "[{\"operation\":\"create\",\"type\":\"EPIC\","
+                + "\"task\":{\"nameTask\":\"Epic\",\"descriptionTask\":\"Batch\"}},"
+                + "{\"operation\":\"CREATE\",\"type\":\"SUBTASK\",\"task\":{\"nameTask\":\"Subtask\","
+                + "\"descriptionTask\":\"Batch\",\"status\":\"DONE\",\"epicId\":-1}},"
+                + "{\"operation\":\"DELETE\",\"type\":\"TASK\",\"id\":" + taskId + "}]";
+
+        HttpClient client = HttpClient.newHttpClient();
+        URI url = URI.create("http://localhost:8080/batch");
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder().uri(url)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        int[] ids = gson.fromJson(response.body(), int[].class);
+        assertEquals(3, ids.length);
+        assertEquals(ids[0], manager.getSubtasks().get(0).getEpicId());
+        assertEquals(TaskStatus.DONE, manager.getEpics().get(0).getStatus());
+        assertTrue(manager.getTasks().isEmpty());
+
+        String invalid = "[{\"operation\":\"CREATE\",\"type\":\"TASK\","
+                + "\"task\":{\"nameTask\":\"Task\",\"descriptionTask\":\"Batch\"}},"
+                + "{\"operation\":\"CREATE\",\"type\":\"SUBTASK\",\"task\":{\"nameTask\":\"Orphan\","
+                + "\"descriptionTask\":\"Batch\",\"epicId\":12345}}]";
+        response = client.send(HttpRequest.newBuilder().uri(url).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(invalid)).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, response.statusCode());
+        assertTrue(manager.getTasks().isEmpty());
+    }
+}
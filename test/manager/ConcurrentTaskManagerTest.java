@@ -0,0 +1,364 @@
+package manager;
+
+import com.yandex.tracker.model.Epic;
+import com.yandex.tracker.model.Subtask;
+import com.yandex.tracker.model.Task;
+import com.yandex.tracker.service.Command;
+import com.yandex.tracker.service.ConcurrentTaskManager;
+import com.yandex.tracker.service.EventSubscription;
+import com.yandex.tracker.service.InMemoryHistoryManager;
+import com.yandex.tracker.service.Page;
+import com.yandex.tracker.service.TaskEvent;
+import com.yandex.tracker.service.TaskStatus;
+import com.yandex.tracker.service.TaskType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentTaskManagerTest {
+    private static final int THREADS = 8;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 6, 1, 0, 0);
+
+    private ConcurrentTaskManager manager;
+
+    @BeforeEach
+    public void setUp() {
+        manager = new ConcurrentTaskManager(new InMemoryHistoryManager());
+    }
+
+    // Тестирование уникальности id при параллельном создании задач, эпиков и подзадач
+    @Test
+    public void testParallelCreationAssignsUniqueIds() throws Exception {
+        int epicId = manager.createEpic(new Epic(0, "Эпик", "Описание", TaskStatus.NEW, null, null));
+        List<Integer> ids = runInParallel(thread -> {
+            List<Integer> created = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                created.add(manager.createTask(new Task(0, "Задача", null, TaskStatus.NEW, TaskType.TASK,
+                        null, null)));
+                created.add(manager.createSubtask(new Subtask(0, "Подзадача", null, TaskStatus.DONE, null,
+                        null, epicId)));
+            }
+            return created;
+        });
+
+        assertEquals(THREADS * 1_000, new HashSet<>(ids).size());
+        assertEquals(THREADS * 500, manager.getTasks().size());
+        assertEquals(THREADS * 500, manager.getEpicSubtasks(epicId).size());
+        assertEquals(TaskStatus.DONE, manager.getEpicById(epicId).getStatus());
+    }
+
+    // Тестирование проверки пересечений при параллельной вставке задач в одни и те же интервалы
+    @Test
+    public void testParallelOverlappingTasksAreRejected() throws Exception {
+        List<Integer> accepted = runInParallel(thread -> {
+            List<Integer> created = new ArrayList<>();
+            for (int slot = 0; slot < 200; slot++) {
+                Task task = new Task(0, "Задача", null, TaskStatus.NEW, TaskType.TASK, Duration.ofMinutes(30),
+                        START.plusHours(slot).plusMinutes(thread));
+                try {
+                    created.add(manager.createTask(task));
+                } catch (IllegalArgumentException e) {
+                    // интервал уже занят другим потоком
+                }
+            }
+            return created;
+        });
+
+        assertEquals(200, accepted.size());
+        List<Task> prioritized = manager.getPrioritizedTasks();
+        assertEquals(200, prioritized.size());
+        for (int i = 1; i < prioritized.size(); i++) {
+            assertFalse(prioritized.get(i - 1).getEndTime().isAfter(prioritized.get(i).getStartTime()));
+        }
+    }
+
+    // Тестирование согласованности эпиков при параллельном изменении и удалении подзадач
+    @Test
+    public void testParallelSubtaskUpdatesKeepEpicsConsistent() throws Exception {
+        int firstEpicId = manager.createEpic(new Epic(0, "Первый", null, TaskStatus.NEW, null, null));
+        int secondEpicId = manager.createEpic(new Epic(0, "Второй", null, TaskStatus.NEW, null, null));
+        List<Integer> subtaskIds = new ArrayList<>();
+        for (int i = 0; i < THREADS * 100; i++) {
+            subtaskIds.add(manager.createSubtask(new Subtask(0, "Подзадача", null, TaskStatus.NEW,
+                    Duration.ofMinutes(10), START.plusHours(i), firstEpicId)));
+        }
+
+        runInParallel(thread -> {
+            for (int i = thread; i < subtaskIds.size(); i += THREADS) {
+                int id = subtaskIds.get(i);
+                manager.updateSubtask(new Subtask(id, "Подзадача", null, TaskStatus.DONE,
+                        Duration.ofMinutes(10), START.plusHours(i), i % 2 == 0 ? firstEpicId : secondEpicId));
+                manager.getEpicById(firstEpicId);
+                if (i % 4 == 1) {
+                    manager.removeSubtaskById(id);
+                }
+            }
+            return List.of();
+        });
+
+        Epic first = manager.getEpicById(firstEpicId);
+        Epic second = manager.getEpicById(secondEpicId);
+        assertEquals(THREADS * 50, first.getSubtasks().size());
+        assertEquals(THREADS * 25, second.getSubtasks().size());
+        assertEquals(TaskStatus.DONE, first.getStatus());
+        assertEquals(TaskStatus.DONE, second.getStatus());
+        assertEquals(THREADS * 75, manager.getSubtasks().size());
+        assertEquals(THREADS * 75, manager.getPrioritizedTasks().size());
+
+        manager.removeEpicById(firstEpicId);
+        assertEquals(THREADS * 25, manager.getSubtasks().size());
+        assertEquals(THREADS * 25, manager.getPrioritizedTasks().size());
+    }
+
+    // Тестирование копии эпика: запись подзадачи сбрасывает её, а выданная раньше копия не меняется
+    @Test
+    public void testEpicCopyIsRebuiltOnReadAfterSubtaskWrites() {
+        int epicId = manager.createEpic(new Epic(0, "Эпик", null, TaskStatus.NEW, null, null));
+        Epic empty = manager.getEpicById(epicId);
+        assertSame(empty, manager.getEpicById(epicId));
+
+        for (int i = 0; i < 1_000; i++) {
+            manager.createSubtask(new Subtask(0, "Подзадача", null, TaskStatus.DONE, Duration.ofMinutes(10),
+                    START.plusHours(i), epicId));
+        }
+        Epic filled = manager.getEpicById(epicId);
+        assertEquals(0, empty.getSubtasks().size());
+        assertEquals(TaskStatus.NEW, empty.getStatus());
+        assertEquals(1_000, filled.getSubtasks().size());
+        assertEquals(TaskStatus.DONE, filled.getStatus());
+        assertEquals(START, filled.getStartTime());
+        assertSame(filled, manager.getEpics().get(0));
+    }
+
+    // Тестирование страниц по индексу id: порядок id, фильтр по статусу и пропуск удалённых записей
+    @Test
+    public void testPagesReadFromIdIndex() {
+        List<Integer> taskIds = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            taskIds.add(manager.createTask(new Task(0, "Задача", null, i % 2 == 0 ? TaskStatus.NEW : TaskStatus.DONE,
+                    TaskType.TASK, null, null)));
+        }
+        int epicId = manager.createEpic(new Epic(0, "Эпик", null, TaskStatus.NEW, null, null));
+        manager.removeTaskById(taskIds.get(2));
+
+        Page<Task> first = manager.getPage(TaskType.TASK, null, null, 3);
+        assertEquals(List.of(taskIds.get(0), taskIds.get(1), taskIds.get(3)), first.getItems().stream()
+                .map(Task::getId).toList());
+        Page<Task> second = manager.getPage(TaskType.TASK, null, first.getNextCursor(), 3);
+        assertEquals(List.of(taskIds.get(4), taskIds.get(5)), second.getItems().stream().map(Task::getId).toList());
+        assertNull(second.getNextCursor());
+
+        Page<Task> done = manager.getPage(TaskType.TASK, TaskStatus.DONE, null, 2);
+        assertEquals(List.of(taskIds.get(1), taskIds.get(3)), done.getItems().stream().map(Task::getId).toList());
+        done = manager.getPage(TaskType.TASK, TaskStatus.DONE, done.getNextCursor(), 2);
+        assertEquals(List.of(taskIds.get(5)), done.getItems().stream().map(Task::getId).toList());
+        assertEquals(List.of(epicId), manager.getPage(TaskType.EPIC, TaskStatus.NEW, null, 2).getItems().stream()
+                .map(Task::getId).toList());
+    }
+
+    // Тестирование поиска по индексу слов после изменения и удаления записей
+    @Test
+    public void testSearchFollowsWrites() {
+        int taskId = manager.createTask(new Task(0, "Настроить сборку", "Gradle", TaskStatus.NEW, TaskType.TASK,
+                null, null));
+        int epicId = manager.createEpic(new Epic(0, "Релиз", "Сборка и публикация", TaskStatus.NEW, null, null));
+        int subtaskId = manager.createSubtask(new Subtask(0, "Релизные заметки", null, TaskStatus.NEW, null, null,
+                epicId));
+        assertEquals(List.of(taskId, epicId), manager.search("сбор").stream().map(Task::getId).toList());
+        assertEquals(List.of(epicId, subtaskId), manager.search("рел").stream().map(Task::getId).toList());
+
+        manager.updateTask(new Task(taskId, "Настроить тесты", "Gradle", TaskStatus.NEW, TaskType.TASK, null, null));
+        manager.removeSubtaskById(subtaskId);
+        assertEquals(List.of(epicId), manager.search("сбор").stream().map(Task::getId).toList());
+        assertEquals(List.of(taskId), manager.search("тест gradle").stream().map(Task::getId).toList());
+        assertEquals(List.of(epicId), manager.search("рел").stream().map(Task::getId).toList());
+        assertThrows(IllegalArgumentException.class, () -> manager.search("  "));
+    }
+
+    // Тестирование выборки по индексу статусов после смены статусов задач и эпика
+    @Test
+    public void testFindByStatusFollowsStatusChanges() {
+        int firstId = manager.createTask(new Task(0, "Первая", null, TaskStatus.NEW, TaskType.TASK, null, null));
+        int secondId = manager.createTask(new Task(0, "Вторая", null, TaskStatus.DONE, TaskType.TASK, null, null));
+        int epicId = manager.createEpic(new Epic(0, "Эпик", null, TaskStatus.NEW, null, null));
+        assertEquals(List.of(firstId), manager.findByStatusAndType(TaskStatus.NEW, TaskType.TASK).stream()
+                .map(Task::getId).toList());
+        assertEquals(List.of(epicId), manager.findByStatusAndType(TaskStatus.NEW, TaskType.EPIC).stream()
+                .map(Task::getId).toList());
+
+        manager.updateTask(new Task(firstId, "Первая", null, TaskStatus.DONE, TaskType.TASK, null, null));
+        int subtaskId = manager.createSubtask(new Subtask(0, "Подзадача", null, TaskStatus.IN_PROGRESS, null, null,
+                epicId));
+        assertEquals(List.of(firstId, secondId), manager.findByStatusAndType(TaskStatus.DONE, TaskType.TASK)
+                .stream().map(Task::getId).toList());
+        assertTrue(manager.findByStatusAndType(TaskStatus.NEW, TaskType.EPIC).isEmpty());
+        assertEquals(List.of(epicId), manager.findByStatusAndType(TaskStatus.IN_PROGRESS, TaskType.EPIC).stream()
+                .map(Task::getId).toList());
+
+        manager.removeSubtaskById(subtaskId);
+        manager.removeTasks();
+        assertEquals(List.of(epicId), manager.findByStatus(TaskStatus.NEW).stream().map(Task::getId).toList());
+        assertTrue(manager.findByStatus(TaskStatus.DONE).isEmpty());
+    }
+
+    // Тестирование поиска свободного интервала по индексу промежутков после изменения и удаления задач
+    @Test
+    public void testFindFreeSlotFollowsWrites() {
+        int morningId = manager.createTask(new Task(0, "Утро", null, TaskStatus.NEW, TaskType.TASK,
+                Duration.ofHours(1), START));
+        manager.createTask(new Task(0, "Полдень", null, TaskStatus.NEW, TaskType.TASK,
+                Duration.ofHours(1), START.plusHours(2)));
+        int epicId = manager.createEpic(new Epic(0, "Эпик", null, TaskStatus.NEW, null, null));
+        manager.createSubtask(new Subtask(0, "Точка", null, TaskStatus.NEW, null, START.plusHours(4), epicId));
+        assertEquals(START.plusHours(1), manager.findFreeSlot(Duration.ofMinutes(30), START));
+        assertEquals(START.plusHours(4).plusNanos(1), manager.findFreeSlot(Duration.ofHours(2), START.plusHours(3)));
+
+        manager.updateTask(new Task(morningId, "Утро", null, TaskStatus.NEW, TaskType.TASK,
+                Duration.ofHours(2), START));
+        assertEquals(START.plusHours(3), manager.findFreeSlot(Duration.ofMinutes(30), START));
+        manager.removeEpicById(epicId);
+        manager.removeTaskById(morningId);
+        assertEquals(START, manager.findFreeSlot(Duration.ofHours(2), START));
+        assertEquals(START.plusHours(3), manager.findFreeSlot(Duration.ofHours(2), START.plusHours(1)));
+    }
+
+    // Тестирование снимков списков: без записей возвращается один и тот же неизменяемый список
+    @Test
+    public void testListSnapshotsArePublishedAfterWrites() throws Exception {
+        int taskId = manager.createTask(new Task(0, "Задача", null, TaskStatus.NEW, TaskType.TASK,
+                Duration.ofMinutes(30), START));
+        int epicId = manager.createEpic(new Epic(0, "Эпик", null, TaskStatus.NEW, null, null));
+        List<Task> tasks = manager.getTasks();
+        assertSame(tasks, manager.getTasks());
+        assertSame(manager.getPrioritizedTasks(), manager.getPrioritizedTasks());
+        assertThrows(UnsupportedOperationException.class, () -> tasks.add(null));
+
+        manager.createSubtask(new Subtask(0, "Подзадача", null, TaskStatus.DONE, Duration.ofMinutes(30),
+                START.plusHours(1), epicId));
+        assertSame(tasks, manager.getTasks());
+        assertEquals(TaskStatus.DONE, manager.getEpics().get(0).getStatus());
+        assertEquals(2, manager.getPrioritizedTasks().size());
+
+        List<Integer> seen = runInParallel(thread -> {
+            List<Integer> sizes = new ArrayList<>();
+            for (int i = 0; i < 1_000; i++) {
+                if (thread == 0) {
+                    manager.createTask(new Task(0, "Задача", null, TaskStatus.NEW, TaskType.TASK, null, null));
+                } else {
+                    sizes.add(manager.getTasks().size());
+                }
+            }
+            return sizes;
+        });
+        for (int size : seen) {
+            assertTrue(size >= 1 && size <= 1_001);
+        }
+        assertEquals(1_001, manager.getTasks().size());
+        manager.removeTaskById(taskId);
+        assertEquals(1_000, manager.getTasks().size());
+        assertEquals(1, manager.getPrioritizedTasks().size());
+    }
+
+    // Тестирование событий при параллельной записи: каждая подписка получает их в порядке version
+    @Test
+    public void testEventsArriveInVersionOrder() throws Exception {
+        List<TaskEvent> received = Collections.synchronizedList(new ArrayList<>());
+        EventSubscription subscription = manager.subscribe(received::add, 10_000);
+        int epicId = manager.createEpic(new Epic(0, "Эпик", null, TaskStatus.NEW, null, null));
+        runInParallel(thread -> {
+            for (int i = 0; i < 500; i++) {
+                if (thread % 2 == 0) {
+                    manager.createTask(new Task(0, "Задача", null, TaskStatus.NEW, TaskType.TASK, null, null));
+                } else {
+                    manager.createSubtask(new Subtask(0, "Подзадача", null, TaskStatus.NEW, null, null, epicId));
+                }
+            }
+            return List.of();
+        });
+        manager.removeEpicById(epicId);
+        subscription.close();
+
+        assertEquals(0, subscription.getDroppedCount());
+        assertEquals(1 + THREADS * 500 + THREADS / 2 * 500 + 1, received.size());
+        for (int i = 0; i < received.size(); i++) {
+            assertEquals(i + 1, received.get(i).getVersion());
+        }
+        TaskEvent last = received.get(received.size() - 1);
+        assertEquals(TaskEvent.Kind.DELETED, last.getKind());
+        assertEquals(TaskType.EPIC, last.getType());
+        assertEquals(THREADS / 2 * 500, last.getBefore() instanceof Epic epic ? epic.getSubtasks().size() : -1);
+    }
+
+    // Тестирование атомарности пакета при параллельном создании задачи на время одной из его задач
+    @Test
+    public void testBatchIsAtomicUnderContention() throws Exception {
+        int rounds = 200;
+        runInParallel(thread -> {
+            for (int round = thread / 2; round < rounds; round += THREADS / 2) {
+                LocalDateTime day = START.plusDays(round);
+                try {
+                    if (thread % 2 == 0) {
+                        manager.applyBatch(List.of(
+                                Command.create(new Task(0, "Пакет", null, TaskStatus.NEW, TaskType.TASK,
+                                        Duration.ofMinutes(30), day)),
+                                Command.create(new Task(0, "Пакет", null, TaskStatus.NEW, TaskType.TASK,
+                                        Duration.ofMinutes(30), day.plusHours(1))),
+                                Command.create(new Task(0, "Пакет", null, TaskStatus.NEW, TaskType.TASK,
+                                        Duration.ofMinutes(30), day.plusHours(2)))));
+                    } else {
+                        manager.createTask(new Task(0, "Одиночная", null, TaskStatus.NEW, TaskType.TASK,
+                                Duration.ofMinutes(30), day.plusHours(2)));
+                    }
+                } catch (IllegalArgumentException e) {
+                    // Проигравшая сторона получает пересечение; проверяется итоговое состояние.
+                }
+            }
+            return List.of();
+        });
+
+        for (int round = 0; round < rounds; round++) {
+            LocalDateTime day = START.plusDays(round);
+            List<Task> dayTasks = manager.getTasksStartingBetween(day, day.plusDays(1));
+            long batched = dayTasks.stream().filter(task -> task.getNameTask().equals("Пакет")).count();
+            long single = dayTasks.size() - batched;
+            assertTrue(batched == 3 && single == 0 || batched == 0 && single == 1,
+                    "День " + round + ": из пакета " + batched + ", одиночных " + single);
+        }
+    }
+
+    private interface Work {
+        List<Integer> run(int thread) throws Exception;
+    }
+
+    private static List<Integer> runInParallel(Work work) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<List<Integer>>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int number = thread;
+                Callable<List<Integer>> callable = () -> work.run(number);
+                futures.add(executor.submit(callable));
+            }
+            List<Integer> result = new ArrayList<>();
+            for (Future<List<Integer>> future : futures) {
+                result.addAll(future.get(60, TimeUnit.SECONDS));
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
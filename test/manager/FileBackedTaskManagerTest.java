@@ -1,11 +1,19 @@
 package manager;
 
+import com.yandex.tracker.model.Epic;
+import com.yandex.tracker.model.Subtask;
 import com.yandex.tracker.model.Task;
+import com.yandex.tracker.service.Command;
 import com.yandex.tracker.service.FileBackedTaskManager;
 import com.yandex.tracker.service.InMemoryHistoryManager;
+import com.yandex.tracker.service.PersistenceMode;
+import com.yandex.tracker.service.StorageFormat;
 import com.yandex.tracker.exception.ManagerSaveException;
 import com.yandex.tracker.service.TaskStatus;
 import com.yandex.tracker.service.TaskType;
+import com.yandex.tracker.storage.CompactionPolicy;
+import com.yandex.tracker.storage.DurabilityPolicy;
+import com.yandex.tracker.storage.FormatConverter;
 import org.junit.jupiter.api.*;
 
 import java.io.File;
@@ -13,6 +21,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -24,6 +35,7 @@ public class FileBackedTaskManagerTest {
     public void setUp() throws IOException {
         tempFile = File.createTempFile("tempTasks", ".csv");
         tempFile.deleteOnExit();
+        new File(tempFile.getPath() + ".seq").deleteOnExit();
         manager = new FileBackedTaskManager(tempFile);
     }
 
@@ -111,4 +123,303 @@ public class FileBackedTaskManagerTest {
             new FileBackedTaskManager(new File(nonExistentPath));
         });
     }
-}
\ No newline at end of file
+
+    // Тестирование восстановления состояния из журнала без перезаписи основного файла
+    @Test
+    public void testJournalReplayRestoresState() {
+        new File(tempFile.getPath() + ".log").deleteOnExit();
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile, PersistenceMode.JOURNAL);
+        LocalDateTime now = LocalDateTime.of(2024, 1, 10, 9, 0);
+        Task task = new Task(0, "Task 1", "Description 1", TaskStatus.NEW, TaskType.TASK,
+                Duration.ofHours(1), now);
+        Task removed = new Task(0, "Task 2", "Description 2", TaskStatus.NEW, TaskType.TASK,
+                Duration.ofHours(1), now.plusHours(2));
+        int taskId = journaled.createTask(task);
+        int removedId = journaled.createTask(removed);
+        int epicId = journaled.createEpic(new Epic(0, "Epic 1", "Epic description", TaskStatus.NEW,
+                Duration.ZERO, null));
+        Subtask subtask = new Subtask(0, "Subtask 1", "Subtask description", TaskStatus.DONE,
+                Duration.ofMinutes(30), now.plusHours(4), epicId);
+        int subtaskId = journaled.createSubtask(subtask);
+
+        journaled.updateTask(new Task(taskId, "Task 1 updated", "Description 1", TaskStatus.IN_PROGRESS,
+                TaskType.TASK, Duration.ofHours(1), now));
+        journaled.removeTaskById(removedId);
+
+        assertEquals(0, tempFile.length());
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, new InMemoryHistoryManager(),
+                PersistenceMode.JOURNAL);
+        assertEquals(1, loaded.getTasks().size());
+        assertEquals("Task 1 updated", loaded.getTaskById(taskId).getNameTask());
+        assertEquals(TaskStatus.IN_PROGRESS, loaded.getTaskById(taskId).getStatus());
+        assertNull(loaded.getTaskById(removedId));
+        assertEquals(subtask, loaded.getSubtaskById(subtaskId));
+        assertEquals(TaskStatus.DONE, loaded.getEpicById(epicId).getStatus());
+        assertEquals(2, loaded.getPrioritizedTasks().size());
+    }
+
+    // Тестирование фонового сжатия журнала в снимок по числу записей
+    @Test
+    public void testBackgroundCompactionTruncatesJournal() throws InterruptedException {
+        File journalFile = new File(tempFile.getPath() + ".log");
+        journalFile.deleteOnExit();
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile, PersistenceMode.JOURNAL);
+        LocalDateTime start = LocalDateTime.of(2024, 2, 1, 9, 0);
+        for (int i = 0; i < 5; i++) {
+            journaled.createTask(new Task(0, "Task " + i, "Description " + i, TaskStatus.NEW, TaskType.TASK,
+                    Duration.ofMinutes(30), start.plusHours(i)));
+        }
+        // Порог уже превышен, поэтому первое же сжатие забирает в снимок все пять записей.
+        journaled.startCompaction(new CompactionPolicy(0, 3, Duration.ZERO, Duration.ofMillis(10)));
+
+        assertTrue(journaled.awaitCompactions(1, Duration.ofSeconds(5)));
+        journaled.close();
+
+        assertEquals(0, journalFile.length());
+        assertTrue(tempFile.length() > 0);
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, new InMemoryHistoryManager(),
+                PersistenceMode.JOURNAL);
+        assertEquals(5, loaded.getTasks().size());
+    }
+
+    // Тестирование восстановления из снимка и записей журнала, сделанных после сжатия
+    @Test
+    public void testReplayAfterCompaction() {
+        new File(tempFile.getPath() + ".log").deleteOnExit();
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile, PersistenceMode.JOURNAL);
+        int epicId = journaled.createEpic(new Epic(0, "Epic 1", "Epic description", TaskStatus.NEW,
+                Duration.ZERO, null));
+        int subtaskId = journaled.createSubtask(new Subtask(0, "Subtask 1", "Subtask description", TaskStatus.NEW,
+                Duration.ofMinutes(30), LocalDateTime.of(2024, 3, 1, 10, 0), epicId));
+        journaled.compact();
+        journaled.removeSubtaskById(subtaskId);
+        journaled.close();
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, new InMemoryHistoryManager(),
+                PersistenceMode.JOURNAL);
+        assertEquals(1, loaded.getEpics().size());
+        assertTrue(loaded.getSubtasks().isEmpty());
+        assertTrue(loaded.getPrioritizedTasks().isEmpty());
+    }
+
+    // Тестирование загрузки с сохранением идентификаторов и связей эпиков без перезаписи файла
+    @Test
+    public void testLoadPreservesIdsAndEpicLinks() throws IOException {
+        String content = "id,type,name,status,description,duration,startTime,epic\n" +
+                "5,EPIC,Epic 1,NEW,Epic description,null,null,0\n" +
+                "7,SUBTASK,Subtask 1,DONE,Description 1,PT30M,2023-10-01T10:00:00,5\n" +
+                "9,SUBTASK,Subtask 2,DONE,Description 2,PT30M,2023-10-01T11:00:00,5\n" +
+                "12,TASK,Task 1,NEW,Description 3,PT1H,2023-10-01T09:00:00,0\n";
+        Files.writeString(tempFile.toPath(), content);
+        long modified = tempFile.lastModified();
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(tempFile, new InMemoryHistoryManager());
+
+        assertEquals(TaskStatus.DONE, loadedManager.getEpicById(5).getStatus());
+        assertEquals(2, loadedManager.getEpicById(5).getSubtasks().size());
+        assertEquals("Task 1", loadedManager.getTaskById(12).getNameTask());
+        assertEquals(12, loadedManager.getPrioritizedTasks().get(0).getId());
+        assertEquals(3, loadedManager.getPrioritizedTasks().size());
+        assertEquals(modified, tempFile.lastModified());
+        assertEquals(content, Files.readString(tempFile.toPath()));
+    }
+
+    // Тестирование обнаружения пересечений при загрузке
+    @Test
+    public void testLoadRejectsOverlappingTasks() throws IOException {
+        String content = "id,type,name,status,description,duration,startTime,epic\n" +
+                "1,TASK,Task 1,NEW,Description 1,PT1H,2023-10-01T10:00:00,0\n" +
+                "2,TASK,Task 2,NEW,Description 2,PT1H,2023-10-01T12:00:00,0\n" +
+                "3,TASK,Task 3,NEW,Description 3,PT1H,2023-10-01T10:30:00,0\n";
+        Files.writeString(tempFile.toPath(), content);
+
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
+                () -> FileBackedTaskManager.loadFromFile(tempFile, new InMemoryHistoryManager()));
+        assertEquals("Задача пересекается с существующей задачей.", thrown.getMessage());
+    }
+
+    // Тестирование сохранения описаний с запятыми, кавычками и переводами строк
+    @Test
+    public void testSaveAndLoadQuotedFields() {
+        Task task = new Task(0, "Task, \"quoted\"", "Line 1,\nLine 2", TaskStatus.NEW, TaskType.TASK,
+                null, null);
+        int taskId = manager.createTask(task);
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(tempFile, new InMemoryHistoryManager());
+        Task loadedTask = loadedManager.getTaskById(taskId);
+        assertEquals("Task, \"quoted\"", loadedTask.getNameTask());
+        assertEquals("Line 1,\nLine 2", loadedTask.getDescriptionTask());
+        assertNull(loadedTask.getStartTime());
+        assertNull(loadedTask.getDuration());
+    }
+
+    // Тестирование сохранения и загрузки в двоичном формате и конвертации в CSV и обратно
+    @Test
+    public void testBinaryFormatRoundTripAndConversion() throws IOException {
+        File binaryFile = File.createTempFile("tempTasks", ".bin");
+        binaryFile.deleteOnExit();
+        new File(binaryFile.getPath() + ".seq").deleteOnExit();
+        FileBackedTaskManager binaryManager = new FileBackedTaskManager(binaryFile, PersistenceMode.SNAPSHOT,
+                StorageFormat.BINARY);
+        LocalDateTime start = LocalDateTime.of(2024, 4, 1, 9, 30, 15, 123);
+        int epicId = binaryManager.createEpic(new Epic(0, "Эпик", "Описание, с запятой", TaskStatus.NEW,
+                Duration.ZERO, null));
+        int subtaskId = binaryManager.createSubtask(new Subtask(0, "Подзадача", null, TaskStatus.IN_PROGRESS,
+                Duration.ofMinutes(45), start, epicId));
+        int taskId = binaryManager.createTask(new Task(0, "Task", "Description", TaskStatus.DONE, TaskType.TASK,
+                null, null));
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(binaryFile, new InMemoryHistoryManager(),
+                PersistenceMode.SNAPSHOT, StorageFormat.BINARY);
+        Subtask subtask = loaded.getSubtaskById(subtaskId);
+        assertEquals(start, subtask.getStartTime());
+        assertEquals(Duration.ofMinutes(45), subtask.getDuration());
+        assertNull(subtask.getDescriptionTask());
+        assertEquals("Описание, с запятой", loaded.getEpicById(epicId).getDescriptionTask());
+        assertEquals(TaskStatus.IN_PROGRESS, loaded.getEpicById(epicId).getStatus());
+        assertNull(loaded.getTaskById(taskId).getStartTime());
+
+        assertEquals(3, FormatConverter.convert(binaryFile, tempFile, StorageFormat.CSV));
+        File convertedBack = File.createTempFile("tempTasks", ".bin");
+        convertedBack.deleteOnExit();
+        assertEquals(3, FormatConverter.convert(tempFile, convertedBack, StorageFormat.BINARY));
+        FileBackedTaskManager fromCsv = FileBackedTaskManager.loadFromFile(tempFile, new InMemoryHistoryManager());
+        assertEquals(start, fromCsv.getSubtaskById(subtaskId).getStartTime());
+        assertEquals(binaryFile.length(), convertedBack.length());
+    }
+
+    // Тестирование асинхронной записи журнала с ожиданием фиксации изменений
+    @Test
+    public void testAsyncJournalCommitFuture() throws Exception {
+        new File(tempFile.getPath() + ".log").deleteOnExit();
+        FileBackedTaskManager asyncManager = new FileBackedTaskManager(tempFile, PersistenceMode.ASYNC_JOURNAL,
+                StorageFormat.CSV, DurabilityPolicy.fsyncEvery(Duration.ofMillis(20)));
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 9, 0);
+        for (int i = 0; i < 100; i++) {
+            asyncManager.createTask(new Task(0, "Task " + i, "Description " + i, TaskStatus.NEW, TaskType.TASK,
+                    Duration.ofMinutes(10), start.plusMinutes(15L * i)));
+        }
+        asyncManager.sync().get(5, TimeUnit.SECONDS);
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, new InMemoryHistoryManager(),
+                PersistenceMode.JOURNAL);
+        assertEquals(100, loaded.getTasks().size());
+        asyncManager.close();
+    }
+
+    // Тестирование инкрементального сохранения: пишутся только изменённые записи, удалённые не возвращаются
+    @Test
+    public void testIncrementalSaveWritesOnlyChangedRecords() {
+        File slotFile = new File(tempFile.getPath() + ".slots");
+        slotFile.deleteOnExit();
+        new File(slotFile.getPath() + ".seq").deleteOnExit();
+        FileBackedTaskManager incremental = new FileBackedTaskManager(slotFile, PersistenceMode.INCREMENTAL);
+        int epicId = incremental.createEpic(new Epic(0, "Эпик", "Описание", TaskStatus.NEW, Duration.ZERO, null));
+        int subtaskId = incremental.createSubtask(new Subtask(0, "Подзадача", "Описание", TaskStatus.NEW,
+                Duration.ofMinutes(30), LocalDateTime.of(2024, 5, 1, 10, 0), epicId));
+        int removedId = incremental.createTask(new Task(0, "Удаляемая", "Описание", TaskStatus.NEW, TaskType.TASK,
+                null, null));
+        int longId = incremental.createTask(new Task(0, "Длинная", "Описание ".repeat(100), TaskStatus.NEW,
+                TaskType.TASK, null, null));
+        assertEquals(0, incremental.getDirtyCount());
+
+        incremental.updateSubtask(new Subtask(subtaskId, "Подзадача", "Описание", TaskStatus.IN_PROGRESS,
+                Duration.ofMinutes(30), LocalDateTime.of(2024, 5, 1, 10, 0), epicId));
+        long size = slotFile.length();
+        incremental.updateSubtask(new Subtask(subtaskId, "Подзадача", "Описание", TaskStatus.DONE,
+                Duration.ofMinutes(30), LocalDateTime.of(2024, 5, 1, 10, 0), epicId));
+        incremental.removeTaskById(removedId);
+        assertEquals(size, slotFile.length(), "Освобождённые слоты должны переиспользоваться");
+        incremental.close();
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(slotFile, new InMemoryHistoryManager(),
+                PersistenceMode.INCREMENTAL);
+        assertEquals(2, loaded.getTasks().size() + loaded.getEpics().size());
+        assertNull(loaded.getTaskById(removedId));
+        assertEquals("Описание ".repeat(100), loaded.getTaskById(longId).getDescriptionTask());
+        assertEquals(TaskStatus.DONE, loaded.getSubtaskById(subtaskId).getStatus());
+        assertEquals(TaskStatus.DONE, loaded.getEpicById(epicId).getStatus());
+
+        loaded.removeEpicById(epicId);
+        loaded.close();
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(slotFile, new InMemoryHistoryManager(),
+                PersistenceMode.INCREMENTAL);
+        assertTrue(reloaded.getSubtasks().isEmpty());
+        assertTrue(reloaded.getEpics().isEmpty());
+        assertEquals(1, reloaded.getTasks().size());
+        reloaded.close();
+    }
+
+    // Тестирование границы id: после удаления последней задачи и перезагрузки её id не выдаётся повторно
+    @Test
+    public void testReloadDoesNotReuseDeletedIds() {
+        int firstId = manager.createTask(new Task(0, "Первая", "Описание", TaskStatus.NEW, TaskType.TASK,
+                null, null));
+        int lastId = manager.createTask(new Task(0, "Последняя", "Описание", TaskStatus.NEW, TaskType.TASK,
+                null, null));
+        manager.removeTaskById(lastId);
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, new InMemoryHistoryManager());
+        assertEquals(1, loaded.getTasks().size());
+        int newId = loaded.createTask(new Task(0, "Новая", "Описание", TaskStatus.NEW, TaskType.TASK,
+                null, null));
+        assertTrue(newId > lastId, "Id удалённой задачи не должен выдаваться повторно");
+        assertNotEquals(firstId, newId);
+    }
+
+    // Тестирование пакета команд: файл сохраняется после пакета, а отклонённый пакет ничего не меняет
+    @Test
+    public void testApplyBatchSavesWholeBatch() {
+        List<Command> commands = new ArrayList<>();
+        commands.add(Command.create(new Epic(0, "Epic", "Description", TaskStatus.NEW, null, null)));
+        for (int i = 0; i < 100; i++) {
+            commands.add(Command.create(new Subtask(0, "Subtask " + i, "Description", TaskStatus.NEW,
+                    Duration.ofMinutes(30), LocalDateTime.of(2024, 6, 1, 0, 0).plusHours(i), -1)));
+        }
+        manager.applyBatch(commands);
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, new InMemoryHistoryManager());
+        assertEquals(1, loaded.getEpics().size());
+        assertEquals(100, loaded.getSubtasks().size());
+        assertEquals(100, loaded.getEpicSubtasks(loaded.getEpics().get(0).getId()).size());
+
+        long length = tempFile.length();
+        assertThrows(IllegalArgumentException.class, () -> manager.applyBatch(List.of(
+                Command.create(new Task(0, "Task", "Description", TaskStatus.NEW, TaskType.TASK, null, null)),
+                Command.update(new Task(12345, "Missing", "Description", TaskStatus.NEW, TaskType.TASK, null,
+                        null)))));
+        assertTrue(manager.getTasks().isEmpty());
+        assertEquals(length, tempFile.length());
+    }
+
+    // Тестирование журнала: пакет, оборванный до COMMIT, не восстанавливается и не поглощает новые записи
+    @Test
+    public void testJournalSkipsUnfinishedBatch() throws IOException {
+        File journalFile = new File(tempFile.getPath() + ".log");
+        journalFile.deleteOnExit();
+        FileBackedTaskManager journaled = new FileBackedTaskManager(tempFile, PersistenceMode.JOURNAL);
+        int taskId = journaled.createTask(new Task(0, "Task", "Description", TaskStatus.NEW, TaskType.TASK,
+                null, null));
+        journaled.applyBatch(List.of(
+                Command.create(new Task(0, "Batch 1", "Description", TaskStatus.NEW, TaskType.TASK, null, null)),
+                Command.create(new Task(0, "Batch 2", "Description", TaskStatus.NEW, TaskType.TASK, null, null))));
+        journaled.close();
+
+        // Сбой до записи COMMIT: в журнале остаются BEGIN и часть записей пакета.
+        List<String> lines = Files.readAllLines(journalFile.toPath());
+        assertEquals("COMMIT", lines.get(lines.size() - 1));
+        Files.write(journalFile.toPath(), lines.subList(0, lines.size() - 2));
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(tempFile, new InMemoryHistoryManager(),
+                PersistenceMode.JOURNAL);
+        assertEquals(List.of(taskId), loaded.getTasks().stream().map(Task::getId).toList());
+        int laterId = loaded.createTask(new Task(0, "Later", "Description", TaskStatus.NEW, TaskType.TASK,
+                null, null));
+        loaded.close();
+
+        FileBackedTaskManager reloaded = FileBackedTaskManager.loadFromFile(tempFile, new InMemoryHistoryManager(),
+                PersistenceMode.JOURNAL);
+        assertEquals(List.of(taskId, laterId), reloaded.getTasks().stream().map(Task::getId).sorted().toList());
+    }
+}
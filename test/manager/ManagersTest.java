@@ -10,7 +10,10 @@ import org.junit.jupiter.api.Test;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -53,6 +56,21 @@ public class ManagersTest {
         assertNotSame(manager1, manager2, "Должны возвращаться разные экземпляры менеджера задач.");
     }
 
+    // Тестирование нумерации: у каждого менеджера свой счётчик id
+    @Test
+    void testIdsArePerManagerInstance() {
+        TaskManager manager1 = new InMemoryTaskManager(historyManager);
+        TaskManager manager2 = new InMemoryTaskManager(new InMemoryHistoryManager());
+
+        int firstId = manager1.createTask(new Task(0, "Task 1", "Description 1", TaskStatus.NEW, TaskType.TASK,
+                null, null));
+        manager1.createTask(new Task(0, "Task 2", "Description 2", TaskStatus.NEW, TaskType.TASK, null, null));
+        int otherId = manager2.createTask(new Task(0, "Task 3", "Description 3", TaskStatus.NEW, TaskType.TASK,
+                null, null));
+
+        assertEquals(firstId, otherId, "Создание задач в одном менеджере не должно сдвигать id в другом.");
+    }
+
     // Тестирование создания экземпляров менеджера истории
     @Test
     void testGetHistoryManagerReturnsInitializedInstance() {
@@ -182,7 +200,7 @@ public class ManagersTest {
         manager.createSubtask(subtask);
         epic.addSubtask(subtask);
 
-        Subtask conflictingSubtask = new Subtask(2, "Subtask 2", "Description for Subtask 2",
+        Subtask conflictingSubtask = new Subtask(0, "Subtask 2", "Description for Subtask 2",
                 TaskStatus.NEW, Duration.ofHours(1), LocalDateTime.now(), epicId);
 
         Exception exception = assertThrows(IllegalArgumentException.class, () -> {
@@ -226,5 +244,434 @@ public class ManagersTest {
 
         assertEquals("Задача пересекается с существующей задачей.", exception.getMessage());
     }
-}
 
+    // Тестирование проверки пересечений при обновлении задачи
+    @Test
+    public void testUpdateTask_OverlappingTaskRejected() {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        manager.createTask(new Task(0, "Task 1", "Description 1", TaskStatus.NEW, TaskType.TASK,
+                Duration.ofHours(1), LocalDateTime.of(2023, 10, 1, 10, 0)));
+        int taskId = manager.createTask(new Task(0, "Task 2", "Description 2", TaskStatus.NEW, TaskType.TASK,
+                Duration.ofHours(1), LocalDateTime.of(2023, 10, 1, 12, 0)));
+
+        Task moved = new Task(taskId, "Task 2", "Description 2", TaskStatus.NEW, TaskType.TASK,
+                Duration.ofHours(1), LocalDateTime.of(2023, 10, 1, 10, 30));
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> manager.updateTask(moved));
+        assertEquals("Задача пересекается с существующей задачей.", exception.getMessage());
+        assertEquals(LocalDateTime.of(2023, 10, 1, 12, 0), manager.getPrioritizedTasks().get(1).getStartTime());
+
+        manager.updateTask(new Task(taskId, "Task 2", "Description 2", TaskStatus.NEW, TaskType.TASK,
+                Duration.ofHours(1), LocalDateTime.of(2023, 10, 1, 11, 0)));
+        assertEquals(2, manager.getPrioritizedTasks().size());
+    }
+
+    // Тестирование приоритетного списка при большом числе задач и задачах без длительности
+    @Test
+    public void testPrioritizedTasksWithManyTasks() {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 0, 0);
+        for (int i = 20_000; i > 0; i--) {
+            manager.createTask(new Task(0, "Task " + i, "Description", TaskStatus.NEW, TaskType.TASK,
+                    Duration.ofMinutes(10), start.plusMinutes(10L * i)));
+        }
+        manager.createTask(new Task(0, "Point", "Description", TaskStatus.NEW, TaskType.TASK, null, start));
+        assertThrows(IllegalArgumentException.class, () -> manager.createTask(new Task(0, "Overlap",
+                "Description", TaskStatus.NEW, TaskType.TASK, Duration.ofMinutes(1), start.plusMinutes(55))));
+
+        List<Task> prioritized = manager.getPrioritizedTasks();
+        assertEquals(20_001, prioritized.size());
+        assertEquals(start, prioritized.get(0).getStartTime());
+    }
+
+    // Тестирование каскадного удаления подзадач эпика и переноса подзадачи в другой эпик
+    @Test
+    public void testEpicSubtaskIndexFollowsChanges() {
+        InMemoryTaskManager manager = new InMemoryTaskManager(new InMemoryHistoryManager());
+        int firstEpicId = manager.createEpic(new Epic(0, "Epic 1", "Description", TaskStatus.NEW,
+                Duration.ZERO, null));
+        int secondEpicId = manager.createEpic(new Epic(0, "Epic 2", "Description", TaskStatus.NEW,
+                Duration.ZERO, null));
+        int movedId = manager.createSubtask(new Subtask(0, "Subtask 1", "Description", TaskStatus.DONE,
+                Duration.ofHours(1), LocalDateTime.of(2023, 10, 1, 10, 0), firstEpicId));
+        int keptId = manager.createSubtask(new Subtask(0, "Subtask 2", "Description", TaskStatus.NEW,
+                Duration.ofHours(1), LocalDateTime.of(2023, 10, 1, 12, 0), firstEpicId));
+
+        manager.updateSubtask(new Subtask(movedId, "Subtask 1", "Description", TaskStatus.DONE,
+                Duration.ofHours(1), LocalDateTime.of(2023, 10, 1, 10, 0), secondEpicId));
+        assertEquals(List.of(keptId), manager.getEpicSubtasks(firstEpicId).stream().map(Task::getId).toList());
+        assertEquals(1, manager.getEpicById(secondEpicId).getSubtasks().size());
+        assertEquals(TaskStatus.DONE, manager.getEpicById(secondEpicId).getStatus());
+        assertEquals(TaskStatus.NEW, manager.getEpicById(firstEpicId).getStatus());
+
+        manager.removeEpicById(firstEpicId);
+        assertNull(manager.getSubtaskById(keptId));
+        assertEquals(1, manager.getSubtasks().size());
+        assertEquals(1, manager.getPrioritizedTasks().size());
+    }
+
+    // Тестирование выборок по временному окну из приоритетного списка
+    @Test
+    void testPrioritizedTimeWindows() {
+        LocalDateTime start = LocalDateTime.of(2024, 6, 1, 9, 0);
+        for (int i = 0; i < 10; i++) {
+            taskManager.createTask(new Task(0, "Task " + i, "Description", TaskStatus.NEW, TaskType.TASK,
+                    Duration.ofMinutes(90), start.plusHours(i * 2)));
+        }
+        taskManager.createTask(new Task(0, "Untimed", "Description", TaskStatus.NEW, TaskType.TASK, null, null));
+
+        List<Task> starting = taskManager.getTasksStartingBetween(start.plusHours(3), start.plusHours(8));
+        assertEquals(List.of("Task 2", "Task 3"), starting.stream().map(Task::getNameTask).toList());
+
+        List<Task> overlapping = taskManager.getPrioritizedTasks(start.plusHours(3), start.plusHours(8));
+        assertEquals(List.of("Task 1", "Task 2", "Task 3"), overlapping.stream().map(Task::getNameTask).toList());
+
+        assertEquals(List.of("Task 8", "Task 9"), taskManager.getPrioritizedTasks(start.plusHours(16), null)
+                .stream().map(Task::getNameTask).toList());
+        assertEquals(10, taskManager.getPrioritizedTasks(null, null).size());
+        assertTrue(taskManager.getTasksStartingBetween(start.plusHours(4), start.plusHours(4)).isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> taskManager.getPrioritizedTasks(start.plusHours(4), start));
+    }
+
+    // Тестирование индекса по статусам при создании, обновлении и удалении записей
+    @Test
+    void testStatusIndexFollowsChanges() {
+        int taskId = taskManager.createTask(new Task(0, "Task", "Description", TaskStatus.NEW, TaskType.TASK,
+                null, null));
+        int epicId = taskManager.createEpic(new Epic(0, "Epic", "Description", TaskStatus.NEW, null, null));
+        int subtaskId = taskManager.createSubtask(new Subtask(0, "Subtask", "Description", TaskStatus.NEW,
+                null, null, epicId));
+        assertEquals(3, taskManager.findByStatus(TaskStatus.NEW).size());
+
+        taskManager.updateSubtask(new Subtask(subtaskId, "Subtask", "Description", TaskStatus.DONE, null, null,
+                epicId));
+        assertEquals(List.of(taskId), ids(taskManager.findByStatus(TaskStatus.NEW)));
+        assertEquals(List.of(epicId, subtaskId), ids(taskManager.findByStatus(TaskStatus.DONE)));
+        assertEquals(List.of(subtaskId),
+                ids(taskManager.findByStatusAndType(TaskStatus.DONE, TaskType.SUBTASK)));
+
+        Task task = taskManager.getTaskById(taskId);
+        task.setStatus(TaskStatus.IN_PROGRESS);
+        taskManager.updateTask(task);
+        assertTrue(taskManager.findByStatusAndType(TaskStatus.NEW, TaskType.TASK).isEmpty());
+        assertEquals(List.of(taskId), ids(taskManager.findByStatus(TaskStatus.IN_PROGRESS)));
+
+        taskManager.removeSubtaskById(subtaskId);
+        assertEquals(List.of(epicId), ids(taskManager.findByStatus(TaskStatus.NEW)));
+        taskManager.removeEpicById(epicId);
+        taskManager.removeTasks();
+        for (TaskStatus status : TaskStatus.values()) {
+            assertTrue(taskManager.findByStatus(status).isEmpty());
+        }
+    }
+
+    // Тестирование постраничной выдачи по id, по времени начала и по истории просмотров
+    @Test
+    void testPagesFollowCursors() {
+        LocalDateTime start = LocalDateTime.of(2024, 6, 1, 9, 0);
+        List<Integer> taskIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            taskIds.add(taskManager.createTask(new Task(0, "Task " + i, "Description",
+                    i % 2 == 0 ? TaskStatus.NEW : TaskStatus.DONE, TaskType.TASK, Duration.ofMinutes(30),
+                    start.minusHours(i))));
+        }
+
+        Page<Task> first = taskManager.getPage(TaskType.TASK, null, null, 2);
+        assertEquals(taskIds.subList(0, 2), ids(first.getItems()));
+        Page<Task> second = taskManager.getPage(TaskType.TASK, null, first.getNextCursor(), 2);
+        assertEquals(taskIds.subList(2, 4), ids(second.getItems()));
+        Page<Task> last = taskManager.getPage(TaskType.TASK, null, second.getNextCursor(), 2);
+        assertEquals(taskIds.subList(4, 5), ids(last.getItems()));
+        assertNull(last.getNextCursor());
+
+        Page<Task> done = taskManager.getPage(TaskType.TASK, TaskStatus.DONE, null, 1);
+        assertEquals(List.of(taskIds.get(1)), ids(done.getItems()));
+        done = taskManager.getPage(TaskType.TASK, TaskStatus.DONE, done.getNextCursor(), 1);
+        assertEquals(List.of(taskIds.get(3)), ids(done.getItems()));
+
+        Page<Task> prioritized = taskManager.getPrioritizedPage(null, 3);
+        assertEquals(List.of(taskIds.get(4), taskIds.get(3), taskIds.get(2)), ids(prioritized.getItems()));
+        prioritized = taskManager.getPrioritizedPage(prioritized.getNextCursor(), 3);
+        assertEquals(List.of(taskIds.get(1), taskIds.get(0)), ids(prioritized.getItems()));
+        assertNull(prioritized.getNextCursor());
+
+        for (int id : taskIds) {
+            taskManager.getTaskById(id);
+        }
+        Page<Task> history = taskManager.getHistoryPage(null, 4);
+        assertEquals(taskIds.subList(0, 4), ids(history.getItems()));
+        history = taskManager.getHistoryPage(history.getNextCursor(), 4);
+        assertEquals(taskIds.subList(4, 5), ids(history.getItems()));
+
+        assertThrows(IllegalArgumentException.class, () -> taskManager.getPage(TaskType.TASK, null, "???", 2));
+        assertThrows(IllegalArgumentException.class, () -> taskManager.getPage(TaskType.TASK, null, null, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> taskManager.getPrioritizedPage(first.getNextCursor(), 2));
+    }
+
+    // Тестирование поиска по словам названия и описания при создании, изменении и удалении записей
+    @Test
+    void testSearchFollowsChanges() {
+        int taskId = taskManager.createTask(new Task(0, "Починить сборку", "Обновить Gradle-плагин",
+                TaskStatus.NEW, TaskType.TASK, null, null));
+        int epicId = taskManager.createEpic(new Epic(0, "Релиз 2.0", "Сборка и публикация", TaskStatus.NEW,
+                null, null));
+        int subtaskId = taskManager.createSubtask(new Subtask(0, "Собрать заметки", "К релизу", TaskStatus.NEW,
+                null, null, epicId));
+
+        assertEquals(List.of(taskId, epicId), ids(taskManager.search("СБОРК")));
+        assertEquals(List.of(taskId), ids(taskManager.search("сборку gradle")));
+        assertEquals(List.of(epicId, subtaskId), ids(taskManager.search("рел")));
+        assertTrue(taskManager.search("сборка плагин").isEmpty());
+
+        taskManager.updateTask(new Task(taskId, "Починить тесты", "Без плагинов", TaskStatus.NEW, TaskType.TASK,
+                null, null));
+        assertEquals(List.of(epicId), ids(taskManager.search("сборк")));
+        assertEquals(List.of(taskId), ids(taskManager.search("тест плаг")));
+
+        taskManager.updateEpic(new Epic(epicId, "Релиз 2.0", "Только публикация", TaskStatus.NEW, null, null));
+        assertTrue(taskManager.search("сборк").isEmpty());
+
+        taskManager.removeEpicById(epicId);
+        assertTrue(taskManager.search("рел").isEmpty());
+        taskManager.removeTasks();
+        assertTrue(taskManager.search("тест").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> taskManager.search(" - "));
+    }
+
+    // Тестирование пакета команд: ссылки на созданные записи, перестановка интервалов и откат при ошибке
+    @Test
+    void testApplyBatchIsAllOrNothing() {
+        LocalDateTime start = LocalDateTime.of(2024, 6, 1, 9, 0);
+        int firstId = taskManager.createTask(new Task(0, "First", "Description", TaskStatus.NEW, TaskType.TASK,
+                Duration.ofHours(1), start));
+        int secondId = taskManager.createTask(new Task(0, "Second", "Description", TaskStatus.NEW, TaskType.TASK,
+                Duration.ofHours(1), start.plusHours(1)));
+
+        List<Integer> ids = taskManager.applyBatch(List.of(
+                Command.create(new Epic(0, "Epic", "Description", TaskStatus.NEW, null, null)),
+                Command.create(new Subtask(0, "Subtask", "Description", TaskStatus.DONE, Duration.ofHours(1),
+                        start.plusHours(2), -1)),
+                Command.update(new Task(firstId, "First", "Description", TaskStatus.NEW, TaskType.TASK,
+                        Duration.ofHours(1), start.plusHours(3))),
+                Command.update(new Task(secondId, "Second", "Description", TaskStatus.NEW, TaskType.TASK,
+                        Duration.ofHours(1), start)),
+                Command.delete(TaskType.TASK, 999)));
+        int epicId = ids.get(0);
+        assertEquals(List.of(epicId, ids.get(1), firstId, secondId, 999), ids);
+        assertEquals(epicId, taskManager.getSubtasks().get(0).getEpicId());
+        assertEquals(TaskStatus.DONE, taskManager.getEpics().get(0).getStatus());
+        assertEquals(List.of(secondId, ids.get(1), firstId), ids(taskManager.getPrioritizedTasks()));
+
+        List<Task> before = taskManager.getPrioritizedTasks();
+        assertThrows(IllegalArgumentException.class, () -> taskManager.applyBatch(List.of(
+                Command.delete(TaskType.TASK, secondId),
+                Command.create(new Task(0, "Third", "Description", TaskStatus.NEW, TaskType.TASK,
+                        Duration.ofMinutes(30), start.plusMinutes(30))),
+                Command.create(new Task(0, "Clash", "Description", TaskStatus.NEW, TaskType.TASK,
+                        Duration.ofHours(1), start.plusMinutes(45))))));
+        assertThrows(IllegalArgumentException.class, () -> taskManager.applyBatch(List.of(
+                Command.delete(TaskType.EPIC, epicId),
+                Command.create(new Subtask(0, "Orphan", "Description", TaskStatus.NEW, null, null, epicId)))));
+        assertThrows(IllegalArgumentException.class, () -> taskManager.applyBatch(List.of(
+                Command.create(new Subtask(0, "Forward", "Description", TaskStatus.NEW, null, null, -2)),
+                Command.create(new Epic(0, "Epic", "Description", TaskStatus.NEW, null, null)))));
+        assertEquals(before, taskManager.getPrioritizedTasks());
+        assertEquals(2, taskManager.getTasks().size());
+        assertEquals(1, taskManager.getSubtasks().size());
+
+        taskManager.applyBatch(List.of(Command.delete(TaskType.EPIC, epicId),
+                Command.create(new Task(0, "Reused slot", "Description", TaskStatus.NEW, TaskType.TASK,
+                        Duration.ofHours(1), start.plusHours(2)))));
+        assertTrue(taskManager.getSubtasks().isEmpty());
+        assertEquals(3, taskManager.getPrioritizedTasks().size());
+    }
+
+    // Тестирование поиска свободного интервала и автоматического планирования задач без времени начала
+    @Test
+    void testAutoScheduleFillsEarliestGaps() {
+        LocalDateTime start = LocalDateTime.of(2024, 6, 1, 9, 0);
+        taskManager.createTask(new Task(0, "Morning", "Description", TaskStatus.NEW, TaskType.TASK,
+                Duration.ofHours(1), start));
+        taskManager.createTask(new Task(0, "Noon", "Description", TaskStatus.NEW, TaskType.TASK,
+                Duration.ofHours(1), start.plusHours(2)));
+        taskManager.createTask(new Task(0, "Point", "Description", TaskStatus.NEW, TaskType.TASK,
+                null, start.plusHours(4)));
+
+        assertEquals(start.minusHours(1), taskManager.findFreeSlot(Duration.ofHours(1), start.minusHours(1)));
+        assertEquals(start.plusHours(1), taskManager.findFreeSlot(Duration.ofMinutes(30), start));
+        assertEquals(start.plusHours(3), taskManager.findFreeSlot(Duration.ofHours(1), start.plusMinutes(90)));
+        assertEquals(start.plusHours(4).plusNanos(1), taskManager.findFreeSlot(Duration.ofHours(2),
+                start.plusHours(3)));
+        assertEquals(start.plusHours(3), taskManager.findFreeSlot(Duration.ofHours(1), start.plusHours(3)));
+        assertThrows(IllegalArgumentException.class, () -> taskManager.findFreeSlot(Duration.ofHours(-1), start));
+
+        int epicId = taskManager.createEpic(new Epic(0, "Epic", "Description", TaskStatus.NEW, null, null));
+        Task pinned = new Task(0, "Pinned", "Description", TaskStatus.NEW, TaskType.TASK, Duration.ofMinutes(30),
+                start.plusHours(1).plusMinutes(30));
+        Task first = new Task(0, "First", "Description", TaskStatus.NEW, TaskType.TASK, Duration.ofMinutes(30),
+                null);
+        Subtask second = new Subtask(0, "Second", "Description", TaskStatus.NEW, Duration.ofMinutes(45), null,
+                epicId);
+        Task third = new Task(0, "Third", "Description", TaskStatus.NEW, TaskType.TASK, Duration.ofHours(2), null);
+        taskManager.autoSchedule(List.of(first, second, pinned, third), start);
+
+        assertEquals(start.plusHours(1), first.getStartTime());
+        assertEquals(start.plusHours(3), second.getStartTime());
+        assertEquals(start.plusHours(4).plusNanos(1), third.getStartTime());
+        assertEquals(7, taskManager.getPrioritizedTasks().size());
+        assertEquals(List.of(second), taskManager.getEpicSubtasks(epicId));
+
+        taskManager.removeTasks();
+        assertEquals(start, taskManager.findFreeSlot(Duration.ofHours(1), start));
+        assertEquals(start.plusHours(3).plusMinutes(45),
+                taskManager.findFreeSlot(Duration.ofHours(1), start.plusHours(3)));
+        taskManager.removeSubtasks();
+        assertEquals(start.plusHours(3), taskManager.findFreeSlot(Duration.ofDays(1000), start.plusHours(3)));
+    }
+
+    // Тестирование календарной сетки: на случайных операциях решения совпадают с менеджером без сетки
+    @Test
+    void testCalendarGridAgreesWithOrderedSet() {
+        LocalDateTime start = LocalDateTime.of(2024, 6, 1, 0, 0);
+        TaskManager gridManager = new InMemoryTaskManager(new InMemoryHistoryManager(),
+                new CalendarGrid(start, Duration.ofMinutes(15), 2 * 24 * 4));
+        Random random = new Random(11);
+        List<Integer> created = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            int operation = random.nextInt(4);
+            if (operation == 0 && !created.isEmpty()) {
+                int id = created.remove(random.nextInt(created.size()));
+                taskManager.removeTaskById(id);
+                gridManager.removeTaskById(id);
+                continue;
+            }
+            LocalDateTime taskStart = start.minusHours(6).plusMinutes(random.nextInt(60 * 60));
+            Duration duration = Duration.ofMinutes(random.nextInt(5) * 7L);
+            boolean update = operation == 1 && !created.isEmpty();
+            int id = update ? created.get(random.nextInt(created.size())) : 0;
+            Task plain = new Task(id, "Task", "Description", TaskStatus.NEW, TaskType.TASK, duration, taskStart);
+            Task gridded = new Task(id, "Task", "Description", TaskStatus.NEW, TaskType.TASK, duration, taskStart);
+            boolean accepted = apply(taskManager, plain, update);
+            assertEquals(accepted, apply(gridManager, gridded, update));
+            if (accepted && !update) {
+                assertEquals(plain.getId(), gridded.getId());
+                created.add(plain.getId());
+            }
+        }
+        assertEquals(ids(taskManager.getPrioritizedTasks()), ids(gridManager.getPrioritizedTasks()));
+        assertThrows(IllegalStateException.class, () -> {
+            CalendarGrid grid = CalendarGrid.yearOfQuarterHours(start);
+            new InMemoryTaskManager(new InMemoryHistoryManager(), grid);
+            new InMemoryTaskManager(new InMemoryHistoryManager(), grid);
+        });
+    }
+
+    // Тестирование событий изменений: создание, смена статуса эпика, каскадное удаление и переполнение буфера
+    @Test
+    void testEventsFollowChanges() throws InterruptedException {
+        List<TaskEvent> received = Collections.synchronizedList(new ArrayList<>());
+        EventSubscription subscription = taskManager.subscribe(received::add);
+        int epicId = taskManager.createEpic(new Epic(0, "Epic", "Description", TaskStatus.NEW, null, null));
+        Subtask subtask = new Subtask(0, "Subtask", "Description", TaskStatus.DONE, null, null, epicId);
+        int subtaskId = taskManager.createSubtask(subtask);
+        subtask.setNameTask("Changed outside");
+        taskManager.removeEpicById(epicId);
+        subscription.close();
+        taskManager.createTask(new Task(0, "Task", "Description", TaskStatus.NEW, TaskType.TASK, null, null));
+
+        assertEquals(List.of("1 CREATED EPIC " + epicId, "2 CREATED SUBTASK " + subtaskId,
+                "3 UPDATED EPIC " + epicId, "4 DELETED SUBTASK " + subtaskId, "5 DELETED EPIC " + epicId),
+                received.stream().map(TaskEvent::toString).toList());
+        assertEquals("Subtask", received.get(1).getAfter().getNameTask());
+        assertNull(received.get(1).getBefore());
+        assertEquals(TaskStatus.NEW, received.get(2).getBefore().getStatus());
+        assertEquals(TaskStatus.DONE, received.get(2).getAfter().getStatus());
+        assertNull(received.get(4).getAfter());
+
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> versions = Collections.synchronizedList(new ArrayList<>());
+        EventSubscription slow = taskManager.subscribe(event -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            versions.add(event.getVersion());
+        }, 2);
+        for (int i = 0; i < 10; i++) {
+            taskManager.createTask(new Task(0, "Task", "Description", TaskStatus.NEW, TaskType.TASK, null, null));
+        }
+        release.countDown();
+        slow.close();
+        assertTrue(slow.getDroppedCount() >= 6);
+        assertEquals(10, versions.size() + slow.getDroppedCount());
+        assertEquals(15L, (long) versions.get(versions.size() - 1));
+        assertThrows(IllegalArgumentException.class, () -> taskManager.subscribe(event -> { }, 0));
+
+        EventSubscription failing = taskManager.subscribe(event -> {
+            throw new IllegalStateException("Ошибка слушателя");
+        });
+        taskManager.createTask(new Task(0, "Task", "Description", TaskStatus.NEW, TaskType.TASK, null, null));
+        taskManager.createTask(new Task(0, "Task", "Description", TaskStatus.NEW, TaskType.TASK, null, null));
+        failing.close();
+        assertEquals(2, failing.getFailedCount());
+    }
+
+    // Тестирование прежней версии в событии, когда запись изменена на месте до вызова update
+    @Test
+    void testEventBeforeSurvivesInPlaceUpdate() {
+        Task task = new Task(0, "Task", "Description", TaskStatus.NEW, TaskType.TASK, null, null);
+        int taskId = taskManager.createTask(task);
+        List<TaskEvent> received = Collections.synchronizedList(new ArrayList<>());
+        EventSubscription subscription = taskManager.subscribe(received::add);
+        task.setNameTask("First");
+        taskManager.updateTask(task);
+        task.setNameTask("Second");
+        taskManager.updateTask(task);
+        taskManager.removeTaskById(taskId);
+        subscription.close();
+
+        assertEquals(3, received.size());
+        assertEquals("Task", received.get(0).getBefore().getNameTask());
+        assertEquals("First", received.get(0).getAfter().getNameTask());
+        assertEquals("First", received.get(1).getBefore().getNameTask());
+        assertEquals("Second", received.get(1).getAfter().getNameTask());
+        assertEquals("Second", received.get(2).getBefore().getNameTask());
+    }
+
+    // Тестирование снимков списков: без изменений отдаётся тот же список, после изменения — новый
+    @Test
+    void testListsAreSharedUntilChanged() {
+        Task task = new Task(0, "Task", "Description", TaskStatus.NEW, TaskType.TASK, Duration.ofMinutes(30),
+                LocalDateTime.of(2024, 5, 1, 10, 0));
+        int taskId = taskManager.createTask(task);
+        List<Task> tasks = taskManager.getTasks();
+        List<Task> prioritized = taskManager.getPrioritizedTasks();
+        assertSame(tasks, taskManager.getTasks());
+        assertSame(prioritized, taskManager.getPrioritizedTasks());
+        assertThrows(UnsupportedOperationException.class, () -> tasks.add(task));
+
+        taskManager.removeTaskById(taskId);
+        assertEquals(1, tasks.size());
+        assertTrue(taskManager.getTasks().isEmpty());
+        assertTrue(taskManager.getPrioritizedTasks().isEmpty());
+    }
+
+    private static boolean apply(TaskManager manager, Task task, boolean update) {
+        try {
+            if (update) {
+                manager.updateTask(task);
+            } else {
+                manager.createTask(task);
+            }
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static List<Integer> ids(List<Task> tasks) {
+        return tasks.stream().map(Task::getId).toList();
+    }
+}
@@ -0,0 +1,225 @@
+package manager;
+
+import com.yandex.tracker.model.Epic;
+import com.yandex.tracker.model.Subtask;
+import com.yandex.tracker.model.Task;
+import com.yandex.tracker.service.EventSubscription;
+import com.yandex.tracker.service.InMemoryHistoryManager;
+import com.yandex.tracker.service.Page;
+import com.yandex.tracker.service.MappedTaskManager;
+import com.yandex.tracker.service.TaskEvent;
+import com.yandex.tracker.service.TaskStatus;
+import com.yandex.tracker.service.TaskType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedTaskManagerTest {
+    private File dir;
+    private File file;
+    private MappedTaskManager manager;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("mapped").toFile();
+        file = new File(dir, "tasks.map");
+        manager = new MappedTaskManager(file, new InMemoryHistoryManager());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        manager.close();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                child.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    // Тестирование создания, обновления и удаления задач с расчётом статуса эпика
+    @Test
+    public void testCrudAndEpicStatus() {
+        int epicId = manager.createEpic(new Epic(0, "Эпик", "Описание", TaskStatus.NEW, Duration.ZERO, null));
+        int firstId = manager.createSubtask(new Subtask(0, "Первая", "Описание", TaskStatus.NEW,
+                Duration.ofMinutes(30), LocalDateTime.of(2024, 6, 1, 10, 0), epicId));
+        int secondId = manager.createSubtask(new Subtask(0, "Вторая", null, TaskStatus.DONE,
+                Duration.ofMinutes(30), LocalDateTime.of(2024, 6, 1, 11, 0), epicId));
+        assertEquals(TaskStatus.IN_PROGRESS, manager.getEpicById(epicId).getStatus());
+        assertEquals(2, manager.getEpicById(epicId).getSubtasks().size());
+        assertNull(manager.getSubtaskById(secondId).getDescriptionTask());
+
+        manager.updateSubtask(new Subtask(firstId, "Первая", "Новое описание", TaskStatus.IN_PROGRESS,
+                Duration.ofMinutes(30), LocalDateTime.of(2024, 6, 1, 10, 0), epicId));
+        assertEquals("Новое описание", manager.getSubtaskById(firstId).getDescriptionTask());
+        assertEquals(TaskStatus.IN_PROGRESS, manager.getEpicById(epicId).getStatus());
+
+        manager.removeSubtaskById(firstId);
+        assertEquals(TaskStatus.DONE, manager.getEpicById(epicId).getStatus());
+        manager.removeEpicById(epicId);
+        assertTrue(manager.getSubtasks().isEmpty());
+        assertNull(manager.getEpicById(epicId));
+    }
+
+    // Тестирование событий изменений: прежние версии читаются из файла, статус эпика меняется из-за подзадач
+    @Test
+    public void testEventsFollowChanges() {
+        Task task = new Task(0, "Задача", "Описание", TaskStatus.NEW, TaskType.TASK, null, null);
+        int taskId = manager.createTask(task);
+        List<TaskEvent> received = Collections.synchronizedList(new ArrayList<>());
+        EventSubscription subscription = manager.subscribe(received::add);
+        int epicId = manager.createEpic(new Epic(0, "Эпик", "Описание", TaskStatus.NEW, Duration.ZERO, null));
+        int subtaskId = manager.createSubtask(new Subtask(0, "Подзадача", "Описание", TaskStatus.DONE, null, null,
+                epicId));
+        task.setNameTask("Новое имя");
+        manager.updateTask(task);
+        manager.removeEpicById(epicId);
+        subscription.close();
+
+        assertEquals(List.of("1 CREATED EPIC " + epicId, "2 CREATED SUBTASK " + subtaskId,
+                "3 UPDATED EPIC " + epicId, "4 UPDATED TASK " + taskId, "5 DELETED SUBTASK " + subtaskId,
+                "6 DELETED EPIC " + epicId), received.stream().map(TaskEvent::toString).toList());
+        assertEquals(TaskStatus.NEW, received.get(2).getBefore().getStatus());
+        assertEquals(TaskStatus.DONE, received.get(2).getAfter().getStatus());
+        assertEquals("Задача", received.get(3).getBefore().getNameTask());
+        assertEquals("Новое имя", received.get(3).getAfter().getNameTask());
+        assertNull(received.get(5).getAfter());
+    }
+
+    // Тестирование проверки пересечений и порядка приоритетного списка
+    @Test
+    public void testPrioritizedTasksAndOverlap() {
+        int lateId = manager.createTask(new Task(0, "Поздняя", "Описание", TaskStatus.NEW, TaskType.TASK,
+                Duration.ofHours(1), LocalDateTime.of(2024, 6, 1, 12, 0)));
+        int earlyId = manager.createTask(new Task(0, "Ранняя", "Описание", TaskStatus.NEW, TaskType.TASK,
+                Duration.ofHours(1), LocalDateTime.of(2024, 6, 1, 9, 0)));
+        manager.createTask(new Task(0, "Без времени", "Описание", TaskStatus.NEW, TaskType.TASK, null, null));
+
+        Exception exception = assertThrows(IllegalArgumentException.class, () ->
+                manager.createTask(new Task(0, "Пересечение", "Описание", TaskStatus.NEW, TaskType.TASK,
+                        Duration.ofHours(1), LocalDateTime.of(2024, 6, 1, 11, 30))));
+        assertEquals("Задача пересекается с существующей задачей.", exception.getMessage());
+
+        manager.updateTask(new Task(lateId, "Поздняя", "Описание", TaskStatus.DONE, TaskType.TASK,
+                Duration.ofHours(2), LocalDateTime.of(2024, 6, 1, 12, 0)));
+        List<Task> prioritized = manager.getPrioritizedTasks();
+        assertEquals(2, prioritized.size());
+        assertEquals(earlyId, prioritized.get(0).getId());
+        assertEquals(lateId, prioritized.get(1).getId());
+    }
+
+    // Тестирование окна, которое начинается после задачи без длительности
+    @Test
+    public void testWindowAfterTaskWithoutDuration() {
+        manager.createTask(new Task(0, "Без длительности", "Описание", TaskStatus.NEW, TaskType.TASK,
+                null, LocalDateTime.of(2024, 6, 1, 9, 0)));
+
+        assertEquals(List.of(), manager.getPrioritizedTasks(LocalDateTime.of(2024, 6, 1, 10, 0),
+                LocalDateTime.of(2024, 6, 1, 11, 0)));
+    }
+
+    // Тестирование страниц по индексу id: порядок id, фильтр по статусу и пропуск удалённых записей
+    @Test
+    public void testPagesReadFromIdIndex() {
+        List<Integer> taskIds = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            taskIds.add(manager.createTask(new Task(0, "Задача", null, i % 2 == 0 ? TaskStatus.NEW : TaskStatus.DONE,
+                    TaskType.TASK, null, null)));
+        }
+        int epicId = manager.createEpic(new Epic(0, "Эпик", null, TaskStatus.NEW, null, null));
+        manager.removeTaskById(taskIds.get(2));
+
+        Page<Task> first = manager.getPage(TaskType.TASK, null, null, 3);
+        assertEquals(List.of(taskIds.get(0), taskIds.get(1), taskIds.get(3)), first.getItems().stream()
+                .map(Task::getId).toList());
+        Page<Task> second = manager.getPage(TaskType.TASK, null, first.getNextCursor(), 3);
+        assertEquals(List.of(taskIds.get(4), taskIds.get(5)), second.getItems().stream().map(Task::getId).toList());
+        assertNull(second.getNextCursor());
+
+        Page<Task> done = manager.getPage(TaskType.TASK, TaskStatus.DONE, null, 2);
+        assertEquals(List.of(taskIds.get(1), taskIds.get(3)), done.getItems().stream().map(Task::getId).toList());
+        done = manager.getPage(TaskType.TASK, TaskStatus.DONE, done.getNextCursor(), 2);
+        assertEquals(List.of(taskIds.get(5)), done.getItems().stream().map(Task::getId).toList());
+        assertEquals(List.of(epicId), manager.getPage(TaskType.EPIC, TaskStatus.NEW, null, 2).getItems().stream()
+                .map(Task::getId).toList());
+    }
+
+    // Тестирование поиска по индексу слов после изменения и удаления записей
+    @Test
+    public void testSearchFollowsWrites() {
+        int taskId = manager.createTask(new Task(0, "Настроить сборку", "Gradle", TaskStatus.NEW, TaskType.TASK,
+                null, null));
+        int epicId = manager.createEpic(new Epic(0, "Релиз", "Сборка и публикация", TaskStatus.NEW, null, null));
+        int subtaskId = manager.createSubtask(new Subtask(0, "Релизные заметки", null, TaskStatus.NEW, null, null,
+                epicId));
+        assertEquals(List.of(taskId, epicId), manager.search("сбор").stream().map(Task::getId).toList());
+        assertEquals(List.of(epicId, subtaskId), manager.search("рел").stream().map(Task::getId).toList());
+
+        manager.updateTask(new Task(taskId, "Настроить тесты", "Gradle", TaskStatus.NEW, TaskType.TASK, null, null));
+        manager.removeSubtaskById(subtaskId);
+        assertEquals(List.of(epicId), manager.search("сбор").stream().map(Task::getId).toList());
+        assertEquals(List.of(taskId), manager.search("тест gradle").stream().map(Task::getId).toList());
+        assertEquals(List.of(epicId), manager.search("рел").stream().map(Task::getId).toList());
+        assertThrows(IllegalArgumentException.class, () -> manager.search("  "));
+    }
+
+    // Тестирование поиска свободного интервала по индексу промежутков, в том числе после перезапуска
+    @Test
+    public void testFindFreeSlotFollowsWritesAndReopen() {
+        LocalDateTime start = LocalDateTime.of(2024, 6, 1, 9, 0);
+        int morningId = manager.createTask(new Task(0, "Утро", "Описание", TaskStatus.NEW, TaskType.TASK,
+                Duration.ofHours(1), start));
+        manager.createTask(new Task(0, "Полдень", "Описание", TaskStatus.NEW, TaskType.TASK,
+                Duration.ofHours(1), start.plusHours(2)));
+        manager.createTask(new Task(0, "Точка", "Описание", TaskStatus.NEW, TaskType.TASK,
+                null, start.plusHours(4)));
+        assertEquals(start.plusHours(1), manager.findFreeSlot(Duration.ofMinutes(30), start));
+        assertEquals(start.plusHours(4).plusNanos(1), manager.findFreeSlot(Duration.ofHours(2), start.plusHours(3)));
+
+        manager.updateTask(new Task(morningId, "Утро", "Описание", TaskStatus.NEW, TaskType.TASK,
+                Duration.ofHours(2), start));
+        assertEquals(start.plusHours(3), manager.findFreeSlot(Duration.ofMinutes(30), start));
+        manager.close();
+
+        manager = new MappedTaskManager(file, new InMemoryHistoryManager());
+        assertEquals(start.plusHours(3), manager.findFreeSlot(Duration.ofMinutes(30), start));
+        manager.removeTaskById(morningId);
+        assertEquals(start, manager.findFreeSlot(Duration.ofHours(2), start));
+    }
+
+    // Тестирование восстановления состояния после перезапуска и сжатия области строк
+    @Test
+    public void testReopenRestoresStateAfterCompaction() {
+        int epicId = manager.createEpic(new Epic(0, "Эпик", "Описание", TaskStatus.NEW, Duration.ZERO, null));
+        int subtaskId = manager.createSubtask(new Subtask(0, "Подзадача", "Описание", TaskStatus.IN_PROGRESS,
+                Duration.ofMinutes(15), LocalDateTime.of(2024, 6, 2, 9, 0), epicId));
+        int taskId = manager.createTask(new Task(0, "Задача", "", TaskStatus.NEW, TaskType.TASK, null, null));
+        String text = "Описание ".repeat(1000);
+        for (int i = 0; i < 200; i++) {
+            manager.updateTask(new Task(taskId, "Задача " + i, text, TaskStatus.NEW, TaskType.TASK, null, null));
+        }
+        manager.close();
+
+        manager = new MappedTaskManager(file, new InMemoryHistoryManager());
+        assertEquals("Задача 199", manager.getTaskById(taskId).getNameTask());
+        assertEquals(text, manager.getTaskById(taskId).getDescriptionTask());
+        assertEquals(TaskStatus.IN_PROGRESS, manager.getEpicById(epicId).getStatus());
+        assertEquals(LocalDateTime.of(2024, 6, 2, 9, 0), manager.getSubtaskById(subtaskId).getStartTime());
+        assertEquals(1, manager.getPrioritizedTasks().size());
+        int newId = manager.createTask(new Task(0, "Новая", "Описание", TaskStatus.NEW, TaskType.TASK, null, null));
+        assertTrue(newId > taskId, "Счётчик идентификаторов должен сохраняться между запусками");
+        assertEquals(2, dir.listFiles().length, "Старые поколения области строк должны удаляться");
+    }
+}
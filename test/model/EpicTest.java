@@ -31,7 +31,7 @@ class EpicTest {
 
         Subtask subtask1 = new Subtask(1, "Subtask 1", "Description 1", TaskStatus.NEW,
                 Duration.ofMinutes(20), LocalDateTime.now(), epic.getId());
-        Subtask subtask2 = new Subtask(2, "Subtask 2", "Description 2", TaskStatus.NEW,
+        Subtask subtask2 = new Subtask(0, "Subtask 2", "Description 2", TaskStatus.NEW,
                 Duration.ofMinutes(30), LocalDateTime.now().plusMinutes(21), epic.getId());
 
         taskManager.createSubtask(subtask1);
@@ -156,4 +156,64 @@ class EpicTest {
         taskManager.createSubtask(subtask1);
         assertEquals(TaskStatus.IN_PROGRESS, epic.getStatus());
     }
+
+    // Тестирование счётчиков статусов эпика при изменении подзадач на месте и их сверки с пересчётом
+    @Test
+    void testEpicStatusCountersMatchRecount() {
+        InMemoryTaskManager manager = (InMemoryTaskManager) taskManager;
+        Epic epic = new Epic(0, "Epic 1", "Epic description", TaskStatus.NEW, Duration.ZERO, null);
+        manager.createEpic(epic);
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 9, 0);
+        Subtask subtask1 = new Subtask(0, "Subtask 1", "Description 1", TaskStatus.NEW,
+                Duration.ofMinutes(20), start, epic.getId());
+        Subtask subtask2 = new Subtask(0, "Subtask 2", "Description 2", TaskStatus.DONE,
+                Duration.ofMinutes(20), start.plusHours(1), epic.getId());
+        manager.createSubtask(subtask1);
+        manager.createSubtask(subtask2);
+        assertEquals(TaskStatus.IN_PROGRESS, epic.getStatus());
+        assertEquals(1, epic.getSubtaskCount(TaskStatus.NEW));
+
+        subtask1.setStatus(TaskStatus.DONE);
+        manager.updateSubtask(subtask1);
+        assertEquals(TaskStatus.DONE, epic.getStatus());
+        assertEquals(0, epic.getSubtaskCount(TaskStatus.NEW));
+        assertEquals(2, epic.getSubtaskCount(TaskStatus.DONE));
+        manager.verifyEpicStatuses();
+
+        manager.removeSubtasks();
+        assertEquals(TaskStatus.NEW, epic.getStatus());
+        assertEquals(0, epic.getSubtaskCount(TaskStatus.DONE));
+        manager.verifyEpicStatuses();
+    }
+
+    // Тестирование границ времени эпика при добавлении, изменении и удалении крайних подзадач
+    @Test
+    void testEpicTimeBoundsFollowSubtasks() {
+        Epic epic = new Epic(0, "Epic 1", "Epic description", TaskStatus.NEW, Duration.ZERO, null);
+        taskManager.createEpic(epic);
+        assertNull(epic.getStartTime());
+        assertEquals(Duration.ZERO, epic.getDuration());
+
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 9, 0);
+        Subtask first = new Subtask(0, "Subtask 1", "Description 1", TaskStatus.NEW,
+                Duration.ofMinutes(30), start, epic.getId());
+        Subtask last = new Subtask(0, "Subtask 2", "Description 2", TaskStatus.NEW,
+                Duration.ofMinutes(60), start.plusHours(3), epic.getId());
+        Subtask middle = new Subtask(0, "Subtask 3", "Description 3", TaskStatus.NEW,
+                null, start.plusHours(1), epic.getId());
+        taskManager.createSubtask(first);
+        taskManager.createSubtask(last);
+        taskManager.createSubtask(middle);
+        assertEquals(start, epic.getStartTime());
+        assertEquals(start.plusHours(4), epic.getEndTime());
+        assertEquals(Duration.ofMinutes(90), epic.getDuration());
+
+        taskManager.removeSubtaskById(first.getId());
+        assertEquals(start.plusHours(1), epic.getStartTime());
+
+        last.setDuration(Duration.ofMinutes(15));
+        taskManager.updateSubtask(last);
+        assertEquals(start.plusHours(3).plusMinutes(15), epic.getEndTime());
+        assertEquals(Duration.ofMinutes(15), epic.getDuration());
+    }
 }
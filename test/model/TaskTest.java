@@ -10,6 +10,10 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TaskTest {
 
@@ -40,4 +44,40 @@ public class TaskTest {
         assertEquals(task.getDescriptionTask(), retrievedTask.getDescriptionTask());
         assertEquals(task.getStatus(), retrievedTask.getStatus());
     }
+
+    // Тестирование времени задачи, хранимого примитивами: геттеры, сравнение и пересечения
+    @Test
+    void testTimeStoredAsPrimitives() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0, 0, 999_999_999);
+        Task task = new Task(1, "Task 1", "Description 1", TaskStatus.NEW, TaskType.TASK,
+                Duration.ofSeconds(59, 1), start);
+        assertEquals(start, task.getStartTime());
+        assertEquals(Duration.ofSeconds(59, 1), task.getDuration());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 10, 1), task.getEndTime());
+        assertSame(task.getEndTime(), task.getEndTime());
+        assertSame(start, task.getStartTime());
+
+        Task touching = new Task(2, "Task 2", "Description 2", TaskStatus.NEW, TaskType.TASK,
+                null, LocalDateTime.of(2024, 1, 1, 10, 1));
+        assertNull(touching.getEndTime());
+        assertFalse(task.overlapsWith(touching));
+        assertFalse(task.conflictsWith(touching));
+        assertTrue(touching.conflictsWith(new Task(3, "Task 3", "Description 3", TaskStatus.NEW,
+                TaskType.TASK, Duration.ZERO, LocalDateTime.of(2024, 1, 1, 10, 1))));
+        assertTrue(task.conflictsWith(new Task(4, "Task 4", "Description 4", TaskStatus.NEW,
+                TaskType.TASK, Duration.ofMinutes(5), LocalDateTime.of(2024, 1, 1, 10, 0, 30))));
+
+        Task farFuture = new Task(5, "Task 5", "Description 5", TaskStatus.NEW, TaskType.TASK,
+                Duration.ofHours(1), LocalDateTime.of(3000, 1, 1, 0, 0));
+        Task untimed = new Task(0, "Task 6", "Description 6", TaskStatus.NEW, TaskType.TASK, null, null);
+        assertTrue(Task.compareByStart(task, farFuture) < 0);
+        assertTrue(Task.compareByStart(farFuture, untimed) < 0);
+        assertTrue(Task.compareByStart(untimed, task) > 0);
+        assertEquals(Long.MAX_VALUE, farFuture.getBusyUntilNanos());
+
+        task.setStartTime(null);
+        assertNull(task.getStartTime());
+        assertNull(task.getEndTime());
+        assertFalse(task.overlapsWith(touching));
+    }
 }
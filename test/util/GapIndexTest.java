@@ -0,0 +1,78 @@
+package util;
+
+import com.yandex.tracker.util.GapIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GapIndexTest {
+
+    // Тестирование совпадения поиска свободного места с полным перебором на случайных операциях
+    @Test
+    public void testMatchesBruteForceOnRandomOperations() {
+        GapIndex gaps = new GapIndex();
+        boolean[] busy = new boolean[2_000];
+        Map<Integer, int[]> intervals = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 20_000; i++) {
+            if (random.nextInt(3) == 0 && !intervals.isEmpty()) {
+                int id = (Integer) intervals.keySet().toArray()[random.nextInt(intervals.size())];
+                int[] interval = intervals.remove(id);
+                for (int t = interval[0]; t < interval[1]; t++) {
+                    busy[t] = false;
+                }
+                gaps.release(id);
+            } else {
+                int length = 1 + random.nextInt(20);
+                int notBefore = random.nextInt(busy.length - 100);
+                long start = gaps.findFree(notBefore, length);
+                assertEquals(bruteForce(busy, notBefore, length), start);
+                if (start + length <= busy.length) {
+                    for (long t = start; t < start + length; t++) {
+                        busy[(int) t] = true;
+                    }
+                    intervals.put(i, new int[]{(int) start, (int) start + length});
+                    gaps.occupy(i, start, start + length);
+                }
+            }
+        }
+    }
+
+    // Тестирование краёв оси и освобождения соседних интервалов в любом порядке
+    @Test
+    public void testMergesReleasedNeighbours() {
+        GapIndex gaps = new GapIndex();
+        gaps.occupy(1, 0, 10);
+        gaps.occupy(2, 10, 20);
+        gaps.occupy(3, 20, 30);
+        assertEquals(30, gaps.findFree(0, 5));
+        assertEquals(-5, gaps.findFree(-5, 5));
+        assertEquals(-10, gaps.findFree(-10, 10));
+        assertEquals(30, gaps.findFree(-10, 11));
+
+        gaps.release(2);
+        assertEquals(10, gaps.findFree(0, 10));
+        assertEquals(30, gaps.findFree(0, 11));
+        gaps.release(1);
+        gaps.release(3);
+        assertEquals(0, gaps.findFree(0, 1_000));
+        assertEquals(Long.MAX_VALUE - 10, gaps.findFree(Long.MAX_VALUE - 10, 10));
+        assertThrows(IllegalArgumentException.class, () -> gaps.findFree(Long.MAX_VALUE - 10, 11));
+        assertThrows(IllegalArgumentException.class, () -> gaps.findFree(0, 0));
+    }
+
+    private static long bruteForce(boolean[] busy, int notBefore, int length) {
+        int run = 0;
+        for (int t = notBefore; t < busy.length; t++) {
+            run = busy[t] ? 0 : run + 1;
+            if (run == length) {
+                return t - length + 1;
+            }
+        }
+        return busy.length - run;
+    }
+}
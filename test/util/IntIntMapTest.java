@@ -0,0 +1,38 @@
+package util;
+
+import com.yandex.tracker.util.IntIntMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntIntMapTest {
+
+    // Тестирование совпадения поведения с HashMap на случайной последовательности операций
+    @Test
+    public void testMatchesHashMapOnRandomOperations() {
+        IntIntMap map = new IntIntMap();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(5_000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            } else {
+                expected.put(key, i);
+                map.put(key, i);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (int key = -100; key < 4_900; key++) {
+            assertEquals((int) expected.getOrDefault(key, -1), map.getOrDefault(key, -1));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(-1, map.getOrDefault(0, -1));
+    }
+}
@@ -0,0 +1,52 @@
+package util;
+
+import com.yandex.tracker.model.Task;
+import com.yandex.tracker.service.TaskStatus;
+import com.yandex.tracker.service.TaskType;
+import com.yandex.tracker.util.IntObjectMap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Сравнение памяти, занятой индексом на 1 000 000 задач: HashMap<Integer, Task> против IntObjectMap<Task>.
+// Сами задачи создаются заранее и в замер не входят. Запуск: java util.IntObjectMapFootprint
+public class IntObjectMapFootprint {
+    private static final int ENTRIES = 1_000_000;
+
+    public static void main(String[] args) {
+        Task[] tasks = new Task[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            tasks[i] = new Task(i + 1, null, null, TaskStatus.NEW, TaskType.TASK, null, null);
+        }
+
+        long before = usedMemory();
+        Map<Integer, Task> hashMap = new HashMap<>();
+        for (Task task : tasks) {
+            hashMap.put(task.getId(), task);
+        }
+        long hashMapBytes = usedMemory() - before;
+
+        before = usedMemory();
+        IntObjectMap<Task> intMap = new IntObjectMap<>();
+        for (Task task : tasks) {
+            intMap.put(task.getId(), task);
+        }
+        long intMapBytes = usedMemory() - before;
+
+        System.out.printf("HashMap<Integer, Task>: %,d байт (%.1f на запись)%n", hashMapBytes,
+                (double) hashMapBytes / ENTRIES);
+        System.out.printf("IntObjectMap<Task>:     %,d байт (%.1f на запись)%n", intMapBytes,
+                (double) intMapBytes / ENTRIES);
+        if (hashMap.size() != intMap.size() || tasks.length != ENTRIES) {
+            throw new IllegalStateException("Размеры индексов не совпадают");
+        }
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,82 @@
+package util;
+
+import com.yandex.tracker.util.IntHashSet;
+import com.yandex.tracker.util.IntObjectMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntObjectMapTest {
+
+    // Тестирование совпадения поведения с HashMap на случайной последовательности операций
+    @Test
+    public void testMatchesHashMapOnRandomOperations() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        Map<Integer, String> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(5_000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                String value = "v" + i;
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (int key = -100; key < 4_900; key++) {
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+        assertEquals(expected.size(), new ArrayList<>(map.values()).size());
+    }
+
+    // Тестирование порядка вставки значений после удалений и уплотнения
+    @Test
+    public void testValuesKeepInsertionOrder() {
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+        for (int i = 1; i <= 1_000; i++) {
+            map.put(i, i);
+        }
+        for (int i = 1; i <= 1_000; i += 2) {
+            map.remove(i);
+        }
+        for (int i = 1_001; i <= 2_000; i++) {
+            map.put(i, i);
+        }
+        List<Integer> values = new ArrayList<>(map.values());
+        assertEquals(1_500, values.size());
+        assertEquals(2, values.get(0));
+        for (int i = 1; i < values.size(); i++) {
+            assertTrue(values.get(i - 1) < values.get(i));
+        }
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(2));
+    }
+
+    // Тестирование множества int, включая ноль и отрицательные значения
+    @Test
+    public void testIntHashSet() {
+        IntHashSet set = new IntHashSet();
+        for (int i = -500; i <= 500; i++) {
+            assertTrue(set.add(i));
+        }
+        assertFalse(set.add(0));
+        for (int i = -500; i <= 500; i += 2) {
+            assertTrue(set.remove(i));
+        }
+        assertEquals(500, set.size());
+        assertFalse(set.contains(0));
+        assertTrue(set.contains(-499));
+        int[] sorted = set.toSortedArray();
+        assertEquals(-499, sorted[0]);
+        assertEquals(499, sorted[sorted.length - 1]);
+    }
+}
@@ -0,0 +1,67 @@
+package util;
+
+import com.yandex.tracker.util.TimeIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimeIndexTest {
+    private static final Comparator<long[]> ORDER = Comparator.<long[]>comparingLong(key -> key[0])
+            .thenComparingLong(key -> key[1]).thenComparingLong(key -> key[2]);
+
+    // Тестирование совпадения позиций с TreeSet после загрузки без порядка и случайных изменений
+    @Test
+    public void testMatchesTreeSetAfterBuildAndRandomOperations() {
+        TimeIndex index = new TimeIndex();
+        TreeSet<long[]> expected = new TreeSet<>(ORDER);
+        Random random = new Random(11);
+        for (int id = 1; id <= 5_000; id++) {
+            long[] key = {random.nextInt(500) - 250, random.nextInt(3), id};
+            expected.add(key);
+            index.append(key[0], (int) key[1], id);
+        }
+        index.build();
+        assertMatches(expected, index);
+
+        List<long[]> present = new ArrayList<>(expected);
+        for (int i = 0; i < 100_000; i++) {
+            if (random.nextBoolean() && !present.isEmpty()) {
+                int position = random.nextInt(present.size());
+                long[] key = present.get(position);
+                present.set(position, present.get(present.size() - 1));
+                present.remove(present.size() - 1);
+                expected.remove(key);
+                index.remove(key[0], (int) key[1], (int) key[2]);
+            } else {
+                long[] key = {random.nextInt(500) - 250, random.nextInt(3), 5_001 + i};
+                present.add(key);
+                expected.add(key);
+                index.add(key[0], (int) key[1], (int) key[2]);
+            }
+            if (i % 10_000 == 0) {
+                assertMatches(expected, index);
+            }
+        }
+        assertMatches(expected, index);
+        index.remove(1_000, 0, 1);
+        assertEquals(expected.size(), index.size());
+    }
+
+    private static void assertMatches(TreeSet<long[]> expected, TimeIndex index) {
+        assertEquals(expected.size(), index.size());
+        int position = 0;
+        for (long[] key : expected) {
+            assertEquals(key[2], index.idAt(position));
+            assertEquals(position, index.lowerBound(key[0], (int) key[1], (int) key[2]));
+            position++;
+        }
+        assertEquals(expected.headSet(new long[]{0, 0, Integer.MIN_VALUE}).size(),
+                index.lowerBound(0, 0, Integer.MIN_VALUE));
+    }
+}